@@ -0,0 +1,51 @@
+#!/usr/bin/env bash
+#
+# Reports requests per second on a single core for the forward-auth check, next to the profile
+# endpoint it replaces.
+#
+# Prerequisites: PostgreSQL from docker-compose.yml is running, the jar is built and wrk is on the
+# PATH:
+#   docker compose up -d postgres
+#   ./mvnw -DskipTests package
+#
+# Usage: scripts/forward-auth-benchmark.sh [duration-seconds] [connections]
+
+set -euo pipefail
+
+DURATION="${1:-30}"
+CONNECTIONS="${2:-32}"
+PORT="${PORT:-8080}"
+BASE_URL="http://localhost:${PORT}"
+JAR="$(cd "$(dirname "$0")/.." && pwd)/target/spring-security-demo-1.0.0.jar"
+
+# The application gets one core; the load generator runs on the others
+taskset -c 0 java -XX:ActiveProcessorCount=1 -jar "${JAR}" --server.port="${PORT}" \
+  --logging.level.root=WARN --logging.level.org.springframework.security=WARN \
+  --logging.level.org.hibernate.SQL=WARN >/dev/null 2>&1 &
+pid=$!
+trap 'kill "${pid}" 2>/dev/null || true' EXIT
+
+until curl -sf -o /dev/null "${BASE_URL}/actuator/health"; do
+  if ! kill -0 "${pid}" 2>/dev/null; then
+    echo "application exited before serving a request" >&2
+    exit 1
+  fi
+  sleep 0.1
+done
+
+TOKEN=$(curl -sf -H "Content-Type: application/json" \
+  -d '{"email":"admin@example.com","password":"Admin@123"}' \
+  "${BASE_URL}/api/v1/auth/login" | sed -E 's/.*"accessToken":"([^"]+)".*/\1/')
+
+run() {
+  local path="$1"
+  # Warm up the JIT before measuring
+  taskset -c 1-7 wrk -t2 -c"${CONNECTIONS}" -d10s -H "Authorization: Bearer ${TOKEN}" \
+    "${BASE_URL}${path}" >/dev/null
+  taskset -c 1-7 wrk -t2 -c"${CONNECTIONS}" -d"${DURATION}s" -H "Authorization: Bearer ${TOKEN}" \
+    "${BASE_URL}${path}" | awk '/Requests\/sec/ {print $2}'
+}
+
+printf "%-28s %16s\n" "endpoint" "requests/s/core"
+printf "%-28s %16s\n" "/api/v1/auth/check" "$(run /api/v1/auth/check)"
+printf "%-28s %16s\n" "/api/v1/user/profile" "$(run /api/v1/user/profile)"
@@ -0,0 +1,84 @@
+#!/usr/bin/env bash
+#
+# Reports how long logins and registrations wait for a database connection under load, from the
+# Hikari pool metrics. Run it on two builds to compare them.
+#
+# Prerequisites: PostgreSQL from docker-compose.yml is running, the jar is built and wrk and jq
+# are on the PATH:
+#   docker compose up -d postgres
+#   ./mvnw -DskipTests package
+#
+# Usage: scripts/login-pool-benchmark.sh [duration-seconds] [connections] [pool-size]
+
+set -euo pipefail
+
+DURATION="${1:-30}"
+CONNECTIONS="${2:-64}"
+POOL_SIZE="${3:-4}"
+PORT="${PORT:-8080}"
+BASE_URL="http://localhost:${PORT}"
+JAR="$(cd "$(dirname "$0")/.." && pwd)/target/spring-security-demo-1.0.0.jar"
+WORK_DIR="$(mktemp -d)"
+
+# A small pool makes any time a connection is held during hashing show up as waiting
+java -jar "${JAR}" --server.port="${PORT}" \
+  --spring.datasource.hikari.maximum-pool-size="${POOL_SIZE}" \
+  --logging.level.root=WARN --logging.level.org.springframework.security=WARN \
+  --logging.level.org.hibernate.SQL=WARN >/dev/null 2>&1 &
+pid=$!
+trap 'kill "${pid}" 2>/dev/null || true; rm -rf "${WORK_DIR}"' EXIT
+
+until curl -sf -o /dev/null "${BASE_URL}/actuator/health"; do
+  if ! kill -0 "${pid}" 2>/dev/null; then
+    echo "application exited before serving a request" >&2
+    exit 1
+  fi
+  sleep 0.1
+done
+
+TOKEN=$(curl -sf -H "Content-Type: application/json" \
+  -d '{"email":"admin@example.com","password":"Admin@123"}' \
+  "${BASE_URL}/api/v1/auth/login" | jq -r .accessToken)
+
+cat >"${WORK_DIR}/login.lua" <<'LUA'
+wrk.method = "POST"
+wrk.headers["Content-Type"] = "application/json"
+wrk.body = '{"email":"admin@example.com","password":"Admin@123"}'
+LUA
+
+cat >"${WORK_DIR}/register.lua" <<'LUA'
+wrk.method = "POST"
+wrk.headers["Content-Type"] = "application/json"
+local counter = 0
+request = function()
+  counter = counter + 1
+  local name = string.format("bench%d-%d-%d", os.time(), math.random(1e9), counter)
+  return wrk.format(nil, nil, nil, string.format(
+    '{"email":"%s@bench.example.com","username":"%s","password":"Bench@1234",' ..
+    '"firstName":"Bench","lastName":"User"}', name, string.sub(name, 1, 50)))
+end
+LUA
+
+metric() {
+  curl -sf -H "Authorization: Bearer ${TOKEN}" "${BASE_URL}/actuator/metrics/$1" |
+    jq -r --arg stat "$2" '.measurements[] | select(.statistic == $stat) | .value'
+}
+
+run() {
+  local name="$1" path="$2"
+  local count_before time_before count_after time_after rps
+  count_before=$(metric hikaricp.connections.acquire COUNT)
+  time_before=$(metric hikaricp.connections.acquire TOTAL_TIME)
+  rps=$(wrk -t2 -c"${CONNECTIONS}" -d"${DURATION}s" -s "${WORK_DIR}/${name}.lua" \
+    "${BASE_URL}${path}" | awk '/Requests\/sec/ {print $2}')
+  count_after=$(metric hikaricp.connections.acquire COUNT)
+  time_after=$(metric hikaricp.connections.acquire TOTAL_TIME)
+  printf "%-10s %12s %22s %22s\n" "${name}" "${rps}" \
+    "$(awk -v c="$((${count_after%.*} - ${count_before%.*}))" -v t0="${time_before}" \
+      -v t1="${time_after}" 'BEGIN {printf "%.2f", c > 0 ? (t1 - t0) * 1000 / c : 0}')" \
+    "$(metric hikaricp.connections.acquire MAX)"
+}
+
+printf "%-10s %12s %22s %22s\n" "flow" "requests/s" "mean pool wait (ms)" "max pool wait (s)"
+run login /api/v1/auth/login
+run register /api/v1/auth/register
@@ -0,0 +1,62 @@
+#!/usr/bin/env bash
+#
+# Reports time-to-first-request for each startup configuration.
+#
+# Prerequisites: PostgreSQL from docker-compose.yml is running and the fast-startup build exists:
+#   docker compose up -d postgres
+#   ./mvnw -Pfast-startup -DskipTests package
+#
+# Usage: scripts/startup-benchmark.sh [runs-per-configuration]
+
+set -euo pipefail
+
+RUNS="${1:-5}"
+PORT="${PORT:-8080}"
+URL="http://localhost:${PORT}/actuator/health"
+TARGET="$(cd "$(dirname "$0")/.." && pwd)/target"
+JAR_NAME="spring-security-demo-1.0.0.jar"
+
+declare -A CONFIGURATIONS=(
+  ["1-fat-jar"]="-jar ${TARGET}/${JAR_NAME}"
+  ["2-extracted"]="-jar ${TARGET}/application/${JAR_NAME}"
+  ["3-extracted+cds"]="-XX:SharedArchiveFile=${TARGET}/application/application.jsa -jar ${TARGET}/application/${JAR_NAME}"
+  ["4-extracted+cds+aot"]="-XX:SharedArchiveFile=${TARGET}/application/application.jsa -Dspring.aot.enabled=true -jar ${TARGET}/application/${JAR_NAME}"
+)
+
+now_ms() {
+  date +%s%3N
+}
+
+measure() {
+  local args="$1"
+  local start pid elapsed
+  start=$(now_ms)
+  # shellcheck disable=SC2086
+  java ${args} --server.port="${PORT}" >/dev/null 2>&1 &
+  pid=$!
+  until curl -sf -o /dev/null "${URL}"; do
+    if ! kill -0 "${pid}" 2>/dev/null; then
+      echo "application exited before serving a request" >&2
+      return 1
+    fi
+    sleep 0.05
+  done
+  elapsed=$(( $(now_ms) - start ))
+  kill "${pid}"
+  wait "${pid}" 2>/dev/null || true
+  echo "${elapsed}"
+}
+
+printf "%-24s %10s %10s %10s\n" "configuration" "min(ms)" "avg(ms)" "max(ms)"
+for name in $(printf "%s\n" "${!CONFIGURATIONS[@]}" | sort); do
+  total=0
+  min=""
+  max=0
+  for _ in $(seq "${RUNS}"); do
+    t=$(measure "${CONFIGURATIONS[$name]}")
+    total=$(( total + t ))
+    if [[ -z "${min}" || "${t}" -lt "${min}" ]]; then min="${t}"; fi
+    if [[ "${t}" -gt "${max}" ]]; then max="${t}"; fi
+  done
+  printf "%-24s %10d %10d %10d\n" "${name}" "${min}" "$(( total / RUNS ))" "${max}"
+done
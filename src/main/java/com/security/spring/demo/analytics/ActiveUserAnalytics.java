@@ -0,0 +1,157 @@
+package com.security.spring.demo.analytics;
+
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Counts distinct active users per hour, per day and per role and day with HyperLogLog sketches.
+ * Recording is lock-free and allocation-free on the hot path: the sketches of the current hour are
+ * cached and only looked up again when the hour rolls over. Each sketch is 4 KiB, so memory depends
+ * on the retention window, never on the number of users.
+ */
+@Service
+@Slf4j
+public class ActiveUserAnalytics {
+
+  static final String HOUR_PREFIX = "hour:";
+  static final String DAY_PREFIX = "day:";
+  static final String ROLE_PREFIX = "role:";
+
+  private static final long MILLIS_PER_HOUR = 3_600_000L;
+  private static final DateTimeFormatter HOUR_FORMAT =
+      DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH").withZone(ZoneOffset.UTC);
+
+  private final ConcurrentHashMap<String, HyperLogLog> sketches = new ConcurrentHashMap<>();
+  private final ActiveUserSketchStore sketchStore;
+  private final int hourlyRetention;
+  private final int dailyRetention;
+
+  private volatile CurrentBuckets current;
+
+  public ActiveUserAnalytics(
+      final ActiveUserSketchStore sketchStore,
+      @Value("${application.analytics.active-users.hourly-retention:48}") final int hourlyRetention,
+      @Value("${application.analytics.active-users.daily-retention:7}") final int dailyRetention) {
+    this.sketchStore = sketchStore;
+    this.hourlyRetention = hourlyRetention;
+    this.dailyRetention = dailyRetention;
+  }
+
+  /** Record activity of an authenticated subject holding the roles in {@code roleMask} */
+  public void record(final String subject, final long roleMask) {
+    final long hour = System.currentTimeMillis() / MILLIS_PER_HOUR;
+    CurrentBuckets buckets = current;
+    if (buckets == null || buckets.hour != hour) {
+      buckets = rotate(hour);
+    }
+    final long hash = HyperLogLog.hash(subject);
+    buckets.hourly.offer(hash);
+    buckets.daily.offer(hash);
+    for (long remaining = roleMask; remaining != 0L; remaining &= remaining - 1) {
+      buckets.role(Long.numberOfTrailingZeros(remaining)).offer(hash);
+    }
+  }
+
+  /** Estimated distinct users per bucket key, in key order */
+  public Map<String, Long> estimates() {
+    Map<String, Long> estimates = new TreeMap<>();
+    sketches.forEach((key, sketch) -> estimates.put(key, sketch.estimate()));
+    return estimates;
+  }
+
+  public long memoryBytes() {
+    return (long) sketches.size() * HyperLogLog.REGISTER_COUNT;
+  }
+
+  /** Merge persisted sketches so counts survive restarts */
+  @EventListener(ApplicationReadyEvent.class)
+  public void restore() {
+    LocalDate oldestDay = LocalDate.now(ZoneOffset.UTC).minusDays(dailyRetention - 1L);
+    sketchStore
+        .loadUpdatedSince(oldestDay.atStartOfDay())
+        .forEach((key, registers) -> sketch(key).merge(registers));
+    log.info("Restored {} active user sketches", sketches.size());
+  }
+
+  /** Persist every retained sketch, merging with whatever other instances stored */
+  @Scheduled(fixedDelayString = "${application.analytics.active-users.persist-interval:300000}")
+  @PreDestroy
+  public void persist() {
+    sketches.forEach((key, sketch) -> sketchStore.mergeAndSave(key, sketch));
+  }
+
+  private synchronized CurrentBuckets rotate(final long hour) {
+    CurrentBuckets buckets = current;
+    if (buckets != null && buckets.hour == hour) {
+      return buckets;
+    }
+    Instant start = Instant.ofEpochMilli(hour * MILLIS_PER_HOUR);
+    String day = LocalDateTime.ofInstant(start, ZoneOffset.UTC).toLocalDate().toString();
+    buckets =
+        new CurrentBuckets(
+            hour, day, sketch(HOUR_PREFIX + HOUR_FORMAT.format(start)), sketch(DAY_PREFIX + day));
+    current = buckets;
+    evictExpired(start);
+    return buckets;
+  }
+
+  private void evictExpired(final Instant now) {
+    String oldestHour =
+        HOUR_PREFIX + HOUR_FORMAT.format(now.minusMillis((hourlyRetention - 1L) * MILLIS_PER_HOUR));
+    String oldestDay =
+        LocalDateTime.ofInstant(now, ZoneOffset.UTC)
+            .toLocalDate()
+            .minusDays(dailyRetention - 1L)
+            .toString();
+    sketches
+        .keySet()
+        .removeIf(
+            key ->
+                key.startsWith(HOUR_PREFIX)
+                    ? key.compareTo(oldestHour) < 0
+                    : key.substring(key.lastIndexOf(':') + 1).compareTo(oldestDay) < 0);
+  }
+
+  private HyperLogLog sketch(final String key) {
+    return sketches.computeIfAbsent(key, ignored -> new HyperLogLog());
+  }
+
+  private final class CurrentBuckets {
+    private final long hour;
+    private final String day;
+    private final HyperLogLog hourly;
+    private final HyperLogLog daily;
+    private final AtomicReferenceArray<HyperLogLog> roles = new AtomicReferenceArray<>(Long.SIZE);
+
+    private CurrentBuckets(
+        final long hour, final String day, final HyperLogLog hourly, final HyperLogLog daily) {
+      this.hour = hour;
+      this.day = day;
+      this.hourly = hourly;
+      this.daily = daily;
+    }
+
+    private HyperLogLog role(final int bit) {
+      HyperLogLog sketch = roles.get(bit);
+      if (sketch == null) {
+        sketch = sketch(ROLE_PREFIX + bit + ":" + day);
+        roles.set(bit, sketch);
+      }
+      return sketch;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+package com.security.spring.demo.analytics;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/** Persists sketch registers in the active_user_sketches table */
+@Repository
+public class ActiveUserSketchStore {
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  public ActiveUserSketchStore(
+      final JdbcTemplate jdbcTemplate, final PlatformTransactionManager transactionManager) {
+    this.jdbcTemplate = jdbcTemplate;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  public Map<String, byte[]> loadUpdatedSince(final LocalDateTime since) {
+    Map<String, byte[]> sketches = new HashMap<>();
+    jdbcTemplate.query(
+        "SELECT bucket_key, registers FROM active_user_sketches WHERE updated_at >= ?",
+        rs -> {
+          sketches.put(rs.getString("bucket_key"), rs.getBytes("registers"));
+        },
+        Timestamp.valueOf(since));
+    return sketches;
+  }
+
+  /**
+   * Lock the stored row, fold it into the in-memory sketch and write the union back. Register-wise
+   * maximum is idempotent, so instances sharing a bucket never lose each other's users.
+   *
+   * <p>A missing row cannot be locked, so two instances may both try to insert the bucket. The
+   * loser retries in a new transaction, where the row now exists and is merged like any other.
+   */
+  public void mergeAndSave(final String key, final HyperLogLog sketch) {
+    try {
+      mergeAndSaveOnce(key, sketch);
+    } catch (DuplicateKeyException e) {
+      mergeAndSaveOnce(key, sketch);
+    }
+  }
+
+  private void mergeAndSaveOnce(final String key, final HyperLogLog sketch) {
+    transactionTemplate.executeWithoutResult(
+        status -> {
+          List<byte[]> stored =
+              jdbcTemplate.query(
+                  "SELECT registers FROM active_user_sketches WHERE bucket_key = ? FOR UPDATE",
+                  (rs, rowNum) -> rs.getBytes("registers"),
+                  key);
+          Timestamp now = new Timestamp(System.currentTimeMillis());
+          if (stored.isEmpty()) {
+            jdbcTemplate.update(
+                "INSERT INTO active_user_sketches (bucket_key, registers, updated_at) VALUES (?, ?,"
+                    + " ?)",
+                key,
+                sketch.toBytes(),
+                now);
+          } else {
+            sketch.merge(stored.get(0));
+            jdbcTemplate.update(
+                "UPDATE active_user_sketches SET registers = ?, updated_at = ? WHERE bucket_key ="
+                    + " ?",
+                sketch.toBytes(),
+                now,
+                key);
+          }
+        });
+  }
+}
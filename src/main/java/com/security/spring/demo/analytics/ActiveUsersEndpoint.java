@@ -0,0 +1,51 @@
+package com.security.spring.demo.analytics;
+
+import com.security.spring.demo.service.RoleBitRegistry;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/** Actuator view of the active-user sketches at /actuator/activeusers */
+@Component
+@Endpoint(id = "activeusers")
+@RequiredArgsConstructor
+public class ActiveUsersEndpoint {
+
+  private final ActiveUserAnalytics analytics;
+  private final RoleBitRegistry roleBitRegistry;
+
+  @ReadOperation
+  public Map<String, Object> activeUsers() {
+    Map<String, Long> hourly = new TreeMap<>();
+    Map<String, Long> daily = new TreeMap<>();
+    Map<String, Map<String, Long>> byRole = new TreeMap<>();
+    analytics
+        .estimates()
+        .forEach(
+            (key, estimate) -> {
+              if (key.startsWith(ActiveUserAnalytics.HOUR_PREFIX)) {
+                hourly.put(key.substring(ActiveUserAnalytics.HOUR_PREFIX.length()), estimate);
+              } else if (key.startsWith(ActiveUserAnalytics.DAY_PREFIX)) {
+                daily.put(key.substring(ActiveUserAnalytics.DAY_PREFIX.length()), estimate);
+              } else {
+                String[] parts = key.split(":");
+                String role = roleBitRegistry.nameOf(Integer.parseInt(parts[1]));
+                byRole
+                    .computeIfAbsent(
+                        role != null ? role : "bit-" + parts[1], name -> new TreeMap<>())
+                    .put(parts[2], estimate);
+              }
+            });
+
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("hourly", hourly);
+    response.put("daily", daily);
+    response.put("dailyByRole", byRole);
+    response.put("sketchMemoryBytes", analytics.memoryBytes());
+    return response;
+  }
+}
@@ -0,0 +1,88 @@
+package com.security.spring.demo.analytics;
+
+import com.security.spring.demo.util.Hashing;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free HyperLogLog sketch with 2^12 one-byte registers (4 KiB, ~1.6% standard error).
+ * Registers are packed eight to a long and raised with compare-and-set, so concurrent writers never
+ * block each other and a sketch only ever grows toward the true maximum.
+ */
+public final class HyperLogLog {
+
+  public static final int PRECISION = 12;
+  public static final int REGISTER_COUNT = 1 << PRECISION;
+
+  private static final double ALPHA = 0.7213 / (1.0 + 1.079 / REGISTER_COUNT);
+
+  private final AtomicLongArray words = new AtomicLongArray(REGISTER_COUNT / Long.BYTES);
+
+  /** Add an element by its 64-bit hash */
+  public void offer(final long hash) {
+    final int index = (int) (hash >>> (Long.SIZE - PRECISION));
+    // The sentinel bit bounds the rank at 64 - PRECISION + 1
+    final int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+    raise(index, rank);
+  }
+
+  public long estimate() {
+    double sum = 0.0;
+    int zeros = 0;
+    for (int index = 0; index < REGISTER_COUNT; index++) {
+      final int register = register(index);
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    final double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+    if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+      // Linear counting is more accurate for small cardinalities
+      return Math.round(REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros));
+    }
+    return Math.round(estimate);
+  }
+
+  /** Fold another sketch's registers into this one, as if its elements had been offered here */
+  public void merge(final byte[] registers) {
+    if (registers.length != REGISTER_COUNT) {
+      throw new IllegalArgumentException("Expected " + REGISTER_COUNT + " registers");
+    }
+    for (int index = 0; index < REGISTER_COUNT; index++) {
+      if (registers[index] != 0) {
+        raise(index, registers[index]);
+      }
+    }
+  }
+
+  public byte[] toBytes() {
+    final byte[] registers = new byte[REGISTER_COUNT];
+    for (int index = 0; index < REGISTER_COUNT; index++) {
+      registers[index] = (byte) register(index);
+    }
+    return registers;
+  }
+
+  public static long hash(final String value) {
+    return Hashing.hash64(value);
+  }
+
+  private int register(final int index) {
+    return (int) ((words.get(index >>> 3) >>> ((index & 7) << 3)) & 0xFF);
+  }
+
+  private void raise(final int index, final int rank) {
+    final int word = index >>> 3;
+    final int shift = (index & 7) << 3;
+    while (true) {
+      final long current = words.get(word);
+      if (((current >>> shift) & 0xFF) >= rank) {
+        return;
+      }
+      final long updated = (current & ~(0xFFL << shift)) | ((long) rank << shift);
+      if (words.compareAndSet(word, current, updated)) {
+        return;
+      }
+    }
+  }
+}
@@ -1,14 +1,39 @@
 package com.security.spring.demo.config;
 
+import com.security.spring.demo.config.filter.ConcurrencyLimitFilter;
+import com.security.spring.demo.config.filter.ConcurrencyLimitProperties;
+import com.security.spring.demo.config.filter.ForwardAuthFilter;
 import com.security.spring.demo.config.filter.JwtAuthenticationFilter;
+import com.security.spring.demo.config.filter.ServerTimingFilter;
+import com.security.spring.demo.jfr.JfrPasswordEncoder;
+import com.security.spring.demo.security.RequireAnyRole;
+import com.security.spring.demo.security.RoleMaskAuthorizationManager;
+import com.security.spring.demo.security.UrlRuleAuthorizationManager;
 import com.security.spring.demo.service.CustomUserDetailsService;
+import com.security.spring.demo.service.RoleBitRegistry;
+import com.security.spring.demo.service.TokenRenewalService;
+import com.security.spring.demo.util.ServerTiming;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.DispatcherType;
 import java.util.Arrays;
 import java.util.List;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.Pointcuts;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.security.SecurityProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.AuthenticationProvider;
 import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.authorization.method.AuthorizationInterceptorsOrder;
+import org.springframework.security.authorization.method.AuthorizationManagerBeforeMethodInterceptor;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -26,51 +51,84 @@ import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 @Configuration
 @EnableWebSecurity
 @EnableMethodSecurity(prePostEnabled = true, securedEnabled = true, jsr250Enabled = true)
+@EnableConfigurationProperties(ConcurrencyLimitProperties.class)
 public class SecurityConfig {
 
   private final JwtAuthenticationFilter jwtAuthFilter;
   private final CustomUserDetailsService userDetailsService;
   private final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint;
+  private final UrlRuleAuthorizationManager urlRuleAuthorizationManager;
 
   public SecurityConfig(
       final JwtAuthenticationFilter jwtAuthFilter,
       final CustomUserDetailsService userDetailsService,
-      final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint) {
+      final JwtAuthenticationEntryPoint jwtAuthenticationEntryPoint,
+      final UrlRuleAuthorizationManager urlRuleAuthorizationManager) {
     this.jwtAuthFilter = jwtAuthFilter;
     this.userDetailsService = userDetailsService;
     this.jwtAuthenticationEntryPoint = jwtAuthenticationEntryPoint;
+    this.urlRuleAuthorizationManager = urlRuleAuthorizationManager;
   }
 
   @Bean
-  public SecurityFilterChain securityFilterChain(final HttpSecurity http) throws Exception {
+  public SecurityFilterChain securityFilterChain(
+      final HttpSecurity http,
+      final RoleBitRegistry roleBitRegistry,
+      @Value("${application.server-timing.roles:}") final String[] serverTimingRoles,
+      @Value("${application.server-timing.sample-rate:0}") final double serverTimingSampleRate)
+      throws Exception {
     http.csrf(AbstractHttpConfigurer::disable)
         .formLogin(AbstractHttpConfigurer::disable)
         .cors(cors -> cors.configurationSource(corsConfigurationSource()))
+        // URL rules live in the url_authorization_rules table, see UrlAuthorizationRuleService.
+        // Async dispatches, such as streaming responses, were authorized on the initial request.
         .authorizeHttpRequests(
             auth ->
-                auth.requestMatchers(
-                        "/api/v1/auth/**",
-                        "/api/v1/public/**",
-                        "/v3/api-docs/**",
-                        "/swagger-ui/**",
-                        "/swagger-ui.html",
-                        "/actuator/health")
+                auth.dispatcherTypeMatchers(DispatcherType.ASYNC)
                     .permitAll()
-                    .requestMatchers("/api/v1/admin/**")
-                    .hasRole("ADMIN")
-                    .requestMatchers("/api/v1/user/**")
-                    .hasAnyRole("USER", "ADMIN")
                     .anyRequest()
-                    .authenticated())
+                    .access(urlRuleAuthorizationManager))
         .sessionManagement(
             session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
         .authenticationProvider(authenticationProvider())
         .addFilterBefore(jwtAuthFilter, UsernamePasswordAuthenticationFilter.class)
+        // Forward-auth checks are answered as soon as the token is authenticated
+        .addFilterAfter(new ForwardAuthFilter(roleBitRegistry), JwtAuthenticationFilter.class)
         .exceptionHandling(
             exception -> exception.authenticationEntryPoint(jwtAuthenticationEntryPoint));
+    if (ServerTimingFilter.isEnabled(serverTimingRoles, serverTimingSampleRate)) {
+      http.addFilterBefore(
+          new ServerTimingFilter(roleBitRegistry, serverTimingRoles, serverTimingSampleRate),
+          JwtAuthenticationFilter.class);
+    }
     return http.build();
   }
 
+  /** Ahead of the security chain, so shed requests never reach token parsing or user loads */
+  @Bean
+  public FilterRegistrationBean<ConcurrencyLimitFilter> concurrencyLimitFilter(
+      final ConcurrencyLimitProperties properties, final MeterRegistry meterRegistry) {
+    FilterRegistrationBean<ConcurrencyLimitFilter> registration =
+        new FilterRegistrationBean<>(new ConcurrencyLimitFilter(properties, meterRegistry));
+    registration.setOrder(SecurityProperties.DEFAULT_FILTER_ORDER - 1);
+    registration.setEnabled(properties.isEnabled());
+    return registration;
+  }
+
+  @Bean
+  @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+  static Advisor requireAnyRoleAuthorizationAdvisor(
+      final ObjectProvider<RoleBitRegistry> roleBitRegistry) {
+    AuthorizationManagerBeforeMethodInterceptor interceptor =
+        new AuthorizationManagerBeforeMethodInterceptor(
+            Pointcuts.union(
+                new AnnotationMatchingPointcut(null, RequireAnyRole.class, true),
+                new AnnotationMatchingPointcut(RequireAnyRole.class, true)),
+            new RoleMaskAuthorizationManager(roleBitRegistry));
+    interceptor.setOrder(AuthorizationInterceptorsOrder.PRE_AUTHORIZE.getOrder());
+    return interceptor;
+  }
+
   @Bean
   public AuthenticationProvider authenticationProvider() {
     DaoAuthenticationProvider daoAuthenticationProvider =
@@ -87,7 +145,7 @@ public class SecurityConfig {
 
   @Bean
   public PasswordEncoder passwordEncoder() {
-    return new BCryptPasswordEncoder(12);
+    return new JfrPasswordEncoder(new BCryptPasswordEncoder(12));
   }
 
   @Bean
@@ -98,7 +156,9 @@ public class SecurityConfig {
         Arrays.asList("GET", "POST", "PUT", "DELETE", "PATCH", "OPTIONS"));
     configuration.setAllowedHeaders(
         Arrays.asList("Authorization", "Content-Type", "X-Requested-With"));
-    configuration.setExposedHeaders(List.of("Authorization"));
+    configuration.setExposedHeaders(
+        List.of(
+            "Authorization", TokenRenewalService.RENEWED_TOKEN_HEADER, ServerTiming.HEADER));
     configuration.setAllowCredentials(true);
     configuration.setMaxAge(3600L);
     UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
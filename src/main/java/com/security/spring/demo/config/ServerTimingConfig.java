@@ -0,0 +1,68 @@
+package com.security.spring.demo.config;
+
+import com.security.spring.demo.util.ServerTiming;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Times handler execution for the {@code Server-Timing} header, from the handler being selected
+ * until its response body is about to be written, when the header still can be added. See {@link
+ * com.security.spring.demo.config.filter.ServerTimingFilter}.
+ */
+@Configuration
+public class ServerTimingConfig implements WebMvcConfigurer {
+
+  @Override
+  public void addInterceptors(final InterceptorRegistry registry) {
+    registry.addInterceptor(
+        new HandlerInterceptor() {
+          @Override
+          public boolean preHandle(
+              final @NonNull HttpServletRequest request,
+              final @NonNull HttpServletResponse response,
+              final @NonNull Object handler) {
+            ServerTiming.startHandler();
+            return true;
+          }
+        });
+  }
+
+  /** Adds the header to responses with a body, which are committed as the body is written */
+  @ControllerAdvice
+  static class ServerTimingBodyAdvice implements ResponseBodyAdvice<Object> {
+
+    @Override
+    public boolean supports(
+        final @NonNull MethodParameter returnType,
+        final @NonNull Class<? extends HttpMessageConverter<?>> converterType) {
+      return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(
+        final Object body,
+        final @NonNull MethodParameter returnType,
+        final @NonNull MediaType selectedContentType,
+        final @NonNull Class<? extends HttpMessageConverter<?>> selectedConverterType,
+        final @NonNull ServerHttpRequest request,
+        final @NonNull ServerHttpResponse response) {
+      String header = ServerTiming.take();
+      if (header != null) {
+        response.getHeaders().add(ServerTiming.HEADER, header);
+      }
+      return body;
+    }
+  }
+}
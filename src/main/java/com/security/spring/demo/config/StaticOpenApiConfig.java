@@ -0,0 +1,87 @@
+package com.security.spring.demo.config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.ViewControllerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.EncodedResourceResolver;
+import org.webjars.WebJarVersionLocator;
+
+/**
+ * Serves the OpenAPI document generated by the static-openapi Maven profile from
+ * classpath:/openapi/ at /v3/api-docs/openapi.json, in place of springdoc's runtime scan. Clients
+ * sending Accept-Encoding get the brotli or gzip file as built, and revalidate through an ETag
+ * over the bytes of the variant they were sent.
+ *
+ * <p>Springdoc is switched off entirely under this profile, and its Swagger UI with it, so the UI
+ * is served here from the swagger-ui webjar with an initializer pointing at the static document.
+ */
+@Configuration
+@Profile("static-openapi")
+public class StaticOpenApiConfig implements WebMvcConfigurer {
+
+  private final Map<String, String> etags = new ConcurrentHashMap<>();
+
+  @Override
+  public void addResourceHandlers(final ResourceHandlerRegistry registry) {
+    registry
+        .addResourceHandler("/v3/api-docs/**")
+        .addResourceLocations("classpath:/openapi/")
+        .setCacheControl(CacheControl.noCache())
+        .setEtagGenerator(this::etag)
+        .resourceChain(true)
+        .addResolver(new EncodedResourceResolver());
+
+    String swaggerUiVersion = new WebJarVersionLocator().version("swagger-ui");
+    if (swaggerUiVersion == null) {
+      throw new IllegalStateException("swagger-ui webjar not found on the classpath");
+    }
+    // The first location wins, so our initializer replaces the webjar's petstore one
+    registry
+        .addResourceHandler("/swagger-ui/**")
+        .addResourceLocations(
+            "classpath:/openapi-ui/",
+            "classpath:/"
+                + WebJarVersionLocator.WEBJARS_PATH_PREFIX
+                + "/swagger-ui/"
+                + swaggerUiVersion
+                + "/")
+        .setCacheControl(CacheControl.noCache());
+  }
+
+  @Override
+  public void addViewControllers(final ViewControllerRegistry registry) {
+    registry.addRedirectViewController("/swagger-ui.html", "/swagger-ui/index.html");
+  }
+
+  /**
+   * SHA-256 of the resource, computed once per file since the files never change at runtime. Keyed
+   * by description, which names the encoded file, since an encoded resource reports the filename of
+   * the uncompressed one.
+   */
+  private String etag(final Resource resource) {
+    return etags.computeIfAbsent(
+        resource.getDescription(),
+        name -> {
+          try {
+            byte[] digest =
+                MessageDigest.getInstance("SHA-256").digest(resource.getContentAsByteArray());
+            return HexFormat.of().formatHex(digest, 0, 16);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+          }
+        });
+  }
+}
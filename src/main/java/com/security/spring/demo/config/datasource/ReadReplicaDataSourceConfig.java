@@ -0,0 +1,73 @@
+package com.security.spring.demo.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Routes read-only transactions to the configured read replicas and everything else to the primary.
+ *
+ * <p>The lazy proxy defers fetching a physical connection until the first statement, by which time
+ * the transaction manager has marked the connection read-only, so the choice of pool follows the
+ * {@code @Transactional(readOnly = true)} flag.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.datasource.read-replicas", name = "enabled")
+@EnableConfigurationProperties(ReadReplicaProperties.class)
+public class ReadReplicaDataSourceConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(final DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public ReplicaLoadBalancingDataSource replicaDataSource(
+      final ReadReplicaProperties properties, final HikariDataSource primaryDataSource) {
+    List<HikariDataSource> pools = new ArrayList<>();
+    for (int i = 0; i < properties.getReplicas().size(); i++) {
+      ReadReplicaProperties.Replica replica = properties.getReplicas().get(i);
+      HikariDataSource pool =
+          DataSourceBuilder.create()
+              .type(HikariDataSource.class)
+              .url(replica.getUrl())
+              .username(replica.getUsername())
+              .password(replica.getPassword())
+              .driverClassName(replica.getDriverClassName())
+              .build();
+      pool.setPoolName(replica.getName() != null ? replica.getName() : "replica-" + i);
+      pool.setReadOnly(true);
+      pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+      pool.setConnectionTimeout(properties.getConnectionTimeout());
+      // Do not fail startup because a replica is down; the health check readmits it later
+      pool.setInitializationFailTimeout(-1);
+      pools.add(pool);
+    }
+    return new ReplicaLoadBalancingDataSource(
+        pools,
+        primaryDataSource,
+        properties.isFallbackToPrimary(),
+        properties.getValidationTimeoutSeconds());
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(
+      final HikariDataSource primaryDataSource,
+      final ReplicaLoadBalancingDataSource replicaDataSource) {
+    LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+    dataSource.setReadOnlyDataSource(replicaDataSource);
+    return dataSource;
+  }
+}
@@ -0,0 +1,36 @@
+package com.security.spring.demo.config.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/** Read replica pools that serve read-only transactions */
+@Data
+@ConfigurationProperties(prefix = "application.datasource.read-replicas")
+public class ReadReplicaProperties {
+
+  private boolean enabled = false;
+
+  /** Serve read-only transactions from the primary when every replica is ejected */
+  private boolean fallbackToPrimary = true;
+
+  private long healthCheckInterval = 5000;
+
+  private int validationTimeoutSeconds = 2;
+
+  private int maximumPoolSize = 10;
+
+  private long connectionTimeout = 2000;
+
+  private List<Replica> replicas = new ArrayList<>();
+
+  @Data
+  public static class Replica {
+    private String name;
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName;
+  }
+}
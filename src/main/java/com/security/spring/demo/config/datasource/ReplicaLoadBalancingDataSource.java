@@ -0,0 +1,110 @@
+package com.security.spring.demo.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+/**
+ * Hands out connections from a set of replica pools in round-robin order. Replicas that fail to
+ * produce or validate a connection are ejected until the next successful health check.
+ */
+@Slf4j
+public class ReplicaLoadBalancingDataSource extends AbstractDataSource implements AutoCloseable {
+
+  private final List<Replica> replicas;
+  private final HikariDataSource primary;
+  private final boolean fallbackToPrimary;
+  private final int validationTimeoutSeconds;
+  private final AtomicInteger cursor = new AtomicInteger();
+
+  public ReplicaLoadBalancingDataSource(
+      final List<HikariDataSource> replicaPools,
+      final HikariDataSource primary,
+      final boolean fallbackToPrimary,
+      final int validationTimeoutSeconds) {
+    this.replicas = replicaPools.stream().map(Replica::new).toList();
+    this.primary = primary;
+    this.fallbackToPrimary = fallbackToPrimary;
+    this.validationTimeoutSeconds = validationTimeoutSeconds;
+  }
+
+  @Override
+  public Connection getConnection() throws SQLException {
+    final int size = replicas.size();
+    final int start = Math.floorMod(cursor.getAndIncrement(), Math.max(size, 1));
+    for (int i = 0; i < size; i++) {
+      final Replica replica = replicas.get((start + i) % size);
+      if (!replica.healthy) {
+        continue;
+      }
+      try {
+        return replica.pool.getConnection();
+      } catch (SQLException e) {
+        eject(replica, e.getMessage());
+      }
+    }
+    if (fallbackToPrimary) {
+      log.debug("No healthy read replica available, using primary");
+      return primary.getConnection();
+    }
+    throw new SQLException("No healthy read replica available");
+  }
+
+  /** Like the Hikari pools behind it, this cannot open connections with other credentials */
+  @Override
+  public Connection getConnection(final String username, final String password)
+      throws SQLException {
+    throw new SQLFeatureNotSupportedException("Replica pools use their configured credentials");
+  }
+
+  /** Validate every replica, ejecting failing ones and readmitting recovered ones */
+  @Scheduled(
+      fixedDelayString = "${application.datasource.read-replicas.health-check-interval:5000}")
+  public void checkHealth() {
+    for (Replica replica : replicas) {
+      try (Connection connection = replica.pool.getConnection()) {
+        if (connection.isValid(validationTimeoutSeconds)) {
+          if (!replica.healthy) {
+            log.info("Read replica {} is healthy again", replica.pool.getPoolName());
+            replica.healthy = true;
+          }
+        } else {
+          eject(replica, "connection validation failed");
+        }
+      } catch (SQLException e) {
+        eject(replica, e.getMessage());
+      }
+    }
+  }
+
+  public long healthyReplicaCount() {
+    return replicas.stream().filter(replica -> replica.healthy).count();
+  }
+
+  @Override
+  public void close() {
+    replicas.forEach(replica -> replica.pool.close());
+  }
+
+  private void eject(final Replica replica, final String reason) {
+    if (replica.healthy) {
+      log.warn("Ejecting read replica {}: {}", replica.pool.getPoolName(), reason);
+      replica.healthy = false;
+    }
+  }
+
+  private static final class Replica {
+    private final HikariDataSource pool;
+    private volatile boolean healthy = true;
+
+    private Replica(final HikariDataSource pool) {
+      this.pool = pool;
+    }
+  }
+}
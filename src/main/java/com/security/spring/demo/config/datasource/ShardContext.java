@@ -0,0 +1,33 @@
+package com.security.spring.demo.config.datasource;
+
+/**
+ * The shard the current thread's next connection is taken from. Shard 0 is the default and also
+ * holds the tables that are not partitioned.
+ */
+public final class ShardContext {
+
+  private static final ThreadLocal<Integer> CURRENT = ThreadLocal.withInitial(() -> 0);
+
+  private ShardContext() {}
+
+  public static int current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Route to {@code shard} until the returned scope is closed. Enter the scope before the first
+   * statement of a transaction: the connection is bound to the shard that serves that statement.
+   */
+  public static Scope enter(final int shard) {
+    int previous = CURRENT.get();
+    CURRENT.set(shard);
+    return () -> CURRENT.set(previous);
+  }
+
+  /** Restores the previously selected shard */
+  @FunctionalInterface
+  public interface Scope extends AutoCloseable {
+    @Override
+    void close();
+  }
+}
@@ -0,0 +1,92 @@
+package com.security.spring.demo.config.datasource;
+
+import com.security.spring.demo.repository.UserDirectory;
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.ArrayList;
+import java.util.List;
+import javax.sql.DataSource;
+import org.flywaydb.core.Flyway;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Spreads users over several databases. Every shard carries the full schema from the same
+ * migrations, but only shard 0, the primary {@code spring.datasource}, serves the tables that are
+ * not partitioned. Cannot be combined with read replicas.
+ *
+ * <p>As with the replica routing, the lazy proxy defers fetching a physical connection until the
+ * first statement, so a transaction lands on whichever shard {@link ShardContext} selects by then.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "application.datasource.shards", name = "enabled")
+@EnableConfigurationProperties(ShardProperties.class)
+public class ShardDataSourceConfig {
+
+  @Bean
+  @ConfigurationProperties("spring.datasource.hikari")
+  public HikariDataSource primaryDataSource(final DataSourceProperties properties) {
+    return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+  }
+
+  @Bean
+  public ShardRoutingDataSource shardRoutingDataSource(
+      final ShardProperties properties, final HikariDataSource primaryDataSource) {
+    List<HikariDataSource> pools = new ArrayList<>();
+    pools.add(primaryDataSource);
+    for (int i = 0; i < properties.getShards().size(); i++) {
+      ShardProperties.Shard shard = properties.getShards().get(i);
+      HikariDataSource pool =
+          DataSourceBuilder.create()
+              .type(HikariDataSource.class)
+              .url(shard.getUrl())
+              .username(shard.getUsername())
+              .password(shard.getPassword())
+              .driverClassName(shard.getDriverClassName())
+              .build();
+      pool.setPoolName(shard.getName() != null ? shard.getName() : "shard-" + (i + 1));
+      pool.setMaximumPoolSize(properties.getMaximumPoolSize());
+      pool.setConnectionTimeout(properties.getConnectionTimeout());
+      pools.add(pool);
+    }
+    return new ShardRoutingDataSource(pools);
+  }
+
+  @Bean
+  @Primary
+  public DataSource dataSource(final ShardRoutingDataSource shardRoutingDataSource) {
+    return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+  }
+
+  @Bean
+  public FlywayConfigurationCustomizer shardLayoutCustomizer(
+      final ShardRouter shardRouter, final UserDirectory userDirectory) {
+    return configuration ->
+        configuration.callbacks(new ShardLayoutCallback(0, shardRouter, userDirectory));
+  }
+
+  /** Migrate shard 0 first, so its user directory exists when the other shards are seeded */
+  @Bean
+  public FlywayMigrationStrategy shardMigrationStrategy(
+      final ShardRouter shardRouter, final UserDirectory userDirectory) {
+    return flyway -> {
+      flyway.migrate();
+      for (int shard = 1; shard < shardRouter.shardCount(); shard++) {
+        Flyway.configure()
+            .configuration(flyway.getConfiguration())
+            .dataSource(shardRouter.shard(shard))
+            .callbacks(new ShardLayoutCallback(shard, shardRouter, userDirectory))
+            .load()
+            .migrate();
+      }
+    };
+  }
+}
@@ -0,0 +1,73 @@
+package com.security.spring.demo.config.datasource;
+
+import com.security.spring.demo.repository.UserDirectory;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.flywaydb.core.api.callback.Callback;
+import org.flywaydb.core.api.callback.Context;
+import org.flywaydb.core.api.callback.Event;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+/**
+ * Adapts the shared migrations to one shard while they run: moves the shard's user id sequence to
+ * its own range after the users table is created, and drops seeded users that belong to another
+ * shard or are already registered on one.
+ */
+@Slf4j
+@RequiredArgsConstructor
+public class ShardLayoutCallback implements Callback {
+
+  private static final String CREATE_SCHEMA_VERSION = "1";
+  private static final String SEED_USERS_VERSION = "2";
+
+  private final int shard;
+  private final ShardRouter shardRouter;
+  private final UserDirectory userDirectory;
+
+  @Override
+  public boolean supports(final Event event, final Context context) {
+    return event == Event.AFTER_EACH_MIGRATE
+        && context.getMigrationInfo() != null
+        && context.getMigrationInfo().getVersion() != null;
+  }
+
+  @Override
+  public boolean canHandleInTransaction(final Event event, final Context context) {
+    return true;
+  }
+
+  @Override
+  public void handle(final Event event, final Context context) {
+    String version = context.getMigrationInfo().getVersion().getVersion();
+    JdbcTemplate jdbc =
+        new JdbcTemplate(new SingleConnectionDataSource(context.getConnection(), true));
+    if (CREATE_SCHEMA_VERSION.equals(version) && shard > 0) {
+      jdbc.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + ShardRouter.firstId(shard));
+    } else if (SEED_USERS_VERSION.equals(version)) {
+      removeMisplacedSeedUsers(jdbc);
+    }
+  }
+
+  @Override
+  public String getCallbackName() {
+    return "shard-layout";
+  }
+
+  private void removeMisplacedSeedUsers(final JdbcTemplate jdbc) {
+    List<Map<String, Object>> users = jdbc.queryForList("SELECT id, email, username FROM users");
+    for (Map<String, Object> user : users) {
+      String email = (String) user.get("email");
+      // Shard 0 still has to create the directory; its remaining seed users are copied in there
+      boolean keep =
+          shardRouter.shardForEmail(email) == shard
+              && (shard == 0 || userDirectory.tryReserve((String) user.get("username"), email));
+      if (!keep) {
+        jdbc.update("DELETE FROM users WHERE id = ?", user.get("id"));
+        log.info("Removed seed user {} from shard {}", email, shard);
+      }
+    }
+  }
+}
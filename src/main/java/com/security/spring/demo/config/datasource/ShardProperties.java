@@ -0,0 +1,42 @@
+package com.security.spring.demo.config.datasource;
+
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Databases the users table is hash-partitioned across. Shard 0 is the primary {@code
+ * spring.datasource}; the shards listed here are numbered from 1 in order, so new shards must only
+ * ever be appended.
+ */
+@Data
+@ConfigurationProperties(prefix = "application.datasource.shards")
+public class ShardProperties {
+
+  private boolean enabled = false;
+
+  /**
+   * Shard count before the last shard was added. Until the rebalancer has run, users not found on
+   * their new home shard are looked up on the shard they hashed to under this count.
+   */
+  private Integer previousCount;
+
+  /** Milliseconds between loads of the users a rebalance moved, by any instance */
+  private long relocationRefreshInterval = 10000;
+
+  private int maximumPoolSize = 10;
+
+  private long connectionTimeout = 2000;
+
+  private List<Shard> shards = new ArrayList<>();
+
+  @Data
+  public static class Shard {
+    private String name;
+    private String url;
+    private String username;
+    private String password;
+    private String driverClassName;
+  }
+}
@@ -0,0 +1,112 @@
+package com.security.spring.demo.config.datasource;
+
+import com.security.spring.demo.util.Hashing;
+import com.security.spring.demo.util.JumpConsistentHash;
+import com.security.spring.demo.util.LongIntHashMap;
+import java.util.Locale;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Maps users to shards. A user lives on the shard its normalized email hashes to, together with its
+ * role assignments, and its id is allocated from that shard's range so the id alone also identifies
+ * the shard. Users moved by a rebalance keep their id; the shards they moved to are recorded here
+ * as relocations. With sharding disabled everything maps to the single shard 0.
+ */
+@Component
+public class ShardRouter {
+
+  /** Each shard allocates user ids starting at {@code shard << SHARD_ID_SHIFT} */
+  public static final int SHARD_ID_SHIFT = 48;
+
+  private final ShardRoutingDataSource routingDataSource;
+  private final int previousCount;
+  private final LongIntHashMap relocations = new LongIntHashMap();
+
+  public ShardRouter(
+      final ObjectProvider<ShardRoutingDataSource> routingDataSource,
+      final ObjectProvider<ShardProperties> properties) {
+    this.routingDataSource = routingDataSource.getIfAvailable();
+    ShardProperties shardProperties = properties.getIfAvailable();
+    this.previousCount =
+        shardProperties != null && shardProperties.getPreviousCount() != null
+            ? shardProperties.getPreviousCount()
+            : 0;
+  }
+
+  public boolean isEnabled() {
+    return routingDataSource != null;
+  }
+
+  public int shardCount() {
+    return routingDataSource != null ? routingDataSource.shardCount() : 1;
+  }
+
+  public int shardForEmail(final String email) {
+    return shardForEmail(email, shardCount());
+  }
+
+  /** Home shard of an email under the given shard count */
+  public static int shardForEmail(final String email, final int shardCount) {
+    return JumpConsistentHash.bucket(
+        Hashing.hash64(email.trim().toLowerCase(Locale.ROOT)), shardCount);
+  }
+
+  public int shardForId(final long id) {
+    int relocated = relocations.get(id, -1);
+    if (relocated >= 0) {
+      return relocated;
+    }
+    return id <= 0 ? 0 : (int) (id >>> SHARD_ID_SHIFT);
+  }
+
+  /**
+   * Route the id to the shard a rebalance moved it to. Adding a shard only ever moves users onto
+   * the new, highest shard, so the highest shard recorded for an id is where it lives.
+   */
+  public void relocate(final long id, final int shard) {
+    relocations.putMax(id, shard);
+  }
+
+  /**
+   * Shards to search for an email: its home shard, then, while a grown cluster is being rebalanced,
+   * the shard it hashed to before the last shard was added.
+   */
+  public int[] candidateShardsForEmail(final String email) {
+    int home = shardForEmail(email);
+    if (previousCount > 0 && previousCount < shardCount()) {
+      int previous = shardForEmail(email, previousCount);
+      if (previous != home) {
+        return new int[] {home, previous};
+      }
+    }
+    return new int[] {home};
+  }
+
+  public ShardContext.Scope onEmail(final String email) {
+    return ShardContext.enter(shardForEmail(email));
+  }
+
+  /** Route to the shard that allocated the id; ids of no configured shard find nothing on 0 */
+  public ShardContext.Scope onId(final long id) {
+    int shard = shardForId(id);
+    return ShardContext.enter(shard < shardCount() ? shard : 0);
+  }
+
+  public ShardContext.Scope onShard(final int shard) {
+    return ShardContext.enter(shard);
+  }
+
+  /** The physical pool of one shard; only available with sharding enabled */
+  public DataSource shard(final int index) {
+    if (routingDataSource == null) {
+      throw new IllegalStateException("Sharding is not enabled");
+    }
+    return routingDataSource.shard(index);
+  }
+
+  public static long firstId(final int shard) {
+    return (long) shard << SHARD_ID_SHIFT;
+  }
+}
@@ -0,0 +1,45 @@
+package com.security.spring.demo.config.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/** Hands out connections from the shard selected by {@link ShardContext} */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+  private final List<HikariDataSource> shards;
+
+  public ShardRoutingDataSource(final List<HikariDataSource> shards) {
+    this.shards = List.copyOf(shards);
+    Map<Object, Object> targets = new HashMap<>();
+    for (int i = 0; i < shards.size(); i++) {
+      targets.put(i, shards.get(i));
+    }
+    setTargetDataSources(targets);
+    setDefaultTargetDataSource(shards.get(0));
+    setLenientFallback(false);
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return ShardContext.current();
+  }
+
+  public int shardCount() {
+    return shards.size();
+  }
+
+  /** The physical pool of one shard, bypassing the routing */
+  public DataSource shard(final int index) {
+    return shards.get(index);
+  }
+
+  @Override
+  public void close() {
+    shards.forEach(HikariDataSource::close);
+  }
+}
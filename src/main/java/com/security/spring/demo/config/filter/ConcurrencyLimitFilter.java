@@ -0,0 +1,151 @@
+package com.security.spring.demo.config.filter;
+
+import com.security.spring.demo.util.AdaptiveConcurrencyLimit;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Sheds load with a 503 before it reaches the security chain, once more requests are in flight than
+ * an {@link AdaptiveConcurrencyLimit} estimates the service can take without latency rising.
+ * {@code /api/v1/auth/**}, where BCrypt dominates, and the other {@code /api} routes have separate
+ * limits, so a login storm does not shed authenticated traffic or the reverse. The forward-auth
+ * check, though under {@code /api/v1/auth/}, only verifies a token and gates every proxied request,
+ * so it counts as authenticated traffic. Other paths, such as health checks, are not limited.
+ *
+ * <p>Registered through a {@code FilterRegistrationBean} ordered ahead of the security chain in
+ * {@code SecurityConfig}.
+ */
+public class ConcurrencyLimitFilter extends OncePerRequestFilter {
+
+  private static final String AUTH_PREFIX = "/api/v1/auth/";
+  private static final String API_PREFIX = "/api/";
+
+  private final AdaptiveConcurrencyLimit authLimit;
+  private final AdaptiveConcurrencyLimit apiLimit;
+
+  public ConcurrencyLimitFilter(
+      final ConcurrencyLimitProperties properties, final MeterRegistry meterRegistry) {
+    this.authLimit = limitOf(properties.getAuth());
+    this.apiLimit = limitOf(properties.getApi());
+    register(meterRegistry, "auth", authLimit);
+    register(meterRegistry, "api", apiLimit);
+  }
+
+  @Override
+  protected boolean shouldNotFilter(final @NonNull HttpServletRequest request) {
+    return !request.getRequestURI().startsWith(API_PREFIX);
+  }
+
+  @Override
+  protected void doFilterInternal(
+      final @NonNull HttpServletRequest request,
+      final @NonNull HttpServletResponse response,
+      final @NonNull FilterChain filterChain)
+      throws ServletException, IOException {
+    AdaptiveConcurrencyLimit limit =
+        request.getRequestURI().startsWith(AUTH_PREFIX)
+                && !ForwardAuthFilter.isCheckRequest(request)
+            ? authLimit
+            : apiLimit;
+    if (!limit.tryAcquire()) {
+      reject(response);
+      return;
+    }
+    int inFlightAtStart = limit.inFlight();
+    long startedAt = System.nanoTime();
+    boolean async = false;
+    try {
+      filterChain.doFilter(request, response);
+      if (request.isAsyncStarted()) {
+        // Streaming responses keep their permit until done, but their duration is not a sample
+        async = true;
+        request.getAsyncContext().addListener(new ReleaseOnCompletion(limit));
+      }
+    } finally {
+      if (!async) {
+        limit.release(System.nanoTime() - startedAt, inFlightAtStart);
+      }
+    }
+  }
+
+  private static void reject(final HttpServletResponse response) throws IOException {
+    response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+    response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+    response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+    response
+        .getWriter()
+        .write(
+            "{\"status\":503,\"error\":\"Service Unavailable\","
+                + "\"message\":\"Too many concurrent requests\"}");
+  }
+
+  private static AdaptiveConcurrencyLimit limitOf(
+      final ConcurrencyLimitProperties.Partition partition) {
+    return new AdaptiveConcurrencyLimit(
+        partition.getInitialLimit(), partition.getMinLimit(), partition.getMaxLimit());
+  }
+
+  private static void register(
+      final MeterRegistry meterRegistry,
+      final String partition,
+      final AdaptiveConcurrencyLimit limit) {
+    Gauge.builder("http.server.concurrency.limit", limit, AdaptiveConcurrencyLimit::limit)
+        .description("Current adaptive limit on in-flight requests")
+        .tag("partition", partition)
+        .register(meterRegistry);
+    Gauge.builder("http.server.concurrency.in-flight", limit, AdaptiveConcurrencyLimit::inFlight)
+        .description("Requests holding a concurrency permit")
+        .tag("partition", partition)
+        .register(meterRegistry);
+    FunctionCounter.builder(
+            "http.server.concurrency.rejected", limit, AdaptiveConcurrencyLimit::rejectedCount)
+        .description("Requests shed with 503 because the limit was reached")
+        .tag("partition", partition)
+        .register(meterRegistry);
+  }
+
+  /** Releases an async request's permit once, whichever way it ends */
+  private static final class ReleaseOnCompletion implements AsyncListener {
+
+    private final AdaptiveConcurrencyLimit limit;
+    private boolean released;
+
+    private ReleaseOnCompletion(final AdaptiveConcurrencyLimit limit) {
+      this.limit = limit;
+    }
+
+    @Override
+    public synchronized void onComplete(final AsyncEvent event) {
+      if (!released) {
+        released = true;
+        limit.release();
+      }
+    }
+
+    @Override
+    public void onTimeout(final AsyncEvent event) {
+      onComplete(event);
+    }
+
+    @Override
+    public void onError(final AsyncEvent event) {
+      onComplete(event);
+    }
+
+    @Override
+    public void onStartAsync(final AsyncEvent event) {}
+  }
+}
@@ -0,0 +1,33 @@
+package com.security.spring.demo.config.filter;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/** Bounds of the adaptive in-flight request limits applied by {@link ConcurrencyLimitFilter} */
+@Data
+@ConfigurationProperties(prefix = "application.concurrency-limit")
+public class ConcurrencyLimitProperties {
+
+  private boolean enabled = true;
+
+  /** Login, registration and token endpoints, dominated by password hashing */
+  private Partition auth = new Partition(20, 4, 200);
+
+  /** Every other /api route */
+  private Partition api = new Partition(100, 10, 2000);
+
+  @Data
+  public static class Partition {
+    private int initialLimit;
+    private int minLimit;
+    private int maxLimit;
+
+    public Partition() {}
+
+    public Partition(final int initialLimit, final int minLimit, final int maxLimit) {
+      this.initialLimit = initialLimit;
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+    }
+  }
+}
@@ -0,0 +1,74 @@
+package com.security.spring.demo.config.filter;
+
+import com.security.spring.demo.security.RoleMaskPrincipal;
+import com.security.spring.demo.service.RoleBitRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.util.stream.Collectors;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Answers the forward-auth subrequests of reverse proxies, such as nginx {@code auth_request} or
+ * Envoy {@code ext_authz}, at {@value #CHECK_PATH}. It runs right after {@link
+ * JwtAuthenticationFilter} and replies 204 with {@value #USER_HEADER} and {@value #ROLES_HEADER}
+ * when the token authenticated, or 401, without a body either way. The request never reaches URL
+ * authorization or Spring MVC.
+ *
+ * <p>Not a bean, so Spring Boot does not also register it as a servlet filter outside the security
+ * chain.
+ */
+public class ForwardAuthFilter extends OncePerRequestFilter {
+
+  public static final String CHECK_PATH = "/api/v1/auth/check";
+  public static final String USER_HEADER = "X-User";
+  public static final String ROLES_HEADER = "X-Roles";
+
+  private final RoleBitRegistry roleBitRegistry;
+
+  public ForwardAuthFilter(final RoleBitRegistry roleBitRegistry) {
+    this.roleBitRegistry = roleBitRegistry;
+  }
+
+  public static boolean isCheckRequest(final HttpServletRequest request) {
+    return CHECK_PATH.equals(request.getRequestURI());
+  }
+
+  @Override
+  protected boolean shouldNotFilter(final @NonNull HttpServletRequest request) {
+    return !isCheckRequest(request);
+  }
+
+  @Override
+  protected void doFilterInternal(
+      final @NonNull HttpServletRequest request,
+      final @NonNull HttpServletResponse response,
+      final @NonNull FilterChain filterChain) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    if (authentication == null
+        || !authentication.isAuthenticated()
+        || !(authentication.getPrincipal() instanceof UserDetails principal)) {
+      response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
+      response.setHeader(HttpHeaders.WWW_AUTHENTICATE, "Bearer");
+      return;
+    }
+    response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    response.setHeader(USER_HEADER, principal.getUsername());
+    response.setHeader(ROLES_HEADER, roles(principal));
+  }
+
+  private String roles(final UserDetails principal) {
+    if (principal instanceof RoleMaskPrincipal roleMaskPrincipal) {
+      return roleBitRegistry.namesOf(roleMaskPrincipal.getRoleMask());
+    }
+    return principal.getAuthorities().stream()
+        .map(GrantedAuthority::getAuthority)
+        .collect(Collectors.joining(","));
+  }
+}
@@ -1,15 +1,29 @@
 package com.security.spring.demo.config.filter;
 
-import com.security.spring.demo.service.CustomUserDetailsService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring.demo.analytics.ActiveUserAnalytics;
+import com.security.spring.demo.exception.ErrorResponse;
+import com.security.spring.demo.security.RoleMaskPrincipal;
+import com.security.spring.demo.security.token.OpaqueTokenService;
 import com.security.spring.demo.service.JwtService;
+import com.security.spring.demo.service.ResilientUserDetailsService;
+import com.security.spring.demo.service.TokenRenewalService;
+import com.security.spring.demo.service.TokenVersionService;
+import com.security.spring.demo.util.ServerTiming;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.time.LocalDateTime;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.lang.NonNull;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -23,7 +37,12 @@ import org.springframework.web.filter.OncePerRequestFilter;
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
   private final JwtService jwtService;
-  private final CustomUserDetailsService userDetailsService;
+  private final ResilientUserDetailsService userDetailsService;
+  private final ActiveUserAnalytics activeUserAnalytics;
+  private final OpaqueTokenService opaqueTokenService;
+  private final TokenRenewalService tokenRenewalService;
+  private final TokenVersionService tokenVersionService;
+  private final ObjectMapper objectMapper;
 
   @Override
   protected void doFilterInternal(
@@ -41,24 +60,88 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     try {
       final String jwt = authHeader.substring(7);
-      final String userEmail = jwtService.extractUsername(jwt);
+      if (OpaqueTokenService.isOpaqueToken(jwt)) {
+        long startedAt = ServerTiming.start();
+        authenticateOpaqueToken(jwt, request);
+        ServerTiming.stop(ServerTiming.Phase.JWT, startedAt);
+        filterChain.doFilter(request, response);
+        return;
+      }
+      long parseStartedAt = ServerTiming.start();
+      final Claims claims = jwtService.parseClaims(jwt);
+      ServerTiming.stop(ServerTiming.Phase.JWT, parseStartedAt);
+      final String userEmail = claims.getSubject();
 
       if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+        long loadStartedAt = ServerTiming.start();
         UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
+        ServerTiming.stop(ServerTiming.Phase.USER, loadStartedAt);
 
-        if (jwtService.isTokenValid(jwt, userDetails)) {
+        long checkStartedAt = ServerTiming.start();
+        boolean valid =
+            jwtService.isTokenValid(claims, userDetails)
+                && tokenVersionService.isCurrent(claims, userDetails);
+        ServerTiming.stop(ServerTiming.Phase.JWT, checkStartedAt);
+        if (valid) {
 
           UsernamePasswordAuthenticationToken authToken =
               new UsernamePasswordAuthenticationToken(
                   userDetails, null, userDetails.getAuthorities());
-          authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+          setDetails(authToken, request);
           SecurityContextHolder.getContext().setAuthentication(authToken);
+          activeUserAnalytics.record(
+              userEmail,
+              userDetails instanceof RoleMaskPrincipal principal ? principal.getRoleMask() : 0L);
+          tokenRenewalService
+              .renewIfExpiring(claims, userDetails)
+              .ifPresent(
+                  token -> response.setHeader(TokenRenewalService.RENEWED_TOKEN_HEADER, token));
         }
       }
+    } catch (AuthenticationServiceException e) {
+      // The token may be fine; tell the client to retry instead of sending it to log in again
+      log.warn("Cannot authenticate request while the user store is degraded: {}", e.getMessage());
+      response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+      response.setHeader(HttpHeaders.RETRY_AFTER, "5");
+      response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+      objectMapper.writeValue(
+          response.getOutputStream(),
+          ErrorResponse.builder()
+              .timestamp(LocalDateTime.now())
+              .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+              .error("Service Unavailable")
+              .message("User store is unavailable, retry shortly")
+              .build());
+      return;
     } catch (Exception e) {
       log.error("Cannot set user authentication: {}", e.getMessage());
     }
 
     filterChain.doFilter(request, response);
   }
+
+  private void authenticateOpaqueToken(final String token, final HttpServletRequest request) {
+    if (SecurityContextHolder.getContext().getAuthentication() != null) {
+      return;
+    }
+    opaqueTokenService
+        .resolveAccessToken(token)
+        .ifPresent(
+            principal -> {
+              UsernamePasswordAuthenticationToken authToken =
+                  new UsernamePasswordAuthenticationToken(
+                      principal, null, principal.getAuthorities());
+              setDetails(authToken, request);
+              SecurityContextHolder.getContext().setAuthentication(authToken);
+              activeUserAnalytics.record(principal.getUsername(), principal.getRoleMask());
+            });
+  }
+
+  /** Forward-auth checks never look at the details, so they skip building them */
+  private static void setDetails(
+      final UsernamePasswordAuthenticationToken authToken, final HttpServletRequest request) {
+    if (!ForwardAuthFilter.isCheckRequest(request)) {
+      authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+    }
+  }
 }
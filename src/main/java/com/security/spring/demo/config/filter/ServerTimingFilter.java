@@ -0,0 +1,61 @@
+package com.security.spring.demo.config.filter;
+
+import com.security.spring.demo.service.RoleBitRegistry;
+import com.security.spring.demo.util.ServerTiming;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import org.springframework.lang.NonNull;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Arms {@link ServerTiming} ahead of {@link JwtAuthenticationFilter} for a sampled share of
+ * requests and for requests of the configured roles. Responses with a body get the header just
+ * before it is written; bodyless responses get it here once the chain returns. Only added to the
+ * chain when either option is set.
+ *
+ * <p>Not a bean, so Spring Boot does not also register it as a servlet filter outside the security
+ * chain.
+ */
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+  private final RoleBitRegistry roleBitRegistry;
+  private final String[] roles;
+  private final double sampleRate;
+
+  public ServerTimingFilter(
+      final RoleBitRegistry roleBitRegistry, final String[] roles, final double sampleRate) {
+    this.roleBitRegistry = roleBitRegistry;
+    this.roles = roles;
+    this.sampleRate = sampleRate;
+  }
+
+  public static boolean isEnabled(final String[] roles, final double sampleRate) {
+    return roles.length > 0 || sampleRate > 0.0;
+  }
+
+  @Override
+  protected void doFilterInternal(
+      final @NonNull HttpServletRequest request,
+      final @NonNull HttpServletResponse response,
+      final @NonNull FilterChain filterChain)
+      throws ServletException, IOException {
+    boolean sampled = sampleRate > 0.0 && ThreadLocalRandom.current().nextDouble() < sampleRate;
+    // Resolved per request so roles renamed or created later are picked up
+    ServerTiming.arm(sampled, roles.length > 0 ? roleBitRegistry.maskOf(roles) : 0L);
+    try {
+      filterChain.doFilter(request, response);
+      if (!response.isCommitted()) {
+        String header = ServerTiming.take();
+        if (header != null) {
+          response.addHeader(ServerTiming.HEADER, header);
+        }
+      }
+    } finally {
+      ServerTiming.disarm();
+    }
+  }
+}
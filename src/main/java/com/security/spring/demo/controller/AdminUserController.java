@@ -0,0 +1,107 @@
+package com.security.spring.demo.controller;
+
+import com.security.spring.demo.dto.CreateUserRequest;
+import com.security.spring.demo.dto.UserPage;
+import com.security.spring.demo.dto.UserSummary;
+import com.security.spring.demo.security.RequireAnyRole;
+import com.security.spring.demo.service.BulkRoleAssignmentService;
+import com.security.spring.demo.service.TokenVersionService;
+import com.security.spring.demo.service.UserAdminService;
+import com.security.spring.demo.service.UserExportService;
+import jakarta.validation.Valid;
+import java.io.InputStream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+@RestController
+@RequestMapping("/api/v1/admin/users")
+@RequiredArgsConstructor
+@RequireAnyRole("ADMIN")
+public class AdminUserController {
+
+  private final UserAdminService userAdminService;
+  private final UserExportService userExportService;
+  private final TokenVersionService tokenVersionService;
+  private final BulkRoleAssignmentService bulkRoleAssignmentService;
+
+  @GetMapping
+  public ResponseEntity<UserPage> listUsers(
+      final @RequestParam(required = false) String cursor,
+      final @RequestParam(required = false) String role,
+      final @RequestParam(required = false) Boolean enabled,
+      final @RequestParam(defaultValue = "" + UserAdminService.DEFAULT_PAGE_SIZE) int size) {
+    return ResponseEntity.ok(userAdminService.listUsers(cursor, role, enabled, size));
+  }
+
+  /** Stream all users as NDJSON; pass the last exported id as afterId to resume */
+  @GetMapping(value = "/export", produces = "application/x-ndjson")
+  public ResponseEntity<StreamingResponseBody> exportUsers(
+      final @RequestParam(defaultValue = "0") long afterId) {
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+        .body(outputStream -> userExportService.exportUsers(afterId, outputStream));
+  }
+
+  @PostMapping
+  public ResponseEntity<UserSummary> createUser(
+      final @Valid @RequestBody CreateUserRequest request) {
+    return ResponseEntity.status(HttpStatus.CREATED).body(userAdminService.createUser(request));
+  }
+
+  /** Revoke every token of the user, e.g. after a password reset or a compromised account */
+  @PostMapping("/{id}/invalidate-tokens")
+  public ResponseEntity<Void> invalidateTokens(final @PathVariable Long id) {
+    tokenVersionService.invalidateTokens(id);
+    return ResponseEntity.noContent().build();
+  }
+
+  /**
+   * Grant a role to the users listed in the body, one id or email per line. Streams one NDJSON
+   * outcome per line: GRANTED, ALREADY_GRANTED, NOT_FOUND, INVALID or FAILED.
+   */
+  @PostMapping(
+      value = "/roles/{role}/grant",
+      consumes = {MediaType.TEXT_PLAIN_VALUE, "application/x-ndjson"},
+      produces = "application/x-ndjson")
+  public ResponseEntity<StreamingResponseBody> grantRole(
+      final @PathVariable String role, final InputStream body) {
+    return assignRole(BulkRoleAssignmentService.Operation.GRANT, role, body);
+  }
+
+  /**
+   * Revoke a role from the users listed in the body, one id or email per line, and invalidate
+   * their tokens. Streams one NDJSON outcome per line: REVOKED, NOT_GRANTED, NOT_FOUND, INVALID or
+   * FAILED.
+   */
+  @PostMapping(
+      value = "/roles/{role}/revoke",
+      consumes = {MediaType.TEXT_PLAIN_VALUE, "application/x-ndjson"},
+      produces = "application/x-ndjson")
+  public ResponseEntity<StreamingResponseBody> revokeRole(
+      final @PathVariable String role, final InputStream body) {
+    return assignRole(BulkRoleAssignmentService.Operation.REVOKE, role, body);
+  }
+
+  @DeleteMapping("/{id}")
+  public ResponseEntity<Void> deleteUser(final @PathVariable Long id) {
+    userAdminService.deleteUser(id);
+    return ResponseEntity.noContent().build();
+  }
+
+  private ResponseEntity<StreamingResponseBody> assignRole(
+      final BulkRoleAssignmentService.Operation operation,
+      final String role,
+      final InputStream body) {
+    // Resolved before streaming starts, so an unknown role is still a plain 400
+    String roleName = bulkRoleAssignmentService.requireRole(role);
+    return ResponseEntity.ok()
+        .contentType(MediaType.parseMediaType("application/x-ndjson"))
+        .body(
+            outputStream ->
+                bulkRoleAssignmentService.assign(operation, roleName, body, outputStream));
+  }
+}
@@ -35,7 +35,16 @@ public class AuthenticationController {
   }
 
   @PostMapping("/logout")
-  public ResponseEntity<Void> logout() {
+  public ResponseEntity<Void> logout(
+      final @RequestHeader(value = "Authorization", required = false) String authorization) {
+    authenticationService.logout(authorization);
+    return ResponseEntity.noContent().build();
+  }
+
+  /** Revoke every access and refresh token of the caller, on all devices */
+  @PostMapping("/logout-all")
+  public ResponseEntity<Void> logoutAll() {
+    authenticationService.logoutAll();
     return ResponseEntity.noContent().build();
   }
 }
@@ -0,0 +1,30 @@
+package com.security.spring.demo.controller;
+
+import com.security.spring.demo.dto.AvailabilityResponse;
+import com.security.spring.demo.service.AvailabilityService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/public/availability")
+@RequiredArgsConstructor
+public class AvailabilityController {
+
+  private final AvailabilityService availabilityService;
+
+  @GetMapping
+  public ResponseEntity<AvailabilityResponse> checkAvailability(
+      final @RequestParam(required = false) String email,
+      final @RequestParam(required = false) String username) {
+    if (email == null && username == null) {
+      throw new RuntimeException("Provide an email or a username");
+    }
+    return ResponseEntity.ok(
+        AvailabilityResponse.builder()
+            .emailAvailable(email != null ? availabilityService.isEmailAvailable(email) : null)
+            .usernameAvailable(
+                username != null ? availabilityService.isUsernameAvailable(username) : null)
+            .build());
+  }
+}
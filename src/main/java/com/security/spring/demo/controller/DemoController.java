@@ -1,10 +1,10 @@
 package com.security.spring.demo.controller;
 
+import com.security.spring.demo.security.RequireAnyRole;
 import java.util.HashMap;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -23,7 +23,7 @@ public class DemoController {
   }
 
   @GetMapping("/user/profile")
-  @PreAuthorize("hasAnyRole('USER', 'ADMIN')")
+  @RequireAnyRole({"USER", "ADMIN"})
   public ResponseEntity<Map<String, Object>> getUserProfile(
       final @AuthenticationPrincipal UserDetails userDetails) {
     Map<String, Object> response = new HashMap<>();
@@ -34,7 +34,7 @@ public class DemoController {
   }
 
   @GetMapping("/admin/dashboard")
-  @PreAuthorize("hasRole('ADMIN')")
+  @RequireAnyRole("ADMIN")
   public ResponseEntity<Map<String, String>> getAdminDashboard(
       final Authentication authentication) {
     Map<String, String> response = new HashMap<>();
@@ -43,24 +43,8 @@ public class DemoController {
     return ResponseEntity.ok(response);
   }
 
-  @PostMapping("/admin/users")
-  @PreAuthorize("hasRole('ADMIN')")
-  public ResponseEntity<Map<String, String>> createUser() {
-    Map<String, String> response = new HashMap<>();
-    response.put("message", "User created successfully");
-    return ResponseEntity.ok(response);
-  }
-
-  @DeleteMapping("/admin/users/{id}")
-  @PreAuthorize("hasRole('ADMIN') and hasAuthority('ROLE_ADMIN')")
-  public ResponseEntity<Map<String, String>> deleteUser(final @PathVariable Long id) {
-    Map<String, String> response = new HashMap<>();
-    response.put("message", "User deleted successfully");
-    return ResponseEntity.ok(response);
-  }
-
   @GetMapping("/moderator/content")
-  @PreAuthorize("hasAnyRole('MODERATOR', 'ADMIN')")
+  @RequireAnyRole({"MODERATOR", "ADMIN"})
   public ResponseEntity<Map<String, String>> moderateContent() {
     Map<String, String> response = new HashMap<>();
     response.put("message", "Content moderation dashboard");
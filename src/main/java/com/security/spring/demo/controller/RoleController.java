@@ -0,0 +1,27 @@
+package com.security.spring.demo.controller;
+
+import com.security.spring.demo.repository.RoleCacheEvictor;
+import com.security.spring.demo.security.RequireAnyRole;
+import com.security.spring.demo.service.RoleBitRegistry;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/admin/roles")
+@RequiredArgsConstructor
+@RequireAnyRole("ADMIN")
+public class RoleController {
+
+  private final RoleCacheEvictor roleCacheEvictor;
+  private final RoleBitRegistry roleBitRegistry;
+
+  /** Pick up roles changed directly in the database */
+  @PostMapping("/reload")
+  public ResponseEntity<Map<String, Object>> reloadRoles() {
+    roleCacheEvictor.evictAll();
+    roleBitRegistry.reload();
+    return ResponseEntity.ok(Map.of("reloaded", true));
+  }
+}
@@ -0,0 +1,22 @@
+package com.security.spring.demo.controller;
+
+import com.security.spring.demo.security.RequireAnyRole;
+import com.security.spring.demo.service.ShardRebalancer;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/admin/shards")
+@RequiredArgsConstructor
+@RequireAnyRole("ADMIN")
+public class ShardController {
+
+  private final ShardRebalancer shardRebalancer;
+
+  /** Move users to their home shards after a shard has been added */
+  @PostMapping("/rebalance")
+  public ResponseEntity<ShardRebalancer.Result> rebalance() {
+    return ResponseEntity.ok(shardRebalancer.rebalance());
+  }
+}
@@ -0,0 +1,31 @@
+package com.security.spring.demo.controller;
+
+import com.security.spring.demo.entity.UrlAuthorizationRule;
+import com.security.spring.demo.repository.UrlAuthorizationRuleRepository;
+import com.security.spring.demo.security.RequireAnyRole;
+import com.security.spring.demo.service.UrlAuthorizationRuleService;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/v1/admin/url-rules")
+@RequiredArgsConstructor
+@RequireAnyRole("ADMIN")
+public class UrlAuthorizationRuleController {
+
+  private final UrlAuthorizationRuleRepository ruleRepository;
+  private final UrlAuthorizationRuleService ruleService;
+
+  @GetMapping
+  public ResponseEntity<List<UrlAuthorizationRule>> listRules() {
+    return ResponseEntity.ok(ruleRepository.findAll());
+  }
+
+  @PostMapping("/reload")
+  public ResponseEntity<Map<String, Object>> reloadRules() {
+    return ResponseEntity.ok(Map.of("rules", ruleService.reload().size()));
+  }
+}
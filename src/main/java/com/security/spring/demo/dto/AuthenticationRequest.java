@@ -19,4 +19,7 @@ public class AuthenticationRequest {
 
   @NotBlank(message = "Password is required")
   private String password;
+
+  /** Token format to issue; JWT when omitted */
+  private TokenFormat tokenFormat;
 }
@@ -0,0 +1,41 @@
+package com.security.spring.demo.dto;
+
+import com.security.spring.demo.security.breach.NotBreached;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.Set;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class CreateUserRequest {
+
+  @NotBlank(message = "Email is required")
+  @Email(message = "Email should be valid")
+  private String email;
+
+  @NotBlank(message = "Username is required")
+  @Size(min = 3, max = 50, message = "Username must be between 3 and 50 characters")
+  private String username;
+
+  @NotBlank(message = "Password is required")
+  @Size(min = 8, message = "Password must be at least 8 characters")
+  @NotBreached
+  private String password;
+
+  @Size(max = 50, message = "First name must not exceed 50 characters")
+  private String firstName;
+
+  @Size(max = 50, message = "Last name must not exceed 50 characters")
+  private String lastName;
+
+  @NotEmpty(message = "At least one role is required")
+  private Set<String> roles;
+}
@@ -1,5 +1,6 @@
 package com.security.spring.demo.dto;
 
+import com.security.spring.demo.security.breach.NotBreached;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
@@ -24,6 +25,7 @@ public class RegisterRequest {
 
   @NotBlank(message = "Password is required")
   @Size(min = 8, message = "Password must be at least 8 characters")
+  @NotBreached
   private String password;
 
   @NotBlank(message = "First name is required")
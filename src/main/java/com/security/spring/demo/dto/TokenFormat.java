@@ -0,0 +1,9 @@
+package com.security.spring.demo.dto;
+
+/** Kind of bearer token issued at login */
+public enum TokenFormat {
+  /** Self-contained signed JWT */
+  JWT,
+  /** Random handle resolved against the server-side token store, revocable at any time */
+  OPAQUE
+}
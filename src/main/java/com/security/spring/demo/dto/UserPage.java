@@ -0,0 +1,19 @@
+package com.security.spring.demo.dto;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserPage {
+
+  private List<UserSummary> users;
+
+  /** Opaque cursor for the next page, null on the last page */
+  private String nextCursor;
+}
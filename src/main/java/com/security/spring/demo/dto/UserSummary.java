@@ -0,0 +1,24 @@
+package com.security.spring.demo.dto;
+
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Listing projection of a user, selected directly from the covering index columns */
+@Data
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSummary {
+
+  private Long id;
+  private String email;
+  private String username;
+  private String firstName;
+  private String lastName;
+  private boolean enabled;
+  private LocalDateTime createdAt;
+  private LocalDateTime lastLogin;
+}
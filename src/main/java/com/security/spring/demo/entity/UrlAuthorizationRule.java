@@ -0,0 +1,55 @@
+package com.security.spring.demo.entity;
+
+import com.security.spring.demo.security.UrlAccess;
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "url_authorization_rules")
+public class UrlAuthorizationRule {
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  /** Ant-style path: literal segments, {@code *} for one segment and a trailing {@code **} */
+  @Column(name = "path_pattern", nullable = false)
+  private String pathPattern;
+
+  /** HTTP method the rule applies to, or null for every method */
+  @Column(name = "http_method", length = 10)
+  private String httpMethod;
+
+  @Enumerated(EnumType.STRING)
+  @Column(name = "access_type", nullable = false, length = 20)
+  private UrlAccess accessType;
+
+  /** Comma separated role names, used when the access type is ROLES */
+  @Column(name = "required_roles")
+  private String requiredRoles;
+
+  @Column(name = "created_at", nullable = false, updatable = false)
+  private LocalDateTime createdAt;
+
+  @Column(name = "updated_at")
+  private LocalDateTime updatedAt;
+
+  @PrePersist
+  protected void onCreate() {
+    createdAt = LocalDateTime.now();
+    updatedAt = LocalDateTime.now();
+  }
+
+  @PreUpdate
+  protected void onUpdate() {
+    updatedAt = LocalDateTime.now();
+  }
+}
@@ -1,20 +1,29 @@
 package com.security.spring.demo.entity;
 
+import com.security.spring.demo.security.RoleMaskPrincipal;
+import com.security.spring.demo.security.TokenVersionPrincipal;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import java.util.Collection;
 import java.util.Set;
 import java.util.stream.Collectors;
+import lombok.AccessLevel;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
@@ -24,7 +33,7 @@ import org.springframework.security.core.userdetails.UserDetails;
       @UniqueConstraint(columnNames = "email"),
       @UniqueConstraint(columnNames = "username")
     })
-public class User implements UserDetails {
+public class User implements UserDetails, RoleMaskPrincipal, TokenVersionPrincipal {
 
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -46,6 +55,7 @@ public class User implements UserDetails {
   private String lastName;
 
   @ManyToMany(fetch = FetchType.EAGER)
+  @Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
   @JoinTable(
       name = "user_roles",
       joinColumns = @JoinColumn(name = "user_id"),
@@ -73,6 +83,17 @@ public class User implements UserDetails {
   @Column(name = "last_login")
   private LocalDateTime lastLogin;
 
+  @Column(name = "token_version", nullable = false)
+  private int tokenVersion;
+
+  /** Bits of {@link #roles}, computed once per load rather than on every authorization check */
+  @Transient
+  @Getter(AccessLevel.NONE)
+  @Setter(AccessLevel.NONE)
+  @EqualsAndHashCode.Exclude
+  @ToString.Exclude
+  private Long roleMask;
+
   @PrePersist
   protected void onCreate() {
     createdAt = LocalDateTime.now();
@@ -84,6 +105,16 @@ public class User implements UserDetails {
     updatedAt = LocalDateTime.now();
   }
 
+  @PostLoad
+  protected void onLoad() {
+    roleMask = maskOf(roles);
+  }
+
+  public void setRoles(final Set<Role> roles) {
+    this.roles = roles;
+    this.roleMask = null;
+  }
+
   @Override
   public Collection<? extends GrantedAuthority> getAuthorities() {
     return roles.stream()
@@ -91,6 +122,27 @@ public class User implements UserDetails {
         .collect(Collectors.toList());
   }
 
+  @Override
+  public long getRoleMask() {
+    Long mask = roleMask;
+    if (mask == null) {
+      // Built rather than loaded, or its roles were replaced since
+      mask = maskOf(roles);
+      roleMask = mask;
+    }
+    return mask;
+  }
+
+  private static long maskOf(final Set<Role> roles) {
+    long mask = 0L;
+    if (roles != null) {
+      for (Role role : roles) {
+        mask |= 1L << role.getBit();
+      }
+    }
+    return mask;
+  }
+
   @Override
   public String getPassword() {
     return password;
@@ -0,0 +1,33 @@
+package com.security.spring.demo.exception;
+
+import java.util.Locale;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.dao.DataIntegrityViolationException;
+
+/** The request conflicts with existing state, such as an email that is already registered */
+public class ConflictException extends RuntimeException {
+
+  public ConflictException(final String message) {
+    super(message);
+  }
+
+  /** Translate a violated unique constraint on the users table into a conflict */
+  public static ConflictException fromUserConstraint(final DataIntegrityViolationException ex) {
+    String constraint = null;
+    Throwable cause = ex.getCause();
+    if (cause instanceof ConstraintViolationException violation
+        && violation.getConstraintName() != null) {
+      constraint = violation.getConstraintName();
+    } else if (ex.getMostSpecificCause().getMessage() != null) {
+      constraint = ex.getMostSpecificCause().getMessage();
+    }
+    constraint = constraint != null ? constraint.toLowerCase(Locale.ROOT) : "";
+    if (constraint.contains("uk_users_email")) {
+      return new ConflictException("User with this email already exists");
+    }
+    if (constraint.contains("uk_users_username")) {
+      return new ConflictException("User with this username already exists");
+    }
+    throw ex;
+  }
+}
@@ -0,0 +1,9 @@
+package com.security.spring.demo.exception;
+
+/** A presented token is unknown, expired, revoked or has already been used */
+public class InvalidTokenException extends RuntimeException {
+
+  public InvalidTokenException(final String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,34 @@
+package com.security.spring.demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A request checked against the URL authorization rules in the filter chain */
+@Name("com.security.spring.demo.AuthorizationDecision")
+@Label("Authorization Decision")
+@Category({"Security Demo", "Authorization"})
+@StackTrace(false)
+public class AuthorizationDecisionEvent extends Event {
+
+  @Label("Method")
+  public String method;
+
+  @Label("Path")
+  public String path;
+
+  @Label("Rule")
+  @Description("Access type of the matched rule")
+  public String rule;
+
+  @Label("Subject Hash")
+  @Description("64-bit hash of the authenticated subject, 0 when anonymous")
+  public long subjectHash;
+
+  @Label("Outcome")
+  @Description("GRANTED or DENIED")
+  public String outcome;
+}
@@ -0,0 +1,54 @@
+package com.security.spring.demo.jfr;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+/** Records a {@link PasswordHashEvent} around each call to the wrapped encoder */
+@RequiredArgsConstructor
+public class JfrPasswordEncoder implements PasswordEncoder {
+
+  private final PasswordEncoder delegate;
+
+  @Override
+  public String encode(final CharSequence rawPassword) {
+    PasswordHashEvent event = new PasswordHashEvent();
+    event.begin();
+    String outcome = "ERROR";
+    try {
+      String encoded = delegate.encode(rawPassword);
+      outcome = "ENCODED";
+      return encoded;
+    } finally {
+      commit(event, "ENCODE", outcome);
+    }
+  }
+
+  @Override
+  public boolean matches(final CharSequence rawPassword, final String encodedPassword) {
+    PasswordHashEvent event = new PasswordHashEvent();
+    event.begin();
+    String outcome = "ERROR";
+    try {
+      boolean matches = delegate.matches(rawPassword, encodedPassword);
+      outcome = matches ? "MATCH" : "MISMATCH";
+      return matches;
+    } finally {
+      commit(event, "MATCHES", outcome);
+    }
+  }
+
+  @Override
+  public boolean upgradeEncoding(final String encodedPassword) {
+    return delegate.upgradeEncoding(encodedPassword);
+  }
+
+  private static void commit(
+      final PasswordHashEvent event, final String operation, final String outcome) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.outcome = outcome;
+      event.commit();
+    }
+  }
+}
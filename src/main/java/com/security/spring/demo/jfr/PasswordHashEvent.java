@@ -0,0 +1,27 @@
+package com.security.spring.demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A password being hashed or checked against a stored hash. The encoder is not told whose password
+ * it is, so unlike the other events this one has no subject.
+ */
+@Name("com.security.spring.demo.PasswordHash")
+@Label("Password Hash")
+@Category({"Security Demo", "Authentication"})
+@StackTrace(false)
+public class PasswordHashEvent extends Event {
+
+  @Label("Operation")
+  @Description("ENCODE or MATCHES")
+  public String operation;
+
+  @Label("Outcome")
+  @Description("ENCODED, MATCH, MISMATCH or ERROR")
+  public String outcome;
+}
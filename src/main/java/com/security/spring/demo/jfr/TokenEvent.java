@@ -0,0 +1,27 @@
+package com.security.spring.demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A JWT being signed or parsed and verified */
+@Name("com.security.spring.demo.Token")
+@Label("Token Operation")
+@Category({"Security Demo", "Authentication"})
+@StackTrace(false)
+public class TokenEvent extends Event {
+
+  @Label("Operation")
+  @Description("SIGN_ACCESS, SIGN_REFRESH or VERIFY")
+  public String operation;
+
+  @Label("Subject Hash")
+  @Description("64-bit hash of the token subject, 0 when unknown")
+  public long subjectHash;
+
+  @Label("Outcome")
+  public String outcome;
+}
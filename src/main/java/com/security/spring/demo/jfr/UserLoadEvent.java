@@ -0,0 +1,24 @@
+package com.security.spring.demo.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/** A user being loaded from the database, or the in-memory user replica, for authentication */
+@Name("com.security.spring.demo.UserLoad")
+@Label("User Load")
+@Category({"Security Demo", "Authentication"})
+@StackTrace(false)
+public class UserLoadEvent extends Event {
+
+  @Label("Subject Hash")
+  @Description("64-bit hash of the requested email")
+  public long subjectHash;
+
+  @Label("Outcome")
+  @Description("FOUND, REPLICA, NOT_FOUND or ERROR")
+  public String outcome;
+}
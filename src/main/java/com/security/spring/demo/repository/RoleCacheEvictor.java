@@ -0,0 +1,42 @@
+package com.security.spring.demo.repository;
+
+import com.security.spring.demo.entity.Role;
+import com.security.spring.demo.entity.User;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * Evicts cached role data. Changes made through JPA keep the second-level cache current on their
+ * own; this is for roles or user_roles rows changed behind Hibernate's back, such as by a migration
+ * or a bulk SQL update.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RoleCacheEvictor {
+
+  public static final String QUERY_REGION = "role-queries";
+
+  private final EntityManagerFactory entityManagerFactory;
+
+  /** Evict every cached role, user role collection and role query */
+  public void evictAll() {
+    Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    cache.evictEntityData(Role.class);
+    cache.evictCollectionData(User.class.getName() + ".roles");
+    cache.evictQueryRegion(QUERY_REGION);
+    log.info("Evicted cached roles and user role collections");
+  }
+
+  /** Evict the cached role collections of specific users */
+  public void evictUserRoles(final Iterable<Long> userIds) {
+    Cache cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    for (Long userId : userIds) {
+      cache.evictCollectionData(User.class.getName() + ".roles", userId);
+    }
+  }
+}
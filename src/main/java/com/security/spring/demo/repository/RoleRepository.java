@@ -1,12 +1,20 @@
 package com.security.spring.demo.repository;
 
 import com.security.spring.demo.entity.Role;
+import jakarta.persistence.QueryHint;
 import java.util.Optional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface RoleRepository extends JpaRepository<Role, Long> {
 
+  /** Answered from the role-queries region of the query cache after the first call */
+  @QueryHints({
+    @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+    @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = RoleCacheEvictor.QUERY_REGION)
+  })
   Optional<Role> findByName(String name);
 }
@@ -0,0 +1,22 @@
+package com.security.spring.demo.repository;
+
+import com.security.spring.demo.entity.UrlAuthorizationRule;
+import java.time.LocalDateTime;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface UrlAuthorizationRuleRepository extends JpaRepository<UrlAuthorizationRule, Long> {
+
+  /** Row count and latest modification time, used to detect rule changes cheaply */
+  @Query(
+      "select count(r) as ruleCount, max(r.updatedAt) as lastUpdated from UrlAuthorizationRule r")
+  Fingerprint fingerprint();
+
+  interface Fingerprint {
+    long getRuleCount();
+
+    LocalDateTime getLastUpdated();
+  }
+}
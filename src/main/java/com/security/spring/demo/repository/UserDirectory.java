@@ -0,0 +1,165 @@
+package com.security.spring.demo.repository;
+
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.exception.ConflictException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Cluster-wide registry of taken usernames and emails on shard 0. A user's own shard can only
+ * enforce uniqueness among its own rows, so registrations first claim their username and email
+ * here. Claims are written outside the registering transaction and compensated if it rolls back.
+ * With sharding disabled the unique constraints of the users table suffice and this is a no-op.
+ */
+@Component
+public class UserDirectory {
+
+  private final JdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+
+  public UserDirectory(final ShardRouter shardRouter) {
+    this.jdbcTemplate = shardRouter.isEnabled() ? new JdbcTemplate(shardRouter.shard(0)) : null;
+    this.transactionTemplate =
+        shardRouter.isEnabled()
+            ? new TransactionTemplate(new DataSourceTransactionManager(shardRouter.shard(0)))
+            : null;
+  }
+
+  /**
+   * Claim a username and email for a new user, throwing a conflict when either is taken. Inside a
+   * transaction the claim is released again unless that transaction commits.
+   */
+  public void reserve(final String username, final String email) {
+    if (jdbcTemplate == null) {
+      return;
+    }
+    if (!tryReserve(username, email)) {
+      throw new ConflictException(
+          isUsernameTaken(username)
+              ? "User with this username already exists"
+              : "User with this email already exists");
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(final int status) {
+              if (status != STATUS_COMMITTED) {
+                release(email);
+              }
+            }
+          });
+    }
+  }
+
+  /** Claim a username and email, returning false instead of throwing when either is taken */
+  public boolean tryReserve(final String username, final String email) {
+    try {
+      jdbcTemplate.update(
+          "INSERT INTO user_directory (username, email, reserved_at) VALUES (?, ?, ?)",
+          username,
+          email,
+          Timestamp.valueOf(LocalDateTime.now()));
+      return true;
+    } catch (DuplicateKeyException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Claim every unclaimed username and email among the given claims in one round trip, returning
+   * how many were added. Claims conflicting with an existing entry are skipped.
+   */
+  public int tryReserveAll(final List<Claim> claims) {
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    try {
+      int[] counts =
+          transactionTemplate.execute(
+              status ->
+                  jdbcTemplate.batchUpdate(
+                      "INSERT INTO user_directory (username, email, reserved_at)"
+                          + " SELECT CAST(? AS VARCHAR(50)), CAST(? AS VARCHAR(100)),"
+                          + " CAST(? AS TIMESTAMP) WHERE NOT EXISTS (SELECT 1 FROM user_directory"
+                          + " WHERE username = ? OR email = ?)",
+                      claims.stream()
+                          .map(
+                              claim ->
+                                  new Object[] {
+                                    claim.username(),
+                                    claim.email(),
+                                    now,
+                                    claim.username(),
+                                    claim.email()
+                                  })
+                          .toList()));
+      return Arrays.stream(counts).filter(count -> count > 0).sum();
+    } catch (DuplicateKeyException e) {
+      // A registration claimed one of them in between; the batch rolled back, so go one by one
+      int added = 0;
+      for (Claim claim : claims) {
+        if (tryReserve(claim.username(), claim.email())) {
+          added++;
+        }
+      }
+      return added;
+    }
+  }
+
+  /** Free a deleted user's username and email, after the surrounding transaction commits */
+  public void release(final String email) {
+    if (jdbcTemplate == null) {
+      return;
+    }
+    if (TransactionSynchronizationManager.isSynchronizationActive()) {
+      TransactionSynchronizationManager.registerSynchronization(
+          new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+              delete(email);
+            }
+          });
+    } else {
+      delete(email);
+    }
+  }
+
+  public boolean isUsernameTaken(final String username) {
+    return exists("SELECT COUNT(*) FROM user_directory WHERE username = ?", username);
+  }
+
+  public boolean isEmailTaken(final String email) {
+    return exists("SELECT COUNT(*) FROM user_directory WHERE email = ?", email);
+  }
+
+  /** Up to {@code limit} claims made before the given time, by username after the given one */
+  public List<Claim> claimsReservedBefore(
+      final LocalDateTime reservedBefore, final String afterUsername, final int limit) {
+    return jdbcTemplate.query(
+        "SELECT username, email FROM user_directory WHERE reserved_at < ? AND username > ?"
+            + " ORDER BY username LIMIT ?",
+        (rs, rowNum) -> new Claim(rs.getString("username"), rs.getString("email")),
+        Timestamp.valueOf(reservedBefore),
+        afterUsername,
+        limit);
+  }
+
+  private boolean exists(final String sql, final String value) {
+    Integer count = jdbcTemplate.queryForObject(sql, Integer.class, value);
+    return count != null && count > 0;
+  }
+
+  private void delete(final String email) {
+    jdbcTemplate.update("DELETE FROM user_directory WHERE email = ?", email);
+  }
+
+  public record Claim(String username, String email) {}
+}
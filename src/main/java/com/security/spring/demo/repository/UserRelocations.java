@@ -0,0 +1,73 @@
+package com.security.spring.demo.repository;
+
+import com.security.spring.demo.config.datasource.ShardRouter;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cluster-wide record on shard 0 of the shards that rebalanced users moved to. Each instance loads
+ * it into the {@link ShardRouter} at startup and then periodically, so ids keep routing to their
+ * users after a move. With sharding disabled nothing ever moves and this is a no-op.
+ */
+@Component
+@Slf4j
+public class UserRelocations {
+
+  /** Polls overlap by this much so relocations stamped by a clock running behind are not skipped */
+  private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+  private final ShardRouter shardRouter;
+  private final JdbcTemplate jdbcTemplate;
+  private volatile LocalDateTime loadedSince = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+  public UserRelocations(final ShardRouter shardRouter) {
+    this.shardRouter = shardRouter;
+    this.jdbcTemplate = shardRouter.isEnabled() ? new JdbcTemplate(shardRouter.shard(0)) : null;
+  }
+
+  /** Record that the users moved to the shard, and route their ids there on this instance */
+  public void record(final List<Long> userIds, final int shard) {
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    jdbcTemplate.batchUpdate(
+        "UPDATE user_relocations SET shard = ?, relocated_at = ? WHERE user_id = ?",
+        userIds.stream().map(id -> new Object[] {shard, now, id}).toList());
+    jdbcTemplate.batchUpdate(
+        "INSERT INTO user_relocations (user_id, shard, relocated_at)"
+            + " SELECT CAST(? AS BIGINT), CAST(? AS INTEGER), CAST(? AS TIMESTAMP)"
+            + " WHERE NOT EXISTS (SELECT 1 FROM user_relocations WHERE user_id = ?)",
+        userIds.stream().map(id -> new Object[] {id, shard, now, id}).toList());
+    userIds.forEach(id -> shardRouter.relocate(id, shard));
+  }
+
+  /** Load relocations recorded by any instance since the previous load into the router */
+  @EventListener(ApplicationReadyEvent.class)
+  @Scheduled(
+      fixedDelayString = "${application.datasource.shards.relocation-refresh-interval:10000}",
+      initialDelayString = "${application.datasource.shards.relocation-refresh-interval:10000}")
+  public synchronized void refresh() {
+    if (jdbcTemplate == null) {
+      return;
+    }
+    LocalDateTime started = LocalDateTime.now();
+    long[] loaded = {0};
+    jdbcTemplate.query(
+        "SELECT user_id, shard FROM user_relocations WHERE relocated_at >= ?",
+        (RowCallbackHandler)
+            rs -> {
+              shardRouter.relocate(rs.getLong("user_id"), rs.getInt("shard"));
+              loaded[0]++;
+            },
+        Timestamp.valueOf(loadedSince));
+    loadedSince = started.minus(CLOCK_SKEW);
+    log.debug("Loaded {} user relocations", loaded[0]);
+  }
+}
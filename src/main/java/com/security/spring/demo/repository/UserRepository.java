@@ -1,16 +1,78 @@
 package com.security.spring.demo.repository;
 
 import com.security.spring.demo.entity.User;
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
 
   Optional<User> findByEmail(String email);
 
   boolean existsByEmail(String email);
 
   boolean existsByUsername(String username);
+
+  @Query("select u.email, u.username from User u")
+  Stream<Object[]> streamEmailsAndUsernames();
+
+  @Query("select u.email, u.username from User u where u.createdAt >= :createdSince")
+  Stream<Object[]> streamEmailsAndUsernamesCreatedSince(
+      @Param("createdSince") LocalDateTime createdSince);
+
+  /** Id and token version of every user whose version was ever raised */
+  @Query("select u.id, u.tokenVersion from User u where u.tokenVersion > 0")
+  Stream<Object[]> streamRaisedTokenVersions();
+
+  @Query("select u.id from User u")
+  Stream<Long> streamIds();
+
+  /** Leave a tombstone so every instance drops the user from its replica on the next poll */
+  @Modifying
+  @Query(
+      value = "INSERT INTO user_deletions (user_id, deleted_at) VALUES (:id, CURRENT_TIMESTAMP)",
+      nativeQuery = true)
+  int recordDeletion(@Param("id") Long id);
+
+  @Modifying
+  @Query(value = "DELETE FROM user_deletions WHERE deleted_at < :before", nativeQuery = true)
+  int deleteDeletionsBefore(@Param("before") LocalDateTime before);
+
+  /** Ids and deletion times of users deleted after the given time, oldest first */
+  @Query(
+      value =
+          "SELECT user_id, deleted_at FROM user_deletions WHERE deleted_at > :after"
+              + " ORDER BY deleted_at",
+      nativeQuery = true)
+  List<Object[]> findDeletionsAfter(@Param("after") LocalDateTime after);
+
+  /** Also touches updatedAt so the change reaches the in-memory user replica */
+  @Modifying
+  @Query(
+      "update User u set u.tokenVersion = u.tokenVersion + 1, u.updatedAt = current_timestamp"
+          + " where u.id = :id")
+  int incrementTokenVersion(@Param("id") Long id);
+
+  /**
+   * Record a login in its own short transaction. Leaves updatedAt alone, since the login time is
+   * not part of the in-memory user replica.
+   */
+  @Modifying
+  @Transactional
+  @Query("update User u set u.lastLogin = :lastLogin where u.id = :id")
+  int updateLastLogin(@Param("id") Long id, @Param("lastLogin") LocalDateTime lastLogin);
+
+  @Query("select u.email from User u where u.id = :id")
+  Optional<String> findEmailById(@Param("id") Long id);
+
+  @Query("select u.tokenVersion from User u where u.id = :id")
+  Optional<Integer> findTokenVersionById(@Param("id") Long id);
 }
@@ -0,0 +1,42 @@
+package com.security.spring.demo.repository;
+
+import com.security.spring.demo.dto.UserSummary;
+import jakarta.persistence.Tuple;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface UserRepositoryCustom {
+
+  /**
+   * Keyset page of users ordered by (createdAt, id), starting after the given position.
+   *
+   * @param afterCreatedAt createdAt of the last row of the previous page, or null for the first
+   * @param afterId id of the last row of the previous page, ignored for the first page
+   * @param roleName only users holding this role, or null for any
+   * @param enabled only users with this enabled flag, or null for any
+   */
+  List<UserSummary> findSummariesAfter(
+      LocalDateTime afterCreatedAt, Long afterId, String roleName, Boolean enabled, int limit);
+
+  /**
+   * Forward-only stream of users joined to their role names, one row per role, ordered by id. The
+   * rows are scalar tuples, so nothing is attached to the persistence context while streaming. Must
+   * be consumed inside a transaction and closed by the caller.
+   */
+  Stream<Tuple> streamExportRows(long afterId, int fetchSize);
+
+  /**
+   * Authentication state of the users changed after the given position, ordered by (updatedAt,
+   * id), as scalar tuples of id, email, password, the four account flags, tokenVersion and
+   * updatedAt.
+   */
+  List<Tuple> findAuthenticationStateAfter(LocalDateTime afterUpdatedAt, long afterId, int limit);
+
+  /**
+   * (user id, role bit) pairs of every user whose (updatedAt, id) lies after the first position and
+   * at or before the second, i.e. the roles of one page of {@link #findAuthenticationStateAfter}.
+   */
+  List<Object[]> findRoleBitsBetween(
+      LocalDateTime afterUpdatedAt, long afterId, LocalDateTime toUpdatedAt, long toId);
+}
@@ -0,0 +1,118 @@
+package com.security.spring.demo.repository;
+
+import com.security.spring.demo.dto.UserSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.TypedQuery;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+import org.hibernate.jpa.HibernateHints;
+
+/**
+ * Builds the listing query from only the predicates in use, so each filter combination gets its own
+ * plan that can seek the matching (created_at, id) index instead of a catch-all "or is null" plan.
+ */
+public class UserRepositoryImpl implements UserRepositoryCustom {
+
+  @PersistenceContext private EntityManager entityManager;
+
+  @Override
+  public List<UserSummary> findSummariesAfter(
+      final LocalDateTime afterCreatedAt,
+      final Long afterId,
+      final String roleName,
+      final Boolean enabled,
+      final int limit) {
+    StringBuilder jpql =
+        new StringBuilder(
+            "select new com.security.spring.demo.dto.UserSummary("
+                + "u.id, u.email, u.username, u.firstName, u.lastName, u.enabled, u.createdAt,"
+                + " u.lastLogin) from User u where 1 = 1");
+    if (afterCreatedAt != null) {
+      // The redundant >= gives the planner a range start on the index; the "or" alone has none
+      jpql.append(
+          " and u.createdAt >= :afterCreatedAt and (u.createdAt > :afterCreatedAt"
+              + " or (u.createdAt = :afterCreatedAt and u.id > :afterId))");
+    }
+    if (enabled != null) {
+      jpql.append(" and u.enabled = :enabled");
+    }
+    if (roleName != null) {
+      jpql.append(" and exists (select 1 from u.roles r where r.name = :roleName)");
+    }
+    jpql.append(" order by u.createdAt, u.id");
+
+    TypedQuery<UserSummary> query =
+        entityManager.createQuery(jpql.toString(), UserSummary.class).setMaxResults(limit);
+    if (afterCreatedAt != null) {
+      query.setParameter("afterCreatedAt", afterCreatedAt).setParameter("afterId", afterId);
+    }
+    if (enabled != null) {
+      query.setParameter("enabled", enabled);
+    }
+    if (roleName != null) {
+      query.setParameter("roleName", roleName);
+    }
+    return query.getResultList();
+  }
+
+  @Override
+  public Stream<Tuple> streamExportRows(final long afterId, final int fetchSize) {
+    return entityManager
+        .createQuery(
+            "select u.id as id, u.email as email, u.username as username,"
+                + " u.firstName as firstName, u.lastName as lastName, u.enabled as enabled,"
+                + " u.createdAt as createdAt, u.lastLogin as lastLogin, r.name as role"
+                + " from User u left join u.roles r where u.id > :afterId order by u.id",
+            Tuple.class)
+        .setParameter("afterId", afterId)
+        .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+        .setHint(HibernateHints.HINT_READ_ONLY, true)
+        .getResultStream();
+  }
+
+  @Override
+  public List<Tuple> findAuthenticationStateAfter(
+      final LocalDateTime afterUpdatedAt, final long afterId, final int limit) {
+    return entityManager
+        .createQuery(
+            "select u.id as id, u.email as email, u.password as password,"
+                + " u.accountNonExpired as accountNonExpired,"
+                + " u.accountNonLocked as accountNonLocked,"
+                + " u.credentialsNonExpired as credentialsNonExpired, u.enabled as enabled,"
+                + " u.tokenVersion as tokenVersion, u.updatedAt as updatedAt from User u"
+                + " where u.updatedAt >= :afterUpdatedAt and (u.updatedAt > :afterUpdatedAt"
+                + " or (u.updatedAt = :afterUpdatedAt and u.id > :afterId))"
+                + " order by u.updatedAt, u.id",
+            Tuple.class)
+        .setParameter("afterUpdatedAt", afterUpdatedAt)
+        .setParameter("afterId", afterId)
+        .setMaxResults(limit)
+        .setHint(HibernateHints.HINT_READ_ONLY, true)
+        .getResultList();
+  }
+
+  @Override
+  public List<Object[]> findRoleBitsBetween(
+      final LocalDateTime afterUpdatedAt,
+      final long afterId,
+      final LocalDateTime toUpdatedAt,
+      final long toId) {
+    return entityManager
+        .createQuery(
+            "select u.id, r.bit from User u join u.roles r"
+                + " where u.updatedAt >= :afterUpdatedAt and u.updatedAt <= :toUpdatedAt"
+                + " and (u.updatedAt > :afterUpdatedAt"
+                + " or (u.updatedAt = :afterUpdatedAt and u.id > :afterId))"
+                + " and (u.updatedAt < :toUpdatedAt"
+                + " or (u.updatedAt = :toUpdatedAt and u.id <= :toId))",
+            Object[].class)
+        .setParameter("afterUpdatedAt", afterUpdatedAt)
+        .setParameter("afterId", afterId)
+        .setParameter("toUpdatedAt", toUpdatedAt)
+        .setParameter("toId", toId)
+        .getResultList();
+  }
+}
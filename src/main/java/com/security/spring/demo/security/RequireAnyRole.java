@@ -0,0 +1,20 @@
+package com.security.spring.demo.security;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Grants access when the principal holds at least one of the given roles. Role names may be given
+ * with or without the {@code ROLE_} prefix. Evaluated as a single AND against the principal's role
+ * mask, see {@link RoleMaskAuthorizationManager}.
+ */
+@Target({ElementType.METHOD, ElementType.TYPE})
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface RequireAnyRole {
+
+  String[] value();
+}
@@ -0,0 +1,82 @@
+package com.security.spring.demo.security;
+
+import com.security.spring.demo.service.RoleBitRegistry;
+import com.security.spring.demo.util.ServerTiming;
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+
+/**
+ * Authorizes {@link RequireAnyRole} methods by AND-ing the principal's role mask with the mask the
+ * annotation resolves to. The required mask is resolved once per method and cached.
+ */
+public class RoleMaskAuthorizationManager implements AuthorizationManager<MethodInvocation> {
+
+  private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+  private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+
+  private final ObjectProvider<RoleBitRegistry> roleBitRegistry;
+  private final Map<Method, Long> requiredMasks = new ConcurrentHashMap<>();
+
+  public RoleMaskAuthorizationManager(final ObjectProvider<RoleBitRegistry> roleBitRegistry) {
+    this.roleBitRegistry = roleBitRegistry;
+  }
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public AuthorizationDecision check(
+      final Supplier<Authentication> authentication, final MethodInvocation invocation) {
+    long startedAt = ServerTiming.start();
+    try {
+      final long requiredMask = requiredMask(invocation);
+      final Authentication current = authentication.get();
+      if (current != null
+          && current.isAuthenticated()
+          && current.getPrincipal() instanceof RoleMaskPrincipal principal
+          && principal.hasAnyRole(requiredMask)) {
+        return GRANTED;
+      }
+      return DENIED;
+    } finally {
+      ServerTiming.stop(ServerTiming.Phase.AUTHZ, startedAt);
+    }
+  }
+
+  private long requiredMask(final MethodInvocation invocation) {
+    Long cached = requiredMasks.get(invocation.getMethod());
+    if (cached != null) {
+      return cached;
+    }
+    long mask = resolve(invocation);
+    // Roles missing from the table are not cached so they resolve once they are created
+    if (mask != 0L) {
+      requiredMasks.put(invocation.getMethod(), mask);
+    }
+    return mask;
+  }
+
+  private long resolve(final MethodInvocation invocation) {
+    Class<?> targetClass =
+        invocation.getThis() != null
+            ? AopUtils.getTargetClass(invocation.getThis())
+            : invocation.getMethod().getDeclaringClass();
+    Method method = AopUtils.getMostSpecificMethod(invocation.getMethod(), targetClass);
+    RequireAnyRole annotation =
+        AnnotatedElementUtils.findMergedAnnotation(method, RequireAnyRole.class);
+    if (annotation == null) {
+      annotation = AnnotatedElementUtils.findMergedAnnotation(targetClass, RequireAnyRole.class);
+    }
+    if (annotation == null) {
+      throw new IllegalStateException("No @RequireAnyRole found on " + method);
+    }
+    return roleBitRegistry.getObject().maskOf(annotation.value());
+  }
+}
@@ -0,0 +1,11 @@
+package com.security.spring.demo.security;
+
+/** A principal whose roles are encoded as a bit mask, one bit per row of the roles table */
+public interface RoleMaskPrincipal {
+
+  long getRoleMask();
+
+  default boolean hasAnyRole(final long requiredMask) {
+    return (getRoleMask() & requiredMask) != 0L;
+  }
+}
@@ -0,0 +1,12 @@
+package com.security.spring.demo.security;
+
+/**
+ * A principal whose tokens carry a version. Raising the version invalidates every token issued
+ * with an older one.
+ */
+public interface TokenVersionPrincipal {
+
+  Long getId();
+
+  int getTokenVersion();
+}
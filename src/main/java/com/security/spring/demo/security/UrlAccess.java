@@ -0,0 +1,9 @@
+package com.security.spring.demo.security;
+
+/** Access levels a URL authorization rule can require */
+public enum UrlAccess {
+  PERMIT_ALL,
+  AUTHENTICATED,
+  ROLES,
+  DENY_ALL
+}
@@ -0,0 +1,77 @@
+package com.security.spring.demo.security;
+
+import com.security.spring.demo.jfr.AuthorizationDecisionEvent;
+import com.security.spring.demo.service.UrlAuthorizationRuleService;
+import com.security.spring.demo.util.Hashing;
+import jakarta.servlet.http.HttpServletRequest;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.authentication.AuthenticationTrustResolver;
+import org.springframework.security.authentication.AuthenticationTrustResolverImpl;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.AuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.web.access.intercept.RequestAuthorizationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.UrlPathHelper;
+
+/** Authorizes requests against the database-driven URL rules compiled by the rule service */
+@Component
+@RequiredArgsConstructor
+public class UrlRuleAuthorizationManager
+    implements AuthorizationManager<RequestAuthorizationContext> {
+
+  private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+  private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+  private static final AuthenticationTrustResolver TRUST_RESOLVER =
+      new AuthenticationTrustResolverImpl();
+
+  private final UrlAuthorizationRuleService ruleService;
+
+  @Override
+  @SuppressWarnings("deprecation")
+  public AuthorizationDecision check(
+      final Supplier<Authentication> authentication, final RequestAuthorizationContext context) {
+    final AuthorizationDecisionEvent event = new AuthorizationDecisionEvent();
+    event.begin();
+    final HttpServletRequest request = context.getRequest();
+    // Decoded like the handler mappings see it, so an encoded segment cannot skip its rule
+    final String path = UrlPathHelper.defaultInstance.getPathWithinApplication(request);
+    final UrlRuleTrie.Rule rule = ruleService.currentRules().match(request.getMethod(), path);
+    final AuthorizationDecision decision = decide(authentication, rule);
+    event.end();
+    if (event.shouldCommit()) {
+      final Authentication current = authentication.get();
+      event.method = request.getMethod();
+      event.path = path;
+      event.rule = rule.access().name();
+      event.subjectHash = isAuthenticated(current) ? Hashing.hash64(current.getName()) : 0L;
+      event.outcome = decision.isGranted() ? "GRANTED" : "DENIED";
+      event.commit();
+    }
+    return decision;
+  }
+
+  private static AuthorizationDecision decide(
+      final Supplier<Authentication> authentication, final UrlRuleTrie.Rule rule) {
+    return switch (rule.access()) {
+      case PERMIT_ALL -> GRANTED;
+      case DENY_ALL -> DENIED;
+      case AUTHENTICATED -> isAuthenticated(authentication.get()) ? GRANTED : DENIED;
+      case ROLES -> {
+        final Authentication current = authentication.get();
+        yield isAuthenticated(current)
+                && current.getPrincipal() instanceof RoleMaskPrincipal principal
+                && principal.hasAnyRole(rule.roleMask())
+            ? GRANTED
+            : DENIED;
+      }
+    };
+  }
+
+  private static boolean isAuthenticated(final Authentication authentication) {
+    return authentication != null
+        && authentication.isAuthenticated()
+        && !TRUST_RESOLVER.isAnonymous(authentication);
+  }
+}
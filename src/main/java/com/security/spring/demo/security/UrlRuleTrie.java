@@ -0,0 +1,207 @@
+package com.security.spring.demo.security;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Immutable prefix trie over path segments. Lookups walk the request path once, preferring literal
+ * segments over {@code *}, and {@code *} over a trailing {@code **}; the deepest match wins. Rules
+ * bound to an HTTP method take precedence over method-less rules on the same pattern.
+ */
+public final class UrlRuleTrie {
+
+  public record Rule(UrlAccess access, long roleMask) {}
+
+  /** Applied when no pattern matches, mirroring {@code anyRequest().authenticated()} */
+  public static final Rule DEFAULT_RULE = new Rule(UrlAccess.AUTHENTICATED, 0L);
+
+  public static final UrlRuleTrie EMPTY = new Builder().build();
+
+  private static final String SINGLE_SEGMENT = "*";
+  private static final String REMAINING_SEGMENTS = "**";
+
+  private final Node root;
+  private final int size;
+
+  private UrlRuleTrie(final Node root, final int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /** Find the rule for a request path, which must start with {@code /} */
+  public Rule match(final String method, final String path) {
+    Rule rule = match(root, path, path.isEmpty() ? 0 : 1, method);
+    return rule != null ? rule : DEFAULT_RULE;
+  }
+
+  private static Rule match(
+      final Node node, final String path, final int pos, final String method) {
+    final Rule remainder = node.remainder != null ? node.remainder.forMethod(method) : null;
+    if (pos >= path.length()) {
+      final Rule exact = node.exact != null ? node.exact.forMethod(method) : null;
+      return exact != null ? exact : remainder;
+    }
+    int end = path.indexOf('/', pos);
+    if (end < 0) {
+      end = path.length();
+    }
+    final int next = Math.min(end + 1, path.length());
+    final Node literal = node.literal(path, pos, end);
+    if (literal != null) {
+      final Rule rule = match(literal, path, next, method);
+      if (rule != null) {
+        return rule;
+      }
+    }
+    if (node.wildcard != null) {
+      final Rule rule = match(node.wildcard, path, next, method);
+      if (rule != null) {
+        return rule;
+      }
+    }
+    return remainder;
+  }
+
+  private static final class Node {
+    private final String[] segments;
+    private final Node[] children;
+    private final Node wildcard;
+    private final Rules exact;
+    private final Rules remainder;
+
+    private Node(
+        final String[] segments,
+        final Node[] children,
+        final Node wildcard,
+        final Rules exact,
+        final Rules remainder) {
+      this.segments = segments;
+      this.children = children;
+      this.wildcard = wildcard;
+      this.exact = exact;
+      this.remainder = remainder;
+    }
+
+    private Node literal(final String path, final int start, final int end) {
+      final int length = end - start;
+      for (int i = 0; i < segments.length; i++) {
+        final String segment = segments[i];
+        if (segment.length() == length && path.regionMatches(start, segment, 0, length)) {
+          return children[i];
+        }
+      }
+      return null;
+    }
+  }
+
+  private static final class Rules {
+    private final String[] methods;
+    private final Rule[] methodRules;
+    private final Rule anyMethod;
+
+    private Rules(final Map<String, Rule> byMethod, final Rule anyMethod) {
+      this.methods = byMethod.keySet().toArray(String[]::new);
+      this.methodRules = byMethod.values().toArray(Rule[]::new);
+      this.anyMethod = anyMethod;
+    }
+
+    private Rule forMethod(final String method) {
+      for (int i = 0; i < methods.length; i++) {
+        if (methods[i].equals(method)) {
+          return methodRules[i];
+        }
+      }
+      return anyMethod;
+    }
+  }
+
+  /** Mutable builder; {@link #build()} freezes it into an immutable trie */
+  public static final class Builder {
+
+    private final BuilderNode root = new BuilderNode();
+    private int size;
+
+    /**
+     * Add a rule. Supported patterns are literal segments, {@code *} for exactly one segment and a
+     * trailing {@code **} for any remainder, including none.
+     *
+     * @param method HTTP method, or null for every method
+     */
+    public Builder add(final String pattern, final String method, final Rule rule) {
+      if (pattern == null || !pattern.startsWith("/")) {
+        throw new IllegalArgumentException("Path pattern must start with '/': " + pattern);
+      }
+      String normalizedMethod = method != null ? method.toUpperCase(Locale.ROOT) : null;
+      String[] segments = pattern.length() == 1 ? new String[0] : pattern.substring(1).split("/");
+      BuilderNode node = root;
+      for (int i = 0; i < segments.length; i++) {
+        String segment = segments[i];
+        if (REMAINING_SEGMENTS.equals(segment)) {
+          if (i != segments.length - 1) {
+            throw new IllegalArgumentException("'**' is only supported at the end: " + pattern);
+          }
+          node.remainder.put(normalizedMethod, rule);
+          size++;
+          return this;
+        }
+        if (!SINGLE_SEGMENT.equals(segment) && segment.contains("*")) {
+          throw new IllegalArgumentException(
+              "Partial segment wildcards are unsupported: " + pattern);
+        }
+        node =
+            SINGLE_SEGMENT.equals(segment)
+                ? node.wildcard()
+                : node.children.computeIfAbsent(segment, key -> new BuilderNode());
+      }
+      node.exact.put(normalizedMethod, rule);
+      size++;
+      return this;
+    }
+
+    public UrlRuleTrie build() {
+      return new UrlRuleTrie(root.freeze(), size);
+    }
+
+    private static final class BuilderNode {
+      private final Map<String, BuilderNode> children = new LinkedHashMap<>();
+      private final Map<String, Rule> exact = new LinkedHashMap<>();
+      private final Map<String, Rule> remainder = new LinkedHashMap<>();
+      private BuilderNode wildcard;
+
+      private BuilderNode wildcard() {
+        if (wildcard == null) {
+          wildcard = new BuilderNode();
+        }
+        return wildcard;
+      }
+
+      private Node freeze() {
+        Node[] frozen = new Node[children.size()];
+        int i = 0;
+        for (BuilderNode child : children.values()) {
+          frozen[i++] = child.freeze();
+        }
+        return new Node(
+            children.keySet().toArray(String[]::new),
+            frozen,
+            wildcard != null ? wildcard.freeze() : null,
+            freeze(exact),
+            freeze(remainder));
+      }
+
+      private static Rules freeze(final Map<String, Rule> rules) {
+        if (rules.isEmpty()) {
+          return null;
+        }
+        Map<String, Rule> byMethod = new LinkedHashMap<>(rules);
+        Rule anyMethod = byMethod.remove(null);
+        return new Rules(byMethod, anyMethod);
+      }
+    }
+  }
+}
@@ -0,0 +1,98 @@
+package com.security.spring.demo.security.breach;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Read-only, memory-mapped view of a breached-password corpus written by {@link
+ * BreachCorpusBuilder}.
+ *
+ * <p>File layout, all big-endian:
+ *
+ * <ul>
+ *   <li>header: magic {@code BRCH}, format version, record count
+ *   <li>index: {@code 65537} record offsets, one per leading 16 bits of the hash, plus the count
+ *   <li>records: the first 64 bits of each SHA-1, sorted as unsigned values, without duplicates
+ * </ul>
+ *
+ * Lookups read the mapping directly with absolute gets, so nothing is copied onto the heap and the
+ * instance can be shared between threads.
+ */
+public final class BreachCorpus {
+
+  static final int MAGIC = 0x42524348; // "BRCH"
+  static final int VERSION = 1;
+  static final int HEADER_BYTES = 16;
+  static final int PREFIX_BITS = 16;
+  static final int INDEX_ENTRIES = (1 << PREFIX_BITS) + 1;
+  static final long RECORDS_OFFSET = HEADER_BYTES + (long) INDEX_ENTRIES * Long.BYTES;
+
+  // A single mapping is limited to 2 GiB; segments are a multiple of the record width so that no
+  // record straddles two of them
+  private static final int SEGMENT_SHIFT = 30;
+  private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+  private final MappedByteBuffer[] segments;
+  private final long count;
+
+  private BreachCorpus(final MappedByteBuffer[] segments, final long count) {
+    this.segments = segments;
+    this.count = count;
+  }
+
+  /** Map the corpus at {@code path}; the mapping stays valid if the file is later replaced */
+  public static BreachCorpus open(final Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+      if (size < RECORDS_OFFSET) {
+        throw new IOException("Breach corpus " + path + " is truncated");
+      }
+      MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size - 1 >> SEGMENT_SHIFT) + 1)];
+      for (int i = 0; i < segments.length; i++) {
+        long start = (long) i << SEGMENT_SHIFT;
+        segments[i] =
+            channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(size - start, 1L << 30));
+      }
+      ByteBuffer header = segments[0];
+      if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+        throw new IOException("Unsupported breach corpus format in " + path);
+      }
+      long count = header.getLong(8);
+      if (size != RECORDS_OFFSET + count * Long.BYTES) {
+        throw new IOException("Breach corpus " + path + " does not match its record count");
+      }
+      return new BreachCorpus(segments, count);
+    }
+  }
+
+  public long size() {
+    return count;
+  }
+
+  /** Whether the 64-bit hash prefix is in the corpus */
+  public boolean contains(final long hashPrefix) {
+    int bucket = (int) (hashPrefix >>> (Long.SIZE - PREFIX_BITS));
+    long low = readLong(HEADER_BYTES + (long) bucket * Long.BYTES);
+    long high = readLong(HEADER_BYTES + (long) (bucket + 1) * Long.BYTES) - 1;
+    while (low <= high) {
+      long mid = (low + high) >>> 1;
+      int cmp = Long.compareUnsigned(readLong(RECORDS_OFFSET + mid * Long.BYTES), hashPrefix);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private long readLong(final long offset) {
+    return segments[(int) (offset >>> SEGMENT_SHIFT)].getLong((int) (offset & SEGMENT_MASK));
+  }
+}
@@ -0,0 +1,205 @@
+package com.security.spring.demo.security.breach;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Converts a text list of SHA-1 password hashes (one per line, optionally followed by {@code
+ * :count} as in the Pwned Passwords downloads) into the binary layout read by {@link BreachCorpus}.
+ *
+ * <p>Only the first 64 bits of each hash are kept; with a billion entries the chance of an
+ * unrelated password colliding is below 1e-10, and a collision only means a password is refused.
+ * Input that does not fit in memory is sorted in runs of {@code chunkSize} hashes and merged from
+ * disk.
+ *
+ * <pre>
+ * java -cp target/classes com.security.spring.demo.security.breach.BreachCorpusBuilder \
+ *     pwned-passwords-sha1.txt breached-passwords.bin
+ * </pre>
+ */
+public final class BreachCorpusBuilder {
+
+  private static final int DEFAULT_CHUNK_SIZE = 32 * 1024 * 1024;
+  private static final int IO_BUFFER_BYTES = 1 << 20;
+
+  private BreachCorpusBuilder() {}
+
+  public static void main(final String[] args) throws IOException {
+    if (args.length < 2 || args.length > 3) {
+      System.err.println("usage: BreachCorpusBuilder <sha1-list.txt> <corpus.bin> [chunk-size]");
+      System.exit(2);
+    }
+    int chunkSize = args.length == 3 ? Integer.parseInt(args[2]) : DEFAULT_CHUNK_SIZE;
+    long count = build(Path.of(args[0]), Path.of(args[1]), chunkSize);
+    System.out.println("Wrote " + count + " hashes to " + args[1]);
+  }
+
+  /**
+   * Build the corpus and atomically move it into place, so a running checker picks up either the
+   * old file or the complete new one. Returns the number of distinct hashes written.
+   */
+  public static long build(final Path input, final Path output, final int chunkSize)
+      throws IOException {
+    Path workDir = Files.createTempDirectory(output.toAbsolutePath().getParent(), "breach-runs");
+    try {
+      List<Path> runs = writeSortedRuns(input, workDir, chunkSize);
+      Path staging = workDir.resolve("corpus.bin");
+      long count = mergeRuns(runs, staging);
+      Files.move(
+          staging, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      return count;
+    } finally {
+      try (var files = Files.list(workDir)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          Files.deleteIfExists(file);
+        }
+      }
+      Files.deleteIfExists(workDir);
+    }
+  }
+
+  private static List<Path> writeSortedRuns(
+      final Path input, final Path workDir, final int chunkSize) throws IOException {
+    List<Path> runs = new ArrayList<>();
+    long[] chunk = new long[chunkSize];
+    int filled = 0;
+    try (BufferedReader reader = Files.newBufferedReader(input, StandardCharsets.US_ASCII)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        line = line.strip();
+        if (line.isEmpty()) {
+          continue;
+        }
+        if (line.length() < 16) {
+          throw new IOException("Not a SHA-1 hash: " + line);
+        }
+        // Flipping the sign bit makes the signed sort below order the hashes as unsigned values
+        chunk[filled++] = Long.parseUnsignedLong(line, 0, 16, 16) ^ Long.MIN_VALUE;
+        if (filled == chunk.length) {
+          runs.add(writeRun(chunk, filled, workDir, runs.size()));
+          filled = 0;
+        }
+      }
+    }
+    if (filled > 0 || runs.isEmpty()) {
+      runs.add(writeRun(chunk, filled, workDir, runs.size()));
+    }
+    return runs;
+  }
+
+  private static Path writeRun(
+      final long[] chunk, final int length, final Path workDir, final int runNumber)
+      throws IOException {
+    Arrays.sort(chunk, 0, length);
+    Path run = workDir.resolve("run-" + runNumber);
+    try (DataOutputStream out =
+        new DataOutputStream(
+            new BufferedOutputStream(Files.newOutputStream(run), IO_BUFFER_BYTES))) {
+      for (int i = 0; i < length; i++) {
+        out.writeLong(chunk[i] ^ Long.MIN_VALUE);
+      }
+    }
+    return run;
+  }
+
+  private static long mergeRuns(final List<Path> runs, final Path staging) throws IOException {
+    long[] bucketCounts = new long[BreachCorpus.INDEX_ENTRIES - 1];
+    long count = 0;
+    List<RunReader> readers = new ArrayList<>();
+    try (FileChannel channel =
+        FileChannel.open(
+            staging,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      PriorityQueue<RunReader> heads =
+          new PriorityQueue<>((a, b) -> Long.compareUnsigned(a.head, b.head));
+      for (Path run : runs) {
+        RunReader reader = new RunReader(Files.newInputStream(run));
+        readers.add(reader);
+        if (reader.advance()) {
+          heads.add(reader);
+        }
+      }
+
+      channel.position(BreachCorpus.RECORDS_OFFSET);
+      OutputStream channelOut = Channels.newOutputStream(channel);
+      DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(channelOut, IO_BUFFER_BYTES));
+      boolean first = true;
+      long previous = 0;
+      while (!heads.isEmpty()) {
+        RunReader reader = heads.poll();
+        long hash = reader.head;
+        if (first || hash != previous) {
+          out.writeLong(hash);
+          bucketCounts[(int) (hash >>> (Long.SIZE - BreachCorpus.PREFIX_BITS))]++;
+          count++;
+          previous = hash;
+          first = false;
+        }
+        if (reader.advance()) {
+          heads.add(reader);
+        }
+      }
+      out.flush();
+
+      ByteBuffer header = ByteBuffer.allocate((int) BreachCorpus.RECORDS_OFFSET);
+      header.putInt(BreachCorpus.MAGIC).putInt(BreachCorpus.VERSION).putLong(count);
+      long offset = 0;
+      for (long bucketCount : bucketCounts) {
+        header.putLong(offset);
+        offset += bucketCount;
+      }
+      header.putLong(offset);
+      header.flip();
+      long position = 0;
+      while (header.hasRemaining()) {
+        position += channel.write(header, position);
+      }
+      channel.force(true);
+    } finally {
+      for (RunReader reader : readers) {
+        reader.in.close();
+      }
+    }
+    return count;
+  }
+
+  private static final class RunReader {
+    private final DataInputStream in;
+    private long head;
+
+    RunReader(final InputStream in) {
+      this.in = new DataInputStream(new BufferedInputStream(in, IO_BUFFER_BYTES));
+    }
+
+    boolean advance() throws IOException {
+      try {
+        head = in.readLong();
+        return true;
+      } catch (EOFException e) {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.security.spring.demo.security.breach;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Screens passwords against the local breach corpus. The corpus file is polled for changes and a
+ * replacement is mapped and swapped in without a restart; with no corpus configured every password
+ * passes.
+ */
+@Component
+@Slf4j
+public class BreachedPasswordChecker {
+
+  private static final ThreadLocal<MessageDigest> SHA1 =
+      ThreadLocal.withInitial(
+          () -> {
+            try {
+              return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+              throw new IllegalStateException(e);
+            }
+          });
+
+  private final Path corpusPath;
+
+  private volatile Loaded loaded;
+
+  private record Loaded(BreachCorpus corpus, Object fileKey, long modified, long size) {}
+
+  public BreachedPasswordChecker(
+      @Value("${application.security.breached-passwords.corpus-path:}") final String corpusPath) {
+    this.corpusPath = corpusPath.isBlank() ? null : Path.of(corpusPath);
+    refreshIfChanged();
+  }
+
+  public boolean isBreached(final String password) {
+    Loaded current = loaded;
+    return current != null && current.corpus().contains(hashPrefix(password));
+  }
+
+  /** Map the corpus again if the file was replaced since it was last loaded */
+  @Scheduled(
+      fixedDelayString = "${application.security.breached-passwords.refresh-interval:60000}",
+      initialDelayString = "${application.security.breached-passwords.refresh-interval:60000}")
+  public synchronized void refreshIfChanged() {
+    if (corpusPath == null) {
+      return;
+    }
+    try {
+      BasicFileAttributes attributes = Files.readAttributes(corpusPath, BasicFileAttributes.class);
+      Loaded current = loaded;
+      if (current != null
+          && Objects.equals(current.fileKey(), attributes.fileKey())
+          && current.modified() == attributes.lastModifiedTime().toMillis()
+          && current.size() == attributes.size()) {
+        return;
+      }
+      BreachCorpus corpus = BreachCorpus.open(corpusPath);
+      loaded =
+          new Loaded(
+              corpus,
+              attributes.fileKey(),
+              attributes.lastModifiedTime().toMillis(),
+              attributes.size());
+      log.info("Loaded breached-password corpus {} with {} hashes", corpusPath, corpus.size());
+    } catch (IOException e) {
+      // Keep screening with the previous corpus rather than letting every password through
+      log.warn("Could not load breached-password corpus {}: {}", corpusPath, e.getMessage());
+    }
+  }
+
+  private static long hashPrefix(final String password) {
+    MessageDigest digest = SHA1.get();
+    byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
+    long prefix = 0;
+    for (int i = 0; i < Long.BYTES; i++) {
+      prefix = prefix << 8 | (hash[i] & 0xFF);
+    }
+    return prefix;
+  }
+}
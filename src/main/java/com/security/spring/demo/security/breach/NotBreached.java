@@ -0,0 +1,23 @@
+package com.security.spring.demo.security.breach;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/** The annotated password must not appear in the breached-password corpus */
+@Documented
+@Constraint(validatedBy = NotBreachedValidator.class)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+@Retention(RetentionPolicy.RUNTIME)
+public @interface NotBreached {
+
+  String message() default "Password has appeared in a data breach; choose a different one";
+
+  Class<?>[] groups() default {};
+
+  Class<? extends Payload>[] payload() default {};
+}
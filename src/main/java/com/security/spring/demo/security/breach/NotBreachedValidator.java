@@ -0,0 +1,16 @@
+package com.security.spring.demo.security.breach;
+
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+import lombok.RequiredArgsConstructor;
+
+@RequiredArgsConstructor
+public class NotBreachedValidator implements ConstraintValidator<NotBreached, String> {
+
+  private final BreachedPasswordChecker breachedPasswordChecker;
+
+  @Override
+  public boolean isValid(final String value, final ConstraintValidatorContext context) {
+    return value == null || !breachedPasswordChecker.isBreached(value);
+  }
+}
@@ -0,0 +1,499 @@
+package com.security.spring.demo.security.replica;
+
+import com.security.spring.demo.util.Hashing;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * In-memory copy of the authentication state of every user, stored column by column in primitive
+ * arrays. Emails and password hashes are kept once each as length-prefixed UTF-8 in a shared byte
+ * pool that the columns refer to by offset, and emails are found through an open-addressing index
+ * of row numbers, so no per-user objects exist until a lookup materializes a {@link Row}. A second
+ * index of row numbers finds users by id for the writers.
+ *
+ * <p>Lookups are optimistic and only take the read lock if a write overlapped them. Writes are
+ * serialized. A user keeps its row for life; removed rows are reused if the id comes back.
+ */
+public final class UserReplica {
+
+  public static final int ACCOUNT_NON_EXPIRED = 1;
+  public static final int ACCOUNT_NON_LOCKED = 1 << 1;
+  public static final int CREDENTIALS_NON_EXPIRED = 1 << 2;
+  public static final int ENABLED = 1 << 3;
+
+  /** Authentication state of one user */
+  public record Row(
+      long id, String email, String password, long roleMask, int tokenVersion, int flags) {
+
+    public boolean has(final int flag) {
+      return (flags & flag) == flag;
+    }
+  }
+
+  /** Set on rows holding a user */
+  private static final int LIVE = 1 << 7;
+
+  private static final int EMPTY = 0;
+  private static final int REMOVED = -1;
+  private static final double MAX_LOAD = 0.75;
+  private static final int MIN_ROWS = 16;
+  private static final int MAX_STRING_BYTES = 0xffff;
+  private static final int LENGTH_BYTES = 2;
+  private static final int COMPACTION_MIN_GARBAGE = 1 << 20;
+  /** Initial pool space per user: a typical email and a BCrypt hash with their length prefixes */
+  private static final int STRING_BYTES_PER_USER = 88;
+
+  /** Every array the readers touch, swapped as a whole whenever one is reallocated */
+  private record State(
+      long[] ids,
+      long[] roleMasks,
+      int[] tokenVersions,
+      byte[] flags,
+      int[] emailRefs,
+      int[] passwordRefs,
+      byte[] strings,
+      int[] emailIndex) {
+
+    private State withRows(final int capacity) {
+      return new State(
+          Arrays.copyOf(ids, capacity),
+          Arrays.copyOf(roleMasks, capacity),
+          Arrays.copyOf(tokenVersions, capacity),
+          Arrays.copyOf(flags, capacity),
+          Arrays.copyOf(emailRefs, capacity),
+          Arrays.copyOf(passwordRefs, capacity),
+          strings,
+          emailIndex);
+    }
+
+    private State withStrings(final byte[] strings) {
+      return new State(
+          ids, roleMasks, tokenVersions, flags, emailRefs, passwordRefs, strings, emailIndex);
+    }
+
+    private State withEmailIndex(final int[] emailIndex) {
+      return new State(
+          ids, roleMasks, tokenVersions, flags, emailRefs, passwordRefs, strings, emailIndex);
+    }
+  }
+
+  private final StampedLock lock = new StampedLock();
+  private volatile State state;
+
+  private int rowCount;
+  private int liveRows;
+  private int indexOccupied;
+  private int[] idIndex;
+  private int stringBytes;
+  private int garbageBytes;
+
+  public UserReplica(final int expectedUsers) {
+    int rows = Math.max(expectedUsers, MIN_ROWS);
+    state =
+        new State(
+            new long[rows],
+            new long[rows],
+            new int[rows],
+            new byte[rows],
+            new int[rows],
+            new int[rows],
+            new byte[rows * STRING_BYTES_PER_USER],
+            new int[indexCapacity(rows)]);
+    idIndex = new int[indexCapacity(rows)];
+  }
+
+  /** The user with this email, or null when absent */
+  public Row find(final String email) {
+    byte[] key = email.getBytes(StandardCharsets.UTF_8);
+    long hash = Hashing.hash64(key, 0, key.length);
+    long stamp = lock.tryOptimisticRead();
+    if (stamp != 0L) {
+      try {
+        Row row = find(state, key, hash, email);
+        if (lock.validate(stamp)) {
+          return row;
+        }
+      } catch (RuntimeException e) {
+        // Arrays torn by an overlapping write; retried under the read lock
+      }
+    }
+    stamp = lock.readLock();
+    try {
+      return find(state, key, hash, email);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** Insert the user or overwrite its row */
+  public void upsert(final Row user) {
+    byte[] email = encode(user.email());
+    byte[] password = encode(user.password());
+    long emailHash = Hashing.hash64(email, 0, email.length);
+    long stamp = lock.writeLock();
+    try {
+      State current = state;
+      // Emails are unique, so a live row with the same email belongs to a user that was deleted
+      // or moved to a new id, such as by a shard rebalance
+      int holder = findRow(current, email, emailHash);
+      int row = rowOf(current, user.id());
+      if (holder >= 0 && holder != row) {
+        removeRow(current, holder);
+      }
+      if (row < 0) {
+        if (rowCount == current.ids().length) {
+          current = current.withRows(rowCount * 2);
+          state = current;
+        }
+        row = rowCount++;
+        current.ids()[row] = user.id();
+        indexId(current, row);
+      }
+
+      boolean live = (current.flags()[row] & LIVE) != 0;
+      boolean emailChanged = !live || holder != row;
+      if (emailChanged && live) {
+        unindex(current, row);
+        garbageBytes += storedLength(current, current.emailRefs()[row]);
+      }
+      if (emailChanged) {
+        current = reserveStrings(current, email.length);
+        current.emailRefs()[row] = append(current, email);
+      }
+      if (!live || !equalsAt(current.strings(), current.passwordRefs()[row], password)) {
+        if (live) {
+          garbageBytes += storedLength(current, current.passwordRefs()[row]);
+        }
+        current = reserveStrings(current, password.length);
+        current.passwordRefs()[row] = append(current, password);
+      }
+      current.roleMasks()[row] = user.roleMask();
+      current.tokenVersions()[row] = user.tokenVersion();
+      current.flags()[row] = (byte) ((user.flags() & ~LIVE) | LIVE);
+      if (emailChanged) {
+        current = reserveIndexSlot(current);
+        index(current, row, emailHash);
+      }
+      if (!live) {
+        liveRows++;
+      }
+      compactIfWasteful();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Remove the user, returning whether it was present */
+  public boolean remove(final long id) {
+    long stamp = lock.writeLock();
+    try {
+      int row = rowOf(state, id);
+      if (row < 0 || (state.flags()[row] & LIVE) == 0) {
+        return false;
+      }
+      removeRow(state, row);
+      compactIfWasteful();
+      return true;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Start removing users the source no longer has: {@link Reconciliation#mark mark} the id of every
+   * user that still exists, then {@link Reconciliation#finish finish}. Only users present when the
+   * reconciliation starts are considered, so concurrent upserts are safe.
+   */
+  public Reconciliation startReconciliation() {
+    long stamp = lock.readLock();
+    try {
+      return new Reconciliation(rowCount);
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return liveRows;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** Bytes held by the columns, the string pool and both indexes */
+  public long memoryBytes() {
+    long stamp = lock.readLock();
+    try {
+      State current = state;
+      long rowBytes = 2L * Long.BYTES + 3L * Integer.BYTES + 1L;
+      return current.ids().length * rowBytes
+          + current.strings().length
+          + ((long) current.emailIndex().length + idIndex.length) * Integer.BYTES;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** Marks the users that still exist; see {@link #startReconciliation()} */
+  public final class Reconciliation {
+
+    private final int rowLimit;
+    private final BitSet seen;
+
+    private Reconciliation(final int rowLimit) {
+      this.rowLimit = rowLimit;
+      this.seen = new BitSet(rowLimit);
+    }
+
+    public void mark(final long id) {
+      int row;
+      long stamp = lock.readLock();
+      try {
+        row = rowOf(state, id);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+      if (row >= 0 && row < rowLimit) {
+        seen.set(row);
+      }
+    }
+
+    /** Remove every unmarked user, returning how many were removed */
+    public int finish() {
+      long stamp = lock.writeLock();
+      try {
+        State current = state;
+        int removed = 0;
+        for (int row = seen.nextClearBit(0); row < rowLimit; row = seen.nextClearBit(row + 1)) {
+          if ((current.flags()[row] & LIVE) != 0) {
+            removeRow(current, row);
+            removed++;
+          }
+        }
+        compactIfWasteful();
+        return removed;
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+    }
+  }
+
+  private static Row find(
+      final State state, final byte[] key, final long hash, final String email) {
+    int[] index = state.emailIndex();
+    int mask = index.length - 1;
+    int slot = (int) hash & mask;
+    for (int probes = 0; probes < index.length; probes++) {
+      int entry = index[slot];
+      if (entry == EMPTY) {
+        return null;
+      }
+      if (entry != REMOVED && equalsAt(state.strings(), state.emailRefs()[entry - 1], key)) {
+        int row = entry - 1;
+        return new Row(
+            state.ids()[row],
+            email,
+            stringAt(state.strings(), state.passwordRefs()[row]),
+            state.roleMasks()[row],
+            state.tokenVersions()[row],
+            state.flags()[row] & 0xff & ~LIVE);
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  private static int findRow(final State state, final byte[] key, final long hash) {
+    int[] index = state.emailIndex();
+    int mask = index.length - 1;
+    for (int slot = (int) hash & mask; index[slot] != EMPTY; slot = (slot + 1) & mask) {
+      int entry = index[slot];
+      if (entry != REMOVED && equalsAt(state.strings(), state.emailRefs()[entry - 1], key)) {
+        return entry - 1;
+      }
+    }
+    return -1;
+  }
+
+  private int rowOf(final State state, final long id) {
+    int mask = idIndex.length - 1;
+    int slot = (int) Hashing.mix64(id) & mask;
+    while (idIndex[slot] != EMPTY) {
+      if (state.ids()[idIndex[slot] - 1] == id) {
+        return idIndex[slot] - 1;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  /** Add a new row to the id index; rows are never removed from it */
+  private void indexId(final State state, final int row) {
+    if (rowCount > idIndex.length * MAX_LOAD) {
+      int[] rebuilt = new int[indexCapacity(rowCount)];
+      for (int existing = 0; existing < row; existing++) {
+        insert(rebuilt, Hashing.mix64(state.ids()[existing]), existing);
+      }
+      idIndex = rebuilt;
+    }
+    insert(idIndex, Hashing.mix64(state.ids()[row]), row);
+  }
+
+  private static void insert(final int[] index, final long hash, final int row) {
+    int mask = index.length - 1;
+    int slot = (int) hash & mask;
+    while (index[slot] != EMPTY) {
+      slot = (slot + 1) & mask;
+    }
+    index[slot] = row + 1;
+  }
+
+  private void removeRow(final State state, final int row) {
+    unindex(state, row);
+    garbageBytes += storedLength(state, state.emailRefs()[row]);
+    garbageBytes += storedLength(state, state.passwordRefs()[row]);
+    state.flags()[row] = 0;
+    liveRows--;
+  }
+
+  private void index(final State state, final int row, final long hash) {
+    insert(state.emailIndex(), hash, row);
+    indexOccupied++;
+  }
+
+  private void unindex(final State state, final int row) {
+    int ref = state.emailRefs()[row];
+    long hash = Hashing.hash64(state.strings(), ref + LENGTH_BYTES, lengthAt(state.strings(), ref));
+    int[] index = state.emailIndex();
+    int mask = index.length - 1;
+    for (int slot = (int) hash & mask; index[slot] != EMPTY; slot = (slot + 1) & mask) {
+      if (index[slot] == row + 1) {
+        // Left as a marker so probe chains running through the slot stay intact
+        index[slot] = REMOVED;
+        return;
+      }
+    }
+  }
+
+  /** Make room for one more index entry, rebuilding without removal markers when full */
+  private State reserveIndexSlot(final State current) {
+    if (indexOccupied + 1 <= current.emailIndex().length * MAX_LOAD) {
+      return current;
+    }
+    int[] rebuilt = new int[indexCapacity(liveRows + 1)];
+    for (int entry : current.emailIndex()) {
+      if (entry != EMPTY && entry != REMOVED) {
+        int ref = current.emailRefs()[entry - 1];
+        insert(
+            rebuilt,
+            Hashing.hash64(current.strings(), ref + LENGTH_BYTES, lengthAt(current.strings(), ref)),
+            entry - 1);
+      }
+    }
+    indexOccupied = liveRows;
+    State grown = current.withEmailIndex(rebuilt);
+    state = grown;
+    return grown;
+  }
+
+  private State reserveStrings(final State current, final int length) {
+    int needed = stringBytes + LENGTH_BYTES + length;
+    if (needed <= current.strings().length) {
+      return current;
+    }
+    State grown =
+        current.withStrings(
+            Arrays.copyOf(current.strings(), Math.max(needed, current.strings().length * 2)));
+    state = grown;
+    return grown;
+  }
+
+  private int append(final State state, final byte[] value) {
+    int ref = stringBytes;
+    byte[] strings = state.strings();
+    strings[ref] = (byte) (value.length >>> 8);
+    strings[ref + 1] = (byte) value.length;
+    System.arraycopy(value, 0, strings, ref + LENGTH_BYTES, value.length);
+    stringBytes += LENGTH_BYTES + value.length;
+    return ref;
+  }
+
+  /**
+   * Copy the strings of live rows into a new pool once most of the pool is garbage. Readers keep
+   * using the old pool and references until the new state is published.
+   */
+  private void compactIfWasteful() {
+    if (garbageBytes < COMPACTION_MIN_GARBAGE || garbageBytes < stringBytes / 2) {
+      return;
+    }
+    State current = state;
+    byte[] strings = new byte[Math.max(stringBytes - garbageBytes, 1) * 3 / 2];
+    int[] emailRefs = new int[current.emailRefs().length];
+    int[] passwordRefs = new int[current.passwordRefs().length];
+    int used = 0;
+    for (int row = 0; row < rowCount; row++) {
+      if ((current.flags()[row] & LIVE) != 0) {
+        emailRefs[row] = used;
+        used = copyString(current.strings(), current.emailRefs()[row], strings, used);
+        passwordRefs[row] = used;
+        used = copyString(current.strings(), current.passwordRefs()[row], strings, used);
+      }
+    }
+    state =
+        new State(
+            current.ids(),
+            current.roleMasks(),
+            current.tokenVersions(),
+            current.flags(),
+            emailRefs,
+            passwordRefs,
+            strings,
+            current.emailIndex());
+    stringBytes = used;
+    garbageBytes = 0;
+  }
+
+  private static int copyString(
+      final byte[] from, final int ref, final byte[] to, final int offset) {
+    int length = LENGTH_BYTES + lengthAt(from, ref);
+    System.arraycopy(from, ref, to, offset, length);
+    return offset + length;
+  }
+
+  private static boolean equalsAt(final byte[] strings, final int ref, final byte[] value) {
+    int length = lengthAt(strings, ref);
+    return length == value.length
+        && Arrays.equals(
+            strings, ref + LENGTH_BYTES, ref + LENGTH_BYTES + length, value, 0, length);
+  }
+
+  private static String stringAt(final byte[] strings, final int ref) {
+    return new String(strings, ref + LENGTH_BYTES, lengthAt(strings, ref), StandardCharsets.UTF_8);
+  }
+
+  private static int lengthAt(final byte[] strings, final int ref) {
+    return (strings[ref] & 0xff) << 8 | (strings[ref + 1] & 0xff);
+  }
+
+  private static int storedLength(final State state, final int ref) {
+    return LENGTH_BYTES + lengthAt(state.strings(), ref);
+  }
+
+  private static byte[] encode(final String value) {
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    if (bytes.length > MAX_STRING_BYTES) {
+      throw new IllegalArgumentException("Value exceeds " + MAX_STRING_BYTES + " bytes");
+    }
+    return bytes;
+  }
+
+  /** Smallest power of two holding the entries within the maximum load */
+  private static int indexCapacity(final int entries) {
+    int minimum = (int) Math.ceil(Math.max(entries, MIN_ROWS) / MAX_LOAD);
+    return Integer.highestOneBit(minimum - 1) << 1;
+  }
+}
@@ -0,0 +1,33 @@
+package com.security.spring.demo.security.replica;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+/** Actuator view of the in-memory user replica at /actuator/userreplica */
+@Component
+@Endpoint(id = "userreplica")
+@RequiredArgsConstructor
+public class UserReplicaEndpoint {
+
+  private final UserReplicaService userReplica;
+
+  @ReadOperation
+  public Map<String, Object> userReplica() {
+    int users = userReplica.size();
+    long memoryBytes = userReplica.memoryBytes();
+    Map<String, Object> response = new LinkedHashMap<>();
+    response.put("loaded", userReplica.isLoaded());
+    response.put("users", users);
+    response.put("memoryBytes", memoryBytes);
+    response.put("bytesPerUser", users > 0 ? memoryBytes / users : 0L);
+    response.put(
+        "lastPollAt",
+        userReplica.lastPollAt() > 0 ? Instant.ofEpochMilli(userReplica.lastPollAt()) : null);
+    return response;
+  }
+}
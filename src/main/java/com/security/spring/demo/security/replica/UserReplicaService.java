@@ -0,0 +1,294 @@
+package com.security.spring.demo.security.replica;
+
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.entity.User;
+import com.security.spring.demo.repository.UserRepository;
+import com.security.spring.demo.service.RoleBitRegistry;
+import com.security.spring.demo.service.ShardReader;
+import jakarta.persistence.Tuple;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Keeps a {@link UserReplica} of every user so token authentication never reads the database. The
+ * replica is bulk-loaded on startup and then polled for users whose updated_at moved past the last
+ * change seen on each shard, in keyset-ordered batches. Each poll reaches back by the configured
+ * overlap to catch transactions that committed late or on an instance with a lagging clock.
+ * Deleted users are dropped as the same polls pick up their user_deletions tombstones, and by a
+ * periodic reconciliation against the full id list that catches anything else.
+ *
+ * <p>Anything that changes user_roles or a user's authentication columns must also touch
+ * users.updated_at, or the replica will not see the change.
+ */
+@Service
+@Slf4j
+public class UserReplicaService {
+
+  private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+  private record Batch(List<UserReplica.Row> rows, LocalDateTime lastUpdatedAt) {}
+
+  private final UserRepository userRepository;
+  private final ShardRouter shardRouter;
+  private final ShardReader shardReader;
+  private final RoleBitRegistry roleBitRegistry;
+  private final boolean enabled;
+  private final int batchSize;
+  private final long overlapMillis;
+
+  private volatile UserReplica replica;
+  private LocalDateTime[] watermarks;
+  private LocalDateTime[] deletionWatermarks;
+  private volatile long lastPollAt;
+
+  public UserReplicaService(
+      final UserRepository userRepository,
+      final ShardRouter shardRouter,
+      final ShardReader shardReader,
+      final RoleBitRegistry roleBitRegistry,
+      @Value("${application.security.user-replica.enabled:false}") final boolean enabled,
+      @Value("${application.security.user-replica.batch-size:5000}") final int batchSize,
+      @Value("${application.security.user-replica.overlap:5000}") final long overlapMillis) {
+    this.userRepository = userRepository;
+    this.shardRouter = shardRouter;
+    this.shardReader = shardReader;
+    this.roleBitRegistry = roleBitRegistry;
+    this.enabled = enabled;
+    this.batchSize = batchSize;
+    this.overlapMillis = overlapMillis;
+  }
+
+  /**
+   * The user as last replicated, or empty when the replica is disabled, still loading or has no
+   * such user. Misses may be users created since the last poll, so callers fall back to the
+   * database.
+   */
+  public Optional<User> find(final String email) {
+    UserReplica current = replica;
+    if (current == null) {
+      return Optional.empty();
+    }
+    UserReplica.Row row = current.find(email);
+    return row == null ? Optional.empty() : Optional.of(toUser(row));
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public synchronized void load() {
+    if (!enabled) {
+      return;
+    }
+    long started = System.currentTimeMillis();
+    long expectedUsers = 0;
+    for (long shardUsers : shardReader.onEveryShard(userRepository::count)) {
+      expectedUsers += shardUsers;
+    }
+    UserReplica loaded =
+        new UserReplica((int) Math.min(expectedUsers * 11 / 10, Integer.MAX_VALUE - 8));
+    LocalDateTime[] loadedWatermarks = new LocalDateTime[shardRouter.shardCount()];
+    LocalDateTime[] loadedDeletionWatermarks = new LocalDateTime[loadedWatermarks.length];
+    for (int shard = 0; shard < loadedWatermarks.length; shard++) {
+      loadedWatermarks[shard] = pollShard(loaded, shard, BEGINNING);
+      loadedDeletionWatermarks[shard] = pollDeletions(loaded, shard, BEGINNING);
+    }
+    watermarks = loadedWatermarks;
+    deletionWatermarks = loadedDeletionWatermarks;
+    replica = loaded;
+    lastPollAt = System.currentTimeMillis();
+    log.info(
+        "Loaded {} users into the user replica in {} ms ({} bytes)",
+        loaded.size(),
+        lastPollAt - started,
+        loaded.memoryBytes());
+  }
+
+  /** Apply the users changed since the previous poll */
+  @Scheduled(fixedDelayString = "${application.security.user-replica.poll-interval:1000}")
+  public synchronized void poll() {
+    UserReplica current = replica;
+    if (current == null) {
+      return;
+    }
+    for (int shard = 0; shard < watermarks.length; shard++) {
+      watermarks[shard] = pollShard(current, shard, watermarks[shard]);
+      deletionWatermarks[shard] = pollDeletions(current, shard, deletionWatermarks[shard]);
+    }
+    lastPollAt = System.currentTimeMillis();
+  }
+
+  /** Drop users that were deleted or moved to another id */
+  @Scheduled(
+      fixedDelayString = "${application.security.user-replica.reconcile-interval:600000}",
+      initialDelayString = "${application.security.user-replica.reconcile-interval:600000}")
+  public void reconcile() {
+    UserReplica current = replica;
+    if (current == null) {
+      return;
+    }
+    UserReplica.Reconciliation reconciliation = current.startReconciliation();
+    shardReader.onEveryShard(
+        () -> {
+          try (Stream<Long> ids = userRepository.streamIds()) {
+            ids.forEach(reconciliation::mark);
+          }
+          return null;
+        });
+    int removed = reconciliation.finish();
+    if (removed > 0) {
+      log.info("Removed {} deleted users from the user replica", removed);
+    }
+  }
+
+  /** Drop a user deleted by this instance right away, ahead of the next poll */
+  public void remove(final long id) {
+    UserReplica current = replica;
+    if (current != null) {
+      current.remove(id);
+    }
+  }
+
+  public boolean isLoaded() {
+    return replica != null;
+  }
+
+  public int size() {
+    UserReplica current = replica;
+    return current != null ? current.size() : 0;
+  }
+
+  public long memoryBytes() {
+    UserReplica current = replica;
+    return current != null ? current.memoryBytes() : 0L;
+  }
+
+  public long lastPollAt() {
+    return lastPollAt;
+  }
+
+  /**
+   * Copy the shard's users changed since the watermark, less the overlap, returning the new
+   * watermark
+   */
+  private LocalDateTime pollShard(
+      final UserReplica target, final int shard, final LocalDateTime watermark) {
+    LocalDateTime afterUpdatedAt =
+        watermark.equals(BEGINNING) ? BEGINNING : watermark.minusNanos(overlapMillis * 1_000_000L);
+    long afterId = Long.MIN_VALUE;
+    LocalDateTime latest = watermark;
+    while (true) {
+      LocalDateTime fromUpdatedAt = afterUpdatedAt;
+      long fromId = afterId;
+      Batch batch = shardReader.onShard(shard, () -> readBatch(fromUpdatedAt, fromId));
+      for (UserReplica.Row row : batch.rows()) {
+        target.upsert(row);
+      }
+      if (batch.rows().isEmpty()) {
+        return latest;
+      }
+      afterUpdatedAt = batch.lastUpdatedAt();
+      afterId = batch.rows().get(batch.rows().size() - 1).id();
+      if (afterUpdatedAt.isAfter(latest)) {
+        latest = afterUpdatedAt;
+      }
+      if (batch.rows().size() < batchSize) {
+        return latest;
+      }
+    }
+  }
+
+  /**
+   * Drop the shard's users deleted since the watermark, less the overlap, returning the new
+   * watermark
+   */
+  private LocalDateTime pollDeletions(
+      final UserReplica target, final int shard, final LocalDateTime watermark) {
+    LocalDateTime after =
+        watermark.equals(BEGINNING) ? BEGINNING : watermark.minusNanos(overlapMillis * 1_000_000L);
+    LocalDateTime latest = watermark;
+    for (Object[] deletion :
+        shardReader.onShard(shard, () -> userRepository.findDeletionsAfter(after))) {
+      target.remove(((Number) deletion[0]).longValue());
+      LocalDateTime deletedAt =
+          deletion[1] instanceof Timestamp timestamp
+              ? timestamp.toLocalDateTime()
+              : (LocalDateTime) deletion[1];
+      if (deletedAt.isAfter(latest)) {
+        latest = deletedAt;
+      }
+    }
+    return latest;
+  }
+
+  private Batch readBatch(final LocalDateTime afterUpdatedAt, final long afterId) {
+    List<Tuple> users =
+        userRepository.findAuthenticationStateAfter(afterUpdatedAt, afterId, batchSize);
+    if (users.isEmpty()) {
+      return new Batch(List.of(), afterUpdatedAt);
+    }
+    Tuple last = users.get(users.size() - 1);
+    LocalDateTime lastUpdatedAt = last.get("updatedAt", LocalDateTime.class);
+    // Roles of exactly this page of users, read by the same key range instead of an id list
+    Map<Long, Long> roleMasks = new HashMap<>(users.size() * 2);
+    for (Object[] roleBit :
+        userRepository.findRoleBitsBetween(
+            afterUpdatedAt, afterId, lastUpdatedAt, last.get("id", Long.class))) {
+      roleMasks.merge((Long) roleBit[0], 1L << ((Number) roleBit[1]).intValue(), (a, b) -> a | b);
+    }
+    List<UserReplica.Row> rows =
+        users.stream()
+            .map(
+                user -> {
+                  long id = user.get("id", Long.class);
+                  return new UserReplica.Row(
+                      id,
+                      user.get("email", String.class),
+                      user.get("password", String.class),
+                      roleMasks.getOrDefault(id, 0L),
+                      user.get("tokenVersion", Integer.class),
+                      flags(user));
+                })
+            .toList();
+    return new Batch(rows, lastUpdatedAt);
+  }
+
+  private static int flags(final Tuple user) {
+    int flags = 0;
+    if (user.get("accountNonExpired", Boolean.class)) {
+      flags |= UserReplica.ACCOUNT_NON_EXPIRED;
+    }
+    if (user.get("accountNonLocked", Boolean.class)) {
+      flags |= UserReplica.ACCOUNT_NON_LOCKED;
+    }
+    if (user.get("credentialsNonExpired", Boolean.class)) {
+      flags |= UserReplica.CREDENTIALS_NON_EXPIRED;
+    }
+    if (user.get("enabled", Boolean.class)) {
+      flags |= UserReplica.ENABLED;
+    }
+    return flags;
+  }
+
+  private User toUser(final UserReplica.Row row) {
+    return User.builder()
+        .id(row.id())
+        .email(row.email())
+        .password(row.password())
+        .roles(roleBitRegistry.rolesOf(row.roleMask()))
+        .accountNonExpired(row.has(UserReplica.ACCOUNT_NON_EXPIRED))
+        .accountNonLocked(row.has(UserReplica.ACCOUNT_NON_LOCKED))
+        .credentialsNonExpired(row.has(UserReplica.CREDENTIALS_NON_EXPIRED))
+        .enabled(row.has(UserReplica.ENABLED))
+        .tokenVersion(row.tokenVersion())
+        .build();
+  }
+}
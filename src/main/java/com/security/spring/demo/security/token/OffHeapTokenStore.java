@@ -0,0 +1,364 @@
+package com.security.spring.demo.security.token;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Open-addressing hash table of token sessions kept in a memory-mapped file, outside the Java heap.
+ *
+ * <p>Keys are 128-bit digests of random handles, never the handles themselves, so reading the file
+ * yields nothing that can be presented as a token. The file is created readable by its owner only.
+ * Keys are uniformly distributed, so the high word is used directly as the hash. Collisions are
+ * resolved by linear probing and removals use backward-shift deletion, which keeps probe chains
+ * free of tombstones. Lookups run under an optimistic read stamp and only fall back to a read lock
+ * when they race a writer. Pages are written back by the operating system, so sessions survive a
+ * restart of the JVM.
+ */
+public final class OffHeapTokenStore implements Closeable {
+
+  /** Session data stored behind a handle */
+  public record Entry(long userId, long roleMask, long expiresAt, int kind, int tokenVersion) {}
+
+  private static final int MAGIC = 0x4f544b53; // "OTKS"
+  private static final int VERSION = 3;
+  private static final int HEADER_BYTES = 64;
+  private static final int SLOT_BYTES = 48;
+  private static final int MAX_CAPACITY = 1 << 24;
+  private static final double MAX_LOAD = 0.75;
+
+  private static final int HANDLE_HIGH = 0;
+  private static final int HANDLE_LOW = 8;
+  private static final int USER_ID = 16;
+  private static final int ROLE_MASK = 24;
+  private static final int EXPIRES_AT = 32;
+  private static final int KIND = 40;
+  private static final int TOKEN_VERSION = 44;
+
+  private static final Set<PosixFilePermission> OWNER_READ_WRITE =
+      PosixFilePermissions.fromString("rw-------");
+
+  /** Kind value of a free slot; stored kinds must be positive */
+  private static final int FREE = 0;
+
+  private final FileChannel channel;
+  private final MappedByteBuffer buffer;
+  private final int capacity;
+  private final int mask;
+  private final StampedLock lock = new StampedLock();
+
+  private int size;
+  private int sweepCursor;
+
+  private OffHeapTokenStore(
+      final FileChannel channel, final MappedByteBuffer buffer, final int capacity) {
+    this.channel = channel;
+    this.buffer = buffer;
+    this.capacity = capacity;
+    this.mask = capacity - 1;
+  }
+
+  /**
+   * Open the store at {@code path}, reusing its sessions when the file was written with the same
+   * capacity and starting empty otherwise. {@code capacity} must be a power of two.
+   */
+  public static OffHeapTokenStore open(final Path path, final int capacity) throws IOException {
+    if (Integer.bitCount(capacity) != 1 || capacity > MAX_CAPACITY) {
+      throw new IllegalArgumentException(
+          "Capacity must be a power of two no larger than " + MAX_CAPACITY);
+    }
+    long fileSize = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+    boolean existing = Files.exists(path) && Files.size(path) == fileSize;
+    restrictToOwner(path);
+    FileChannel channel =
+        FileChannel.open(
+            path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    try {
+      if (!existing) {
+        channel.truncate(0);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+      OffHeapTokenStore store = new OffHeapTokenStore(channel, buffer, capacity);
+      if (existing
+          && buffer.getInt(0) == MAGIC
+          && buffer.getInt(4) == VERSION
+          && buffer.getInt(8) == capacity) {
+        store.size = store.countOccupied();
+      } else {
+        store.clear();
+      }
+      return store;
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  public int capacity() {
+    return capacity;
+  }
+
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  /** Store a session under a new handle; fails when the table is full even after reclaiming */
+  public void put(final long high, final long low, final Entry entry, final long now) {
+    if (entry.kind() <= FREE) {
+      throw new IllegalArgumentException("Entry kind must be positive");
+    }
+    long stamp = lock.writeLock();
+    try {
+      if (size + 1 > capacity * MAX_LOAD) {
+        sweep(now, capacity);
+        if (size + 1 > capacity * MAX_LOAD) {
+          throw new IllegalStateException("Opaque token store is full");
+        }
+      }
+      int slot = (int) high & mask;
+      while (kindAt(slot) != FREE) {
+        if (matches(slot, high, low)) {
+          break;
+        }
+        slot = (slot + 1) & mask;
+      }
+      if (kindAt(slot) == FREE) {
+        size++;
+      }
+      int base = offset(slot);
+      buffer.putLong(base + HANDLE_HIGH, high);
+      buffer.putLong(base + HANDLE_LOW, low);
+      buffer.putLong(base + USER_ID, entry.userId());
+      buffer.putLong(base + ROLE_MASK, entry.roleMask());
+      buffer.putLong(base + EXPIRES_AT, entry.expiresAt());
+      buffer.putInt(base + TOKEN_VERSION, entry.tokenVersion());
+      // Written last so a torn write after a crash leaves the slot free
+      buffer.putInt(base + KIND, entry.kind());
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Session stored under the handle, or null when it is unknown or expired */
+  public Entry get(final long high, final long low, final long now) {
+    long stamp = lock.tryOptimisticRead();
+    Entry entry = find(high, low);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        entry = find(high, low);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return entry != null && entry.expiresAt() > now ? entry : null;
+  }
+
+  /** Remove the session stored under the handle; returns whether one was present */
+  public boolean remove(final long high, final long low) {
+    long stamp = lock.writeLock();
+    try {
+      int slot = (int) high & mask;
+      for (int probes = 0; probes < capacity && kindAt(slot) != FREE; probes++) {
+        if (matches(slot, high, low)) {
+          delete(slot);
+          return true;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return false;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Remove and return the live session of the given kind stored under the handle, or null when there
+   * is none. Lookup and removal happen under one write lock, so of two concurrent callers only one
+   * gets the session.
+   */
+  public Entry take(final long high, final long low, final int kind, final long now) {
+    long stamp = lock.writeLock();
+    try {
+      int slot = (int) high & mask;
+      for (int probes = 0; probes < capacity && kindAt(slot) != FREE; probes++) {
+        if (matches(slot, high, low)) {
+          Entry entry = entryAt(slot);
+          if (entry.kind() != kind || entry.expiresAt() <= now) {
+            return null;
+          }
+          delete(slot);
+          return entry;
+        }
+        slot = (slot + 1) & mask;
+      }
+      return null;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /**
+   * Examine up to {@code maxSlots} slots after where the previous call stopped and free the expired
+   * ones. Returns the number of sessions removed.
+   */
+  public int reclaimExpired(final long now, final int maxSlots) {
+    long stamp = lock.writeLock();
+    try {
+      return sweep(now, maxSlots);
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Flush dirty pages to the file */
+  public void force() {
+    buffer.force();
+  }
+
+  @Override
+  public void close() throws IOException {
+    long stamp = lock.writeLock();
+    try {
+      buffer.force();
+      channel.close();
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  /** Create the file and its directory accessible to the owner only, or tighten an existing file */
+  private static void restrictToOwner(final Path path) throws IOException {
+    boolean posix = path.getFileSystem().supportedFileAttributeViews().contains("posix");
+    Path parent = path.toAbsolutePath().getParent();
+    if (parent != null && !Files.isDirectory(parent)) {
+      if (posix) {
+        Files.createDirectories(
+            parent, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+      } else {
+        Files.createDirectories(parent);
+      }
+    }
+    if (!posix) {
+      return;
+    }
+    if (Files.exists(path)) {
+      Files.setPosixFilePermissions(path, OWNER_READ_WRITE);
+    } else {
+      Files.createFile(path, PosixFilePermissions.asFileAttribute(OWNER_READ_WRITE));
+    }
+  }
+
+  /** Body of {@link #reclaimExpired}; the caller holds the write lock, which is not reentrant */
+  private int sweep(final long now, final int maxSlots) {
+    int removed = 0;
+    for (int scanned = 0; scanned < Math.min(maxSlots, capacity); scanned++) {
+      int slot = sweepCursor;
+      // A backward shift can move a later session into this slot, so look at it again
+      while (kindAt(slot) != FREE && buffer.getLong(offset(slot) + EXPIRES_AT) <= now) {
+        delete(slot);
+        removed++;
+      }
+      sweepCursor = (sweepCursor + 1) & mask;
+    }
+    return removed;
+  }
+
+  private Entry find(final long high, final long low) {
+    int slot = (int) high & mask;
+    for (int probes = 0; probes < capacity; probes++) {
+      if (kindAt(slot) == FREE) {
+        return null;
+      }
+      if (matches(slot, high, low)) {
+        return entryAt(slot);
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  private Entry entryAt(final int slot) {
+    int base = offset(slot);
+    return new Entry(
+        buffer.getLong(base + USER_ID),
+        buffer.getLong(base + ROLE_MASK),
+        buffer.getLong(base + EXPIRES_AT),
+        buffer.getInt(base + KIND),
+        buffer.getInt(base + TOKEN_VERSION));
+  }
+
+  private void delete(final int slot) {
+    int hole = slot;
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      if (kindAt(next) == FREE) {
+        break;
+      }
+      int home = (int) buffer.getLong(offset(next) + HANDLE_HIGH) & mask;
+      // The session at next may fill the hole only if its home slot is not between them
+      boolean reachable = hole <= next ? home > hole && home <= next : home > hole || home <= next;
+      if (!reachable) {
+        copySlot(next, hole);
+        hole = next;
+      }
+    }
+    buffer.putInt(offset(hole) + KIND, FREE);
+    size--;
+  }
+
+  private void copySlot(final int from, final int to) {
+    int source = offset(from);
+    int target = offset(to);
+    for (int field = 0; field < SLOT_BYTES; field += Long.BYTES) {
+      buffer.putLong(target + field, buffer.getLong(source + field));
+    }
+  }
+
+  private void clear() {
+    for (int slot = 0; slot < capacity; slot++) {
+      buffer.putInt(offset(slot) + KIND, FREE);
+    }
+    buffer.putInt(0, MAGIC);
+    buffer.putInt(4, VERSION);
+    buffer.putInt(8, capacity);
+    size = 0;
+  }
+
+  private int countOccupied() {
+    int occupied = 0;
+    for (int slot = 0; slot < capacity; slot++) {
+      if (kindAt(slot) != FREE) {
+        occupied++;
+      }
+    }
+    return occupied;
+  }
+
+  private boolean matches(final int slot, final long high, final long low) {
+    int base = offset(slot);
+    return buffer.getLong(base + HANDLE_HIGH) == high && buffer.getLong(base + HANDLE_LOW) == low;
+  }
+
+  private int kindAt(final int slot) {
+    return buffer.getInt(offset(slot) + KIND);
+  }
+
+  private static int offset(final int slot) {
+    return HEADER_BYTES + slot * SLOT_BYTES;
+  }
+}
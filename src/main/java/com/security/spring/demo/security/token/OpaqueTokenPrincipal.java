@@ -0,0 +1,36 @@
+package com.security.spring.demo.security.token;
+
+import com.security.spring.demo.security.RoleMaskPrincipal;
+import java.util.Collection;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+/**
+ * Principal rebuilt from an opaque token session without loading the user. {@link #getUsername()}
+ * reports the email, like the user principal of a JWT, so analytics and forward-auth headers do
+ * not depend on the token format.
+ */
+public record OpaqueTokenPrincipal(
+    long userId, String email, long roleMask, Collection<? extends GrantedAuthority> authorities)
+    implements UserDetails, RoleMaskPrincipal {
+
+  @Override
+  public long getRoleMask() {
+    return roleMask;
+  }
+
+  @Override
+  public Collection<? extends GrantedAuthority> getAuthorities() {
+    return authorities;
+  }
+
+  @Override
+  public String getPassword() {
+    return null;
+  }
+
+  @Override
+  public String getUsername() {
+    return email;
+  }
+}
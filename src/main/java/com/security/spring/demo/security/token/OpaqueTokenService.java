@@ -0,0 +1,250 @@
+package com.security.spring.demo.security.token;
+
+import com.security.spring.demo.config.datasource.ShardContext;
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.entity.User;
+import com.security.spring.demo.repository.UserRepository;
+import com.security.spring.demo.service.RoleBitRegistry;
+import com.security.spring.demo.service.TokenVersionService;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+/**
+ * Issues and resolves opaque reference tokens: random 128-bit handles whose sessions live in the
+ * {@link OffHeapTokenStore}. Unlike JWTs they carry no claims and stop working as soon as they are
+ * revoked. Sessions are stored under the first 128 bits of the SHA-256 digest of the handle, so the
+ * store file holds nothing that can be replayed as a token.
+ */
+@Service
+@Slf4j
+public class OpaqueTokenService {
+
+  /** Prefix that tells opaque handles apart from JWTs in the Authorization header */
+  public static final String TOKEN_PREFIX = "ot_";
+
+  public static final int ACCESS = 1;
+  public static final int REFRESH = 2;
+
+  private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+  private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+  private static final int HANDLE_BYTES = 16;
+
+  private final SecureRandom random = new SecureRandom();
+  private final OffHeapTokenStore store;
+  private final RoleBitRegistry roleBitRegistry;
+  private final TokenVersionService tokenVersionService;
+  private final UserRepository userRepository;
+  private final ShardRouter shardRouter;
+  private final Map<Long, String> emails = new ConcurrentHashMap<>();
+  private final long accessTokenTtl;
+  private final long refreshTokenTtl;
+  private final int sweepBatchSize;
+
+  public OpaqueTokenService(
+      final RoleBitRegistry roleBitRegistry,
+      final TokenVersionService tokenVersionService,
+      final UserRepository userRepository,
+      final ShardRouter shardRouter,
+      @Value("${application.security.opaque-tokens.store-path}") final String storePath,
+      @Value("${application.security.opaque-tokens.capacity:1048576}") final int capacity,
+      @Value("${application.security.opaque-tokens.expiration:3600000}") final long accessTokenTtl,
+      @Value("${application.security.opaque-tokens.refresh-token.expiration:604800000}")
+          final long refreshTokenTtl,
+      @Value("${application.security.opaque-tokens.sweep-batch-size:4096}")
+          final int sweepBatchSize)
+      throws IOException {
+    this.roleBitRegistry = roleBitRegistry;
+    this.tokenVersionService = tokenVersionService;
+    this.userRepository = userRepository;
+    this.shardRouter = shardRouter;
+    this.store = OffHeapTokenStore.open(Path.of(storePath), capacity);
+    this.accessTokenTtl = accessTokenTtl;
+    this.refreshTokenTtl = refreshTokenTtl;
+    this.sweepBatchSize = sweepBatchSize;
+    log.info("Opened opaque token store {} with {} live sessions", storePath, store.size());
+  }
+
+  public static boolean isOpaqueToken(final String token) {
+    return token.startsWith(TOKEN_PREFIX);
+  }
+
+  public String issueAccessToken(final User user) {
+    return issue(user, ACCESS, accessTokenTtl);
+  }
+
+  public String issueRefreshToken(final User user) {
+    return issue(user, REFRESH, refreshTokenTtl);
+  }
+
+  /** Access token lifetime in seconds */
+  public long accessTokenExpiresIn() {
+    return accessTokenTtl / 1000;
+  }
+
+  /**
+   * Principal of a live access token, resolved with a single store lookup. The email comes from
+   * memory, and only after a restart from the database, once per user.
+   */
+  public Optional<OpaqueTokenPrincipal> resolveAccessToken(final String token) {
+    return resolve(token, ACCESS)
+        .flatMap(
+            entry ->
+                emailOf(entry.userId())
+                    .map(
+                        email ->
+                            new OpaqueTokenPrincipal(
+                                entry.userId(),
+                                email,
+                                entry.roleMask(),
+                                authoritiesOf(entry.roleMask()))));
+  }
+
+  /**
+   * Id of the user owning a live refresh token, removing the token in the same step so that it can
+   * be redeemed only once even by concurrent requests
+   */
+  public Optional<Long> consumeRefreshToken(final String token) {
+    long[] handle = decode(token);
+    if (handle == null) {
+      return Optional.empty();
+    }
+    OffHeapTokenStore.Entry entry =
+        store.take(handle[0], handle[1], REFRESH, System.currentTimeMillis());
+    return entry != null && tokenVersionService.isCurrent(entry.userId(), entry.tokenVersion())
+        ? Optional.of(entry.userId())
+        : Optional.empty();
+  }
+
+  /**
+   * Forget a deleted user. Their sessions are already rejected through the raised token version;
+   * this only drops the cached email.
+   */
+  public void forgetUser(final long userId) {
+    emails.remove(userId);
+  }
+
+  /** Revoke the token immediately; returns whether it was known */
+  public boolean revoke(final String token) {
+    long[] handle = decode(token);
+    return handle != null && store.remove(handle[0], handle[1]);
+  }
+
+  /** Free a slice of the table from expired sessions on each run */
+  @Scheduled(fixedDelayString = "${application.security.opaque-tokens.sweep-interval:10000}")
+  public void reclaimExpired() {
+    int removed = store.reclaimExpired(System.currentTimeMillis(), sweepBatchSize);
+    if (removed > 0) {
+      log.debug("Reclaimed {} expired opaque token sessions", removed);
+    }
+  }
+
+  @PreDestroy
+  public void close() throws IOException {
+    store.close();
+  }
+
+  private String issue(final User user, final int kind, final long ttl) {
+    byte[] handle = new byte[HANDLE_BYTES];
+    random.nextBytes(handle);
+    long[] key = keyOf(handle);
+    long now = System.currentTimeMillis();
+    rememberEmail(user.getId(), user.getEmail());
+    store.put(
+        key[0],
+        key[1],
+        new OffHeapTokenStore.Entry(
+            user.getId(), user.getRoleMask(), now + ttl, kind, user.getTokenVersion()),
+        now);
+    return TOKEN_PREFIX + ENCODER.encodeToString(handle);
+  }
+
+  private Optional<OffHeapTokenStore.Entry> resolve(final String token, final int kind) {
+    long[] handle = decode(token);
+    if (handle == null) {
+      return Optional.empty();
+    }
+    OffHeapTokenStore.Entry entry = store.get(handle[0], handle[1], System.currentTimeMillis());
+    return entry != null
+            && entry.kind() == kind
+            && tokenVersionService.isCurrent(entry.userId(), entry.tokenVersion())
+        ? Optional.of(entry)
+        : Optional.empty();
+  }
+
+  /** Email of a session's user; empty once the user has been deleted */
+  private Optional<String> emailOf(final long userId) {
+    String email = emails.get(userId);
+    if (email == null) {
+      try (ShardContext.Scope shard = shardRouter.onId(userId)) {
+        email = userRepository.findEmailById(userId).orElse(null);
+      }
+      if (email != null) {
+        rememberEmail(userId, email);
+      }
+    }
+    return Optional.ofNullable(email);
+  }
+
+  private void rememberEmail(final long userId, final String email) {
+    // Live sessions never outnumber the store's slots; past that, stale users are dropped wholesale
+    if (emails.size() >= store.capacity()) {
+      emails.clear();
+    }
+    emails.put(userId, email);
+  }
+
+  private static long[] decode(final String token) {
+    if (!isOpaqueToken(token)) {
+      return null;
+    }
+    byte[] handle;
+    try {
+      handle = DECODER.decode(token.substring(TOKEN_PREFIX.length()));
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+    if (handle.length != HANDLE_BYTES) {
+      return null;
+    }
+    return keyOf(handle);
+  }
+
+  /** Store key of a handle: the first 128 bits of its SHA-256 digest */
+  private static long[] keyOf(final byte[] handle) {
+    ByteBuffer digest;
+    try {
+      digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(handle));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+    return new long[] {digest.getLong(), digest.getLong()};
+  }
+
+  private List<GrantedAuthority> authoritiesOf(final long roleMask) {
+    List<GrantedAuthority> authorities = new ArrayList<>(Long.bitCount(roleMask));
+    for (long remaining = roleMask; remaining != 0; remaining &= remaining - 1) {
+      String name = roleBitRegistry.nameOf(Long.numberOfTrailingZeros(remaining));
+      if (name != null) {
+        authorities.add(new SimpleGrantedAuthority(name));
+      }
+    }
+    return authorities;
+  }
+}
@@ -0,0 +1,41 @@
+package com.security.spring.demo.seed;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+/**
+ * Seeds the configured users once the schema is migrated and then shuts the application down:
+ *
+ * <pre>
+ * java -jar spring-security-demo.jar --spring.profiles.active=seed --application.seed.users=10000000
+ * </pre>
+ */
+@Component
+@Profile("seed")
+@EnableConfigurationProperties(SeedProperties.class)
+@RequiredArgsConstructor
+@Slf4j
+public class SeedCommand implements ApplicationRunner {
+
+  private final UserSeeder userSeeder;
+  private final SeedProperties properties;
+  private final ConfigurableApplicationContext context;
+
+  @Override
+  public void run(final ApplicationArguments args) {
+    UserSeeder.Result result = userSeeder.seed(properties);
+    log.info(
+        "Seeded {} users with {} role assignments in {} ms",
+        result.users(),
+        result.userRoles(),
+        result.millis());
+    System.exit(SpringApplication.exit(context));
+  }
+}
@@ -0,0 +1,41 @@
+package com.security.spring.demo.seed;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/** Shape of the synthetic user population written by {@link UserSeeder} */
+@Data
+@ConfigurationProperties(prefix = "application.seed")
+public class SeedProperties {
+
+  /** Users to create */
+  private long users = 0;
+
+  /** Index of the first user, so a later run can extend an earlier one without collisions */
+  private long startIndex = 0;
+
+  /** The same seed always produces the same users, roles and login offsets */
+  private long seed = 42;
+
+  /** Percentage of users holding each role, drawn independently per role */
+  private Map<String, Double> rolePercentages =
+      new LinkedHashMap<>(
+          Map.of("ROLE_USER", 100.0, "ROLE_MODERATOR", 2.0, "ROLE_ADMIN", 0.1));
+
+  /** Last logins are spread uniformly over this period before the run */
+  private Duration lastLoginSpread = Duration.ofDays(90);
+
+  /** Percentage of users that never logged in */
+  private double neverLoggedInPercentage = 20.0;
+
+  /** Password of every seeded user; hashed once and the hash reused */
+  private String password = "Seed@1234";
+
+  private String emailDomain = "seed.example.com";
+
+  /** Users written per transaction */
+  private int batchSize = 10000;
+}
@@ -0,0 +1,96 @@
+package com.security.spring.demo.seed;
+
+import com.security.spring.demo.util.Hashing;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Derives the synthetic user at any index from the seed alone, so a population can be generated in
+ * any order or in parts and still come out the same. Every random draw is a mix of the seed, the
+ * index and a per-attribute salt rather than a step of a shared generator.
+ */
+public final class SyntheticUsers {
+
+  private static final long INDEX_SPREAD = 0x9e3779b97f4a7c15L;
+  private static final long LOGIN_SALT = 0x4c4f47494eL;
+  private static final long NEVER_LOGGED_IN_SALT = 0x4e45564552L;
+  private static final long CREATED_SALT = 0x43524541544544L;
+  private static final double UNIT = 0x1.0p-53;
+
+  /** One generated user; roles are indexes into the role names passed to the constructor */
+  public record SyntheticUser(
+      long index,
+      String email,
+      String username,
+      LocalDateTime createdAt,
+      LocalDateTime lastLogin,
+      long roleIndexes) {
+
+    public boolean hasRole(final int roleIndex) {
+      return (roleIndexes & (1L << roleIndex)) != 0;
+    }
+  }
+
+  private final long seed;
+  private final String emailDomain;
+  private final List<String> roleNames;
+  private final long[] roleSalts;
+  private final double[] roleFractions;
+  private final double neverLoggedInFraction;
+  private final long spreadSeconds;
+  private final LocalDateTime reference;
+
+  public SyntheticUsers(final SeedProperties properties, final LocalDateTime reference) {
+    this.seed = properties.getSeed();
+    this.emailDomain = properties.getEmailDomain();
+    this.roleNames = List.copyOf(properties.getRolePercentages().keySet());
+    if (roleNames.size() > Long.SIZE) {
+      throw new IllegalArgumentException("At most " + Long.SIZE + " roles can be seeded");
+    }
+    this.roleSalts = new long[roleNames.size()];
+    this.roleFractions = new double[roleNames.size()];
+    int i = 0;
+    for (Map.Entry<String, Double> role : properties.getRolePercentages().entrySet()) {
+      // Salted by name so adding or reordering roles leaves the other roles' draws unchanged
+      roleSalts[i] = Hashing.hash64(role.getKey());
+      roleFractions[i] = role.getValue() / 100.0;
+      i++;
+    }
+    this.neverLoggedInFraction = properties.getNeverLoggedInPercentage() / 100.0;
+    this.spreadSeconds = Math.max(1, properties.getLastLoginSpread().toSeconds());
+    this.reference = reference;
+  }
+
+  public List<String> roleNames() {
+    return roleNames;
+  }
+
+  public SyntheticUser user(final long index) {
+    long base = Hashing.mix64(seed + index * INDEX_SPREAD);
+    long roles = 0L;
+    for (int r = 0; r < roleSalts.length; r++) {
+      if (uniform(base, roleSalts[r]) < roleFractions[r]) {
+        roles |= 1L << r;
+      }
+    }
+    LocalDateTime lastLogin =
+        uniform(base, NEVER_LOGGED_IN_SALT) < neverLoggedInFraction
+            ? null
+            : reference.minusSeconds(secondsWithinSpread(base, LOGIN_SALT));
+    LocalDateTime createdAt =
+        (lastLogin != null ? lastLogin : reference)
+            .minusSeconds(secondsWithinSpread(base, CREATED_SALT));
+    return new SyntheticUser(
+        index, "user" + index + "@" + emailDomain, "seed" + index, createdAt, lastLogin, roles);
+  }
+
+  private long secondsWithinSpread(final long base, final long salt) {
+    return (long) (uniform(base, salt) * spreadSeconds);
+  }
+
+  /** Uniform in [0, 1) */
+  private static double uniform(final long base, final long salt) {
+    return (Hashing.mix64(base ^ salt) >>> 11) * UNIT;
+  }
+}
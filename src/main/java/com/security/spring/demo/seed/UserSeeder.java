@@ -0,0 +1,273 @@
+package com.security.spring.demo.seed;
+
+import com.security.spring.demo.config.datasource.ShardRouter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+
+/**
+ * Writes a synthetic user population for performance work. Each user goes to its home shard with
+ * ids allocated past the shard's current maximum, and users, user_roles and, when sharded, the
+ * user directory are streamed with PostgreSQL COPY, or batched inserts on other databases. The
+ * password is hashed once and the hash shared by every user.
+ *
+ * <p>Meant for an otherwise idle database: registrations that run concurrently may take an id the
+ * seeder is about to use. Running instances only see the new users through the user replica and
+ * should be restarted for the availability filter and sketches.
+ */
+@Service
+@Slf4j
+public class UserSeeder {
+
+  private static final String[] USER_COLUMNS = {
+    "id",
+    "email",
+    "username",
+    "password",
+    "first_name",
+    "last_name",
+    "created_at",
+    "updated_at",
+    "last_login"
+  };
+  private static final String[] USER_ROLE_COLUMNS = {"user_id", "role_id"};
+  private static final String[] DIRECTORY_COLUMNS = {"username", "email", "reserved_at"};
+  private static final long PROGRESS_INTERVAL = 1_000_000;
+
+  private final ShardRouter shardRouter;
+  private final DataSource dataSource;
+  private final PasswordEncoder passwordEncoder;
+
+  public UserSeeder(
+      final ShardRouter shardRouter,
+      final DataSource dataSource,
+      final PasswordEncoder passwordEncoder) {
+    this.shardRouter = shardRouter;
+    this.dataSource = dataSource;
+    this.passwordEncoder = passwordEncoder;
+  }
+
+  public Result seed(final SeedProperties properties) {
+    long started = System.currentTimeMillis();
+    SyntheticUsers users = new SyntheticUsers(properties, LocalDateTime.now());
+    String passwordHash = passwordEncoder.encode(properties.getPassword());
+    int shardCount = shardRouter.shardCount();
+    List<ShardWriter> writers = new ArrayList<>(shardCount);
+    try {
+      for (int shard = 0; shard < shardCount; shard++) {
+        writers.add(new ShardWriter(shard, openConnection(shard), users.roleNames()));
+      }
+      Connection directory = shardRouter.isEnabled() ? writers.get(0).connection : null;
+      long end = properties.getStartIndex() + properties.getUsers();
+      long userRoles = 0;
+      for (long from = properties.getStartIndex(); from < end; from += properties.getBatchSize()) {
+        long to = Math.min(end, from + properties.getBatchSize());
+        LocalDateTime writtenAt = LocalDateTime.now();
+        List<Object[]> directoryRows = new ArrayList<>();
+        for (ShardWriter writer : writers) {
+          writer.clear();
+        }
+        for (long index = from; index < to; index++) {
+          SyntheticUsers.SyntheticUser user = users.user(index);
+          ShardWriter writer = writers.get(shardRouter.shardForEmail(user.email()));
+          writer.add(user, passwordHash, writtenAt);
+          if (directory != null) {
+            directoryRows.add(new Object[] {user.username(), user.email(), writtenAt});
+          }
+        }
+        if (directory != null) {
+          // Committed with shard 0's users, which share the connection
+          write(directory, "user_directory", DIRECTORY_COLUMNS, directoryRows);
+        }
+        for (ShardWriter writer : writers) {
+          userRoles += writer.flush();
+        }
+        if (to / PROGRESS_INTERVAL != from / PROGRESS_INTERVAL) {
+          log.info("Seeded {} of {} users", to - properties.getStartIndex(), properties.getUsers());
+        }
+      }
+      for (ShardWriter writer : writers) {
+        writer.restartIdentity();
+      }
+      return new Result(properties.getUsers(), userRoles, System.currentTimeMillis() - started);
+    } catch (SQLException | IOException e) {
+      throw new IllegalStateException("Seeding users failed", e);
+    } finally {
+      for (ShardWriter writer : writers) {
+        writer.close();
+      }
+    }
+  }
+
+  private Connection openConnection(final int shard) throws SQLException {
+    Connection connection =
+        (shardRouter.isEnabled() ? shardRouter.shard(shard) : dataSource).getConnection();
+    connection.setAutoCommit(false);
+    return connection;
+  }
+
+  /** Append rows with COPY when the connection is to PostgreSQL, else as one JDBC batch */
+  private static void write(
+      final Connection connection,
+      final String table,
+      final String[] columns,
+      final List<Object[]> rows)
+      throws SQLException, IOException {
+    if (rows.isEmpty()) {
+      return;
+    }
+    if (connection.isWrapperFor(PGConnection.class)) {
+      StringBuilder text = new StringBuilder(rows.size() * 128);
+      for (Object[] row : rows) {
+        for (int i = 0; i < row.length; i++) {
+          if (i > 0) {
+            text.append('\t');
+          }
+          // Seeded values never contain tabs, newlines or backslashes, so nothing is escaped
+          text.append(row[i] == null ? "\\N" : row[i]);
+        }
+        text.append('\n');
+      }
+      connection
+          .unwrap(PGConnection.class)
+          .getCopyAPI()
+          .copyIn(
+              "COPY " + table + " (" + String.join(", ", columns) + ") FROM STDIN",
+              new StringReader(text.toString()));
+      return;
+    }
+    String placeholders = "?" + ", ?".repeat(columns.length - 1);
+    try (PreparedStatement insert =
+        connection.prepareStatement(
+            "INSERT INTO "
+                + table
+                + " ("
+                + String.join(", ", columns)
+                + ") VALUES ("
+                + placeholders
+                + ")")) {
+      for (Object[] row : rows) {
+        for (int i = 0; i < row.length; i++) {
+          insert.setObject(
+              i + 1, row[i] instanceof LocalDateTime time ? Timestamp.valueOf(time) : row[i]);
+        }
+        insert.addBatch();
+      }
+      insert.executeBatch();
+    }
+  }
+
+  /** Buffers one batch of a shard's users and their role rows, committing them together */
+  private static final class ShardWriter {
+
+    private final int shard;
+    private final Connection connection;
+    private final long[] roleIds;
+    private final List<Object[]> users = new ArrayList<>();
+    private final List<Object[]> userRoles = new ArrayList<>();
+    private long nextId;
+
+    private ShardWriter(final int shard, final Connection connection, final List<String> roleNames)
+        throws SQLException {
+      this.shard = shard;
+      this.connection = connection;
+      Map<String, Long> idsByName = new HashMap<>();
+      try (Statement statement = connection.createStatement();
+          ResultSet roles = statement.executeQuery("SELECT id, name FROM roles")) {
+        while (roles.next()) {
+          idsByName.put(roles.getString("name"), roles.getLong("id"));
+        }
+      }
+      this.roleIds = new long[roleNames.size()];
+      for (int i = 0; i < roleNames.size(); i++) {
+        Long id = idsByName.get(roleNames.get(i));
+        if (id == null) {
+          throw new IllegalArgumentException("Unknown role " + roleNames.get(i));
+        }
+        roleIds[i] = id;
+      }
+      try (PreparedStatement maxId =
+          connection.prepareStatement("SELECT COALESCE(MAX(id), ?) FROM users")) {
+        maxId.setLong(1, Math.max(ShardRouter.firstId(shard), 1L) - 1);
+        try (ResultSet result = maxId.executeQuery()) {
+          result.next();
+          this.nextId = result.getLong(1) + 1;
+        }
+      }
+    }
+
+    private void add(
+        final SyntheticUsers.SyntheticUser user,
+        final String passwordHash,
+        final LocalDateTime writtenAt) {
+      long id = nextId++;
+      // updated_at is the write time so the user replica of running instances picks them up
+      users.add(
+          new Object[] {
+            id,
+            user.email(),
+            user.username(),
+            passwordHash,
+            "Seed",
+            "User " + user.index(),
+            user.createdAt(),
+            writtenAt,
+            user.lastLogin()
+          });
+      for (int r = 0; r < roleIds.length; r++) {
+        if (user.hasRole(r)) {
+          userRoles.add(new Object[] {id, roleIds[r]});
+        }
+      }
+    }
+
+    /** Write and commit the buffered batch, returning the user_roles rows written */
+    private long flush() throws SQLException, IOException {
+      write(connection, "users", USER_COLUMNS, users);
+      write(connection, "user_roles", USER_ROLE_COLUMNS, userRoles);
+      connection.commit();
+      return userRoles.size();
+    }
+
+    private void clear() {
+      users.clear();
+      userRoles.clear();
+    }
+
+    /** Move the identity past the seeded ids so later registrations do not collide with them */
+    private void restartIdentity() throws SQLException {
+      try (Statement statement = connection.createStatement()) {
+        statement.execute("ALTER TABLE users ALTER COLUMN id RESTART WITH " + nextId);
+      }
+      connection.commit();
+      log.debug("Shard {} continues user ids at {}", shard, nextId);
+    }
+
+    private void close() {
+      try {
+        connection.rollback();
+        connection.close();
+      } catch (SQLException e) {
+        log.warn("Closing the seeding connection of shard {} failed", shard, e);
+      }
+    }
+  }
+
+  /** Counts of one seeding run */
+  public record Result(long users, long userRoles, long millis) {}
+}
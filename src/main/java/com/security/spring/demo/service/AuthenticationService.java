@@ -1,24 +1,40 @@
 package com.security.spring.demo.service;
 
+import com.security.spring.demo.config.datasource.ShardContext;
+import com.security.spring.demo.config.datasource.ShardRouter;
 import com.security.spring.demo.dto.AuthenticationRequest;
 import com.security.spring.demo.dto.AuthenticationResponse;
 import com.security.spring.demo.dto.RegisterRequest;
+import com.security.spring.demo.dto.TokenFormat;
 import com.security.spring.demo.entity.Role;
 import com.security.spring.demo.entity.User;
+import com.security.spring.demo.exception.ConflictException;
+import com.security.spring.demo.exception.InvalidTokenException;
 import com.security.spring.demo.repository.RoleRepository;
+import com.security.spring.demo.repository.UserDirectory;
 import com.security.spring.demo.repository.UserRepository;
+import com.security.spring.demo.security.token.OpaqueTokenService;
+import com.security.spring.demo.util.SecurityUtils;
+import io.jsonwebtoken.Claims;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.Set;
-import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.authentication.AuthenticationCredentialsNotFoundException;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Registration and login. Password hashing and verification, at a few hundred milliseconds of CPU
+ * each, run before any transaction starts, so a request only holds a pooled connection for the
+ * statements themselves.
+ */
 @Service
-@RequiredArgsConstructor
 public class AuthenticationService {
 
   private final UserRepository userRepository;
@@ -26,16 +42,66 @@ public class AuthenticationService {
   private final PasswordEncoder passwordEncoder;
   private final JwtService jwtService;
   private final AuthenticationManager authenticationManager;
+  private final AvailabilityService availabilityService;
+  private final OpaqueTokenService opaqueTokenService;
+  private final ShardRouter shardRouter;
+  private final UserDirectory userDirectory;
+  private final CustomUserDetailsService userDetailsService;
+  private final TokenVersionService tokenVersionService;
+  private final TransactionTemplate transactionTemplate;
+
+  public AuthenticationService(
+      final UserRepository userRepository,
+      final RoleRepository roleRepository,
+      final PasswordEncoder passwordEncoder,
+      final JwtService jwtService,
+      final AuthenticationManager authenticationManager,
+      final AvailabilityService availabilityService,
+      final OpaqueTokenService opaqueTokenService,
+      final ShardRouter shardRouter,
+      final UserDirectory userDirectory,
+      final CustomUserDetailsService userDetailsService,
+      final TokenVersionService tokenVersionService,
+      final PlatformTransactionManager transactionManager) {
+    this.userRepository = userRepository;
+    this.roleRepository = roleRepository;
+    this.passwordEncoder = passwordEncoder;
+    this.jwtService = jwtService;
+    this.authenticationManager = authenticationManager;
+    this.availabilityService = availabilityService;
+    this.opaqueTokenService = opaqueTokenService;
+    this.shardRouter = shardRouter;
+    this.userDirectory = userDirectory;
+    this.userDetailsService = userDetailsService;
+    this.tokenVersionService = tokenVersionService;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
 
-  @Transactional
+  /**
+   * Insert the user directly and let the unique constraints on email and username reject
+   * duplicates, which also settles concurrent registrations of the same email. When sharded, the
+   * user directory settles them across shards.
+   */
   public AuthenticationResponse register(final RegisterRequest request) {
-    if (userRepository.existsByEmail(request.getEmail())) {
-      throw new RuntimeException("User with this email already exists");
-    }
-    if (userRepository.existsByUsername(request.getUsername())) {
-      throw new RuntimeException("User with this username already exists");
+    String passwordHash = passwordEncoder.encode(request.getPassword());
+    User user;
+    try (ShardContext.Scope shard = shardRouter.onEmail(request.getEmail())) {
+      user = transactionTemplate.execute(status -> createUser(request, passwordHash));
     }
+    availabilityService.markTaken(request.getEmail(), request.getUsername());
+
+    var jwtToken = jwtService.generateToken(user);
+    var refreshToken = jwtService.generateRefreshToken(user);
 
+    return AuthenticationResponse.builder()
+        .accessToken(jwtToken)
+        .refreshToken(refreshToken)
+        .tokenType("Bearer")
+        .expiresIn(3600L)
+        .build();
+  }
+
+  private User createUser(final RegisterRequest request, final String passwordHash) {
     Role userRole =
         roleRepository
             .findByName("ROLE_USER")
@@ -48,7 +114,7 @@ public class AuthenticationService {
         User.builder()
             .email(request.getEmail())
             .username(request.getUsername())
-            .password(passwordEncoder.encode(request.getPassword()))
+            .password(passwordHash)
             .firstName(request.getFirstName())
             .lastName(request.getLastName())
             .roles(roles)
@@ -58,31 +124,38 @@ public class AuthenticationService {
             .credentialsNonExpired(true)
             .build();
 
-    userRepository.save(user);
-
-    var jwtToken = jwtService.generateToken(user);
-    var refreshToken = jwtService.generateRefreshToken(user);
-
-    return AuthenticationResponse.builder()
-        .accessToken(jwtToken)
-        .refreshToken(refreshToken)
-        .tokenType("Bearer")
-        .expiresIn(3600L)
-        .build();
+    userDirectory.reserve(request.getUsername(), request.getEmail());
+    try {
+      userRepository.saveAndFlush(user);
+    } catch (DataIntegrityViolationException e) {
+      throw ConflictException.fromUserConstraint(e);
+    }
+    return user;
   }
 
-  @Transactional
+  /**
+   * Verify the password against the user loaded for authentication, which is then reused for the
+   * tokens, and record the login with a single update
+   */
   public AuthenticationResponse authenticate(final AuthenticationRequest request) {
-    authenticationManager.authenticate(
-        new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword()));
-
-    var user =
-        userRepository
-            .findByEmail(request.getEmail())
-            .orElseThrow(() -> new RuntimeException("User not found"));
+    Authentication authentication =
+        authenticationManager.authenticate(
+            new UsernamePasswordAuthenticationToken(request.getEmail(), request.getPassword()));
+
+    User user =
+        authentication.getPrincipal() instanceof User principal
+            ? principal
+            : userDetailsService
+                .findByEmail(request.getEmail())
+                .orElseThrow(() -> new RuntimeException("User not found"));
+
+    try (ShardContext.Scope shard = shardRouter.onId(user.getId())) {
+      userRepository.updateLastLogin(user.getId(), LocalDateTime.now());
+    }
 
-    user.setLastLogin(LocalDateTime.now());
-    userRepository.save(user);
+    if (request.getTokenFormat() == TokenFormat.OPAQUE) {
+      return opaqueTokens(user);
+    }
 
     var jwtToken = jwtService.generateToken(user);
     var refreshToken = jwtService.generateRefreshToken(user);
@@ -95,22 +168,25 @@ public class AuthenticationService {
         .build();
   }
 
-  @Transactional(readOnly = true)
   public AuthenticationResponse refreshToken(final String refreshToken) {
     if (refreshToken == null || !refreshToken.startsWith("Bearer ")) {
       throw new RuntimeException("Invalid refresh token");
     }
 
     String token = refreshToken.substring(7);
-    String userEmail = jwtService.extractUsername(token);
+    if (OpaqueTokenService.isOpaqueToken(token)) {
+      return refreshOpaqueToken(token);
+    }
+    Claims claims = jwtService.parseClaims(token);
+    String userEmail = claims.getSubject();
 
     if (userEmail != null) {
       var user =
-          userRepository
+          userDetailsService
               .findByEmail(userEmail)
               .orElseThrow(() -> new RuntimeException("User not found"));
 
-      if (jwtService.isTokenValid(token, user)) {
+      if (jwtService.isTokenValid(claims, user) && tokenVersionService.isCurrent(claims, user)) {
         var accessToken = jwtService.generateToken(user);
         var newRefreshToken = jwtService.generateRefreshToken(user);
 
@@ -124,4 +200,53 @@ public class AuthenticationService {
     }
     throw new RuntimeException("Invalid refresh token");
   }
+
+  /**
+   * Revoke an opaque token immediately; JWTs stay valid until they expire unless all sessions are
+   * revoked through {@link TokenVersionService}
+   */
+  public void logout(final String authorization) {
+    if (authorization != null && authorization.startsWith("Bearer ")) {
+      String token = authorization.substring(7);
+      if (OpaqueTokenService.isOpaqueToken(token)) {
+        opaqueTokenService.revoke(token);
+      }
+    }
+  }
+
+  /**
+   * Revoke every access and refresh token of the current user, in both token formats, by raising
+   * their token version
+   */
+  public void logoutAll() {
+    long userId =
+        SecurityUtils.getCurrentUserId()
+            .orElseThrow(() -> new AuthenticationCredentialsNotFoundException("Not authenticated"));
+    tokenVersionService.invalidateTokens(userId);
+  }
+
+  private AuthenticationResponse refreshOpaqueToken(final String token) {
+    // Rotate so a stolen refresh token can be used at most once, even by racing requests
+    Long userId =
+        opaqueTokenService
+            .consumeRefreshToken(token)
+            .orElseThrow(() -> new InvalidTokenException("Invalid refresh token"));
+    User user;
+    try (ShardContext.Scope shard = shardRouter.onId(userId)) {
+      user =
+          userRepository
+              .findById(userId)
+              .orElseThrow(() -> new InvalidTokenException("Invalid refresh token"));
+    }
+    return opaqueTokens(user);
+  }
+
+  private AuthenticationResponse opaqueTokens(final User user) {
+    return AuthenticationResponse.builder()
+        .accessToken(opaqueTokenService.issueAccessToken(user))
+        .refreshToken(opaqueTokenService.issueRefreshToken(user))
+        .tokenType("Bearer")
+        .expiresIn(opaqueTokenService.accessTokenExpiresIn())
+        .build();
+  }
 }
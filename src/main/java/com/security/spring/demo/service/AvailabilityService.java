@@ -0,0 +1,209 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.repository.UserDirectory;
+import com.security.spring.demo.repository.UserRepository;
+import com.security.spring.demo.util.BloomFilter;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Answers email and username availability from Bloom filters of taken values. Most lookups are for
+ * free names, which the filters rule out without touching the database; only possible matches are
+ * confirmed with a query, against the user directory when sharded.
+ *
+ * <p>The filters are per instance. Users registered elsewhere are added by a periodic refresh that
+ * loads users created since the previous load, so until then another instance's new name may be
+ * reported free; registering it still fails on the unique constraints. Once the filters hold more
+ * values than they were sized for they are rebuilt from every shard, and registrations made while
+ * a rebuild loads are carried over into the new filters.
+ */
+@Service
+@Slf4j
+public class AvailabilityService {
+
+  /** Loads overlap by this much so users stamped by a clock running behind are not skipped */
+  private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+  private final UserRepository userRepository;
+  private final ShardRouter shardRouter;
+  private final ShardReader shardReader;
+  private final UserDirectory userDirectory;
+  private final long expectedUsers;
+  private final double falsePositiveProbability;
+  private final ReentrantLock loading = new ReentrantLock();
+  private final AtomicLong inserted = new AtomicLong();
+
+  private volatile BloomFilter takenEmails;
+  private volatile BloomFilter takenUsernames;
+  private volatile long capacity;
+  private volatile LocalDateTime loadedSince;
+
+  /** Normalized email and username of users registered while a rebuild loads, guarded by this */
+  private List<String[]> registeredDuringRebuild;
+
+  public AvailabilityService(
+      final UserRepository userRepository,
+      final ShardRouter shardRouter,
+      final ShardReader shardReader,
+      final UserDirectory userDirectory,
+      @Value("${application.availability.expected-users:1000000}") final long expectedUsers,
+      @Value("${application.availability.false-positive-probability:0.01}")
+          final double falsePositiveProbability) {
+    this.userRepository = userRepository;
+    this.shardRouter = shardRouter;
+    this.shardReader = shardReader;
+    this.userDirectory = userDirectory;
+    this.expectedUsers = expectedUsers;
+    this.falsePositiveProbability = falsePositiveProbability;
+    this.capacity = expectedUsers;
+    this.takenEmails = new BloomFilter(expectedUsers, falsePositiveProbability);
+    this.takenUsernames = new BloomFilter(expectedUsers, falsePositiveProbability);
+  }
+
+  /** Load every taken email and username, sizing the filters for twice the current user count */
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    loading.lock();
+    try {
+      rebuild();
+    } finally {
+      loading.unlock();
+    }
+  }
+
+  /**
+   * Add users created since the last load, including those registered on other instances, or
+   * rebuild the filters once they hold more values than they were sized for.
+   */
+  @Scheduled(
+      fixedDelayString = "${application.availability.refresh-interval:60000}",
+      initialDelayString = "${application.availability.refresh-interval:60000}")
+  public void refresh() {
+    loading.lock();
+    try {
+      if (loadedSince == null || inserted.get() > capacity) {
+        rebuild();
+        return;
+      }
+      LocalDateTime started = LocalDateTime.now();
+      LocalDateTime since = loadedSince;
+      BloomFilter emails = takenEmails;
+      BloomFilter usernames = takenUsernames;
+      long loaded = 0;
+      for (long shardLoaded :
+          shardReader.onEveryShard(
+              () ->
+                  load(
+                      userRepository.streamEmailsAndUsernamesCreatedSince(since),
+                      emails,
+                      usernames))) {
+        loaded += shardLoaded;
+      }
+      loadedSince = started.minus(CLOCK_SKEW);
+      log.debug("Availability filters refreshed with {} users", loaded);
+    } finally {
+      loading.unlock();
+    }
+  }
+
+  public boolean isEmailAvailable(final String email) {
+    if (!takenEmails.mightContain(normalize(email))) {
+      return true;
+    }
+    return shardRouter.isEnabled()
+        ? !userDirectory.isEmailTaken(email)
+        : !userRepository.existsByEmail(email);
+  }
+
+  public boolean isUsernameAvailable(final String username) {
+    if (!takenUsernames.mightContain(normalize(username))) {
+      return true;
+    }
+    return shardRouter.isEnabled()
+        ? !userDirectory.isUsernameTaken(username)
+        : !userRepository.existsByUsername(username);
+  }
+
+  /** Record a newly registered user so later lookups see it */
+  public synchronized void markTaken(final String email, final String username) {
+    String normalizedEmail = normalize(email);
+    String normalizedUsername = normalize(username);
+    takenEmails.put(normalizedEmail);
+    takenUsernames.put(normalizedUsername);
+    inserted.incrementAndGet();
+    if (registeredDuringRebuild != null) {
+      registeredDuringRebuild.add(new String[] {normalizedEmail, normalizedUsername});
+    }
+  }
+
+  private void rebuild() {
+    LocalDateTime started = LocalDateTime.now();
+    synchronized (this) {
+      registeredDuringRebuild = new ArrayList<>();
+    }
+    try {
+      long users =
+          shardReader.onEveryShard(userRepository::count).stream().mapToLong(c -> c).sum();
+      long newCapacity = Math.max(expectedUsers, users * 2);
+      BloomFilter emails = new BloomFilter(newCapacity, falsePositiveProbability);
+      BloomFilter usernames = new BloomFilter(newCapacity, falsePositiveProbability);
+      long loaded = 0;
+      for (long shardLoaded :
+          shardReader.onEveryShard(
+              () -> load(userRepository.streamEmailsAndUsernames(), emails, usernames))) {
+        loaded += shardLoaded;
+      }
+      synchronized (this) {
+        // Registrations that went into the old filters while loading would otherwise be lost
+        for (String[] user : registeredDuringRebuild) {
+          emails.put(user[0]);
+          usernames.put(user[1]);
+        }
+        inserted.set(loaded + registeredDuringRebuild.size());
+        takenEmails = emails;
+        takenUsernames = usernames;
+        capacity = newCapacity;
+      }
+      loadedSince = started.minus(CLOCK_SKEW);
+      log.info(
+          "Availability filters warmed with {} users ({} KiB)",
+          loaded,
+          (emails.sizeInBytes() + usernames.sizeInBytes()) / 1024);
+    } finally {
+      synchronized (this) {
+        registeredDuringRebuild = null;
+      }
+    }
+  }
+
+  private long load(
+      final Stream<Object[]> users, final BloomFilter emails, final BloomFilter usernames) {
+    long loaded = 0;
+    try (Stream<Object[]> rows = users) {
+      for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+        emails.put(normalize((String) row[0]));
+        usernames.put(normalize((String) row[1]));
+        loaded++;
+      }
+    }
+    inserted.addAndGet(loaded);
+    return loaded;
+  }
+
+  private static String normalize(final String value) {
+    return value.trim().toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,381 @@
+package com.security.spring.demo.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring.demo.config.datasource.ShardContext;
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.repository.RoleCacheEvictor;
+import com.security.spring.demo.repository.RoleRepository;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Grants a role to, or revokes it from, many users at once. Identifiers are read in batches, and
+ * each batch is applied per shard in one transaction of set-based statements on user_roles,
+ * instead of loading every user and letting Hibernate rewrite its role collection. Changed users
+ * get a new updated_at for the user replica, and their cached role collections and lookup
+ * snapshots are evicted once the batch commits. A revocation also raises their token version, so
+ * their JWT and opaque tokens, which carry the roles they were issued with, stop working.
+ *
+ * <p>The evictions are local. Other instances keep their cached role collections for up to the
+ * cache TTL and reject the revoked users' tokens from their next token version refresh, so a user
+ * who signs in again there in between can still be issued the old roles.
+ */
+@Service
+@Slf4j
+public class BulkRoleAssignmentService {
+
+  /** Identifiers per batch, which bounds the IN lists of every statement */
+  public static final int BATCH_SIZE = 1000;
+
+  private static final String ROLE_PREFIX = "ROLE_";
+
+  public enum Operation {
+    GRANT,
+    REVOKE
+  }
+
+  public enum Outcome {
+    GRANTED,
+    ALREADY_GRANTED,
+    REVOKED,
+    NOT_GRANTED,
+    NOT_FOUND,
+    INVALID,
+    /** The user's batch failed on its shard and was rolled back */
+    FAILED
+  }
+
+  /** One line of input: a user id or an email, as sent */
+  private record Item(String input, Long id, String email) {}
+
+  /** A user found for an item, on the shard it was looked up on */
+  private record Resolved(long id, String email) {}
+
+  /** Users whose roles changed in a shard batch, with their raised token versions on revoke */
+  private record Applied(List<Resolved> changed, Map<Long, Integer> tokenVersions) {}
+
+  private static final Applied NOTHING_APPLIED = new Applied(List.of(), Map.of());
+
+  private final NamedParameterJdbcTemplate jdbcTemplate;
+  private final TransactionTemplate transactionTemplate;
+  private final ShardRouter shardRouter;
+  private final RoleRepository roleRepository;
+  private final RoleCacheEvictor roleCacheEvictor;
+  private final ResilientUserDetailsService userDetailsService;
+  private final TokenVersionService tokenVersionService;
+  private final ObjectMapper objectMapper;
+
+  public BulkRoleAssignmentService(
+      final DataSource dataSource,
+      final PlatformTransactionManager transactionManager,
+      final ShardRouter shardRouter,
+      final RoleRepository roleRepository,
+      final RoleCacheEvictor roleCacheEvictor,
+      final ResilientUserDetailsService userDetailsService,
+      final TokenVersionService tokenVersionService,
+      final ObjectMapper objectMapper) {
+    this.jdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    this.shardRouter = shardRouter;
+    this.roleRepository = roleRepository;
+    this.roleCacheEvictor = roleCacheEvictor;
+    this.userDetailsService = userDetailsService;
+    this.tokenVersionService = tokenVersionService;
+    this.objectMapper = objectMapper;
+  }
+
+  /** The stored name of the role, checked before any input is read */
+  public String requireRole(final String role) {
+    String roleName = role.startsWith(ROLE_PREFIX) ? role : ROLE_PREFIX + role;
+    return roleRepository
+        .findByName(roleName)
+        .orElseThrow(() -> new RuntimeException("Role not found: " + role))
+        .getName();
+  }
+
+  /**
+   * Apply the operation to the users listed in the input, one id or email per line, and write one
+   * JSON object per line with each user's outcome, in input order
+   */
+  public void assign(
+      final Operation operation,
+      final String roleName,
+      final InputStream input,
+      final OutputStream output) {
+    Map<Outcome, Long> totals = new EnumMap<>(Outcome.class);
+    try (BufferedReader reader =
+            new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(output)) {
+      generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+      List<Item> batch = new ArrayList<>(BATCH_SIZE);
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isBlank()) {
+          batch.add(parse(line.trim()));
+        }
+        if (batch.size() == BATCH_SIZE) {
+          writeOutcomes(batch, apply(operation, roleName, batch), generator, totals);
+          batch.clear();
+        }
+      }
+      if (!batch.isEmpty()) {
+        writeOutcomes(batch, apply(operation, roleName, batch), generator, totals);
+      }
+      generator.writeRaw('\n');
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    log.info("Bulk {} of {}: {}", operation, roleName, totals);
+  }
+
+  private static Item parse(final String input) {
+    if (input.indexOf('@') > 0) {
+      return new Item(input, null, input);
+    }
+    try {
+      return new Item(input, Long.parseLong(input), null);
+    } catch (NumberFormatException e) {
+      return new Item(input, null, null);
+    }
+  }
+
+  /** Outcomes of a batch by item position */
+  private Outcome[] apply(
+      final Operation operation, final String roleName, final List<Item> batch) {
+    Outcome[] outcomes = new Outcome[batch.size()];
+    Map<Integer, List<Integer>> positionsByShard = new HashMap<>();
+    for (int i = 0; i < batch.size(); i++) {
+      Item item = batch.get(i);
+      int shard;
+      if (item.id() != null) {
+        shard = shardRouter.shardForId(item.id());
+      } else if (item.email() != null) {
+        shard = shardRouter.shardForEmail(item.email());
+      } else {
+        outcomes[i] = Outcome.INVALID;
+        continue;
+      }
+      if (shard >= shardRouter.shardCount()) {
+        outcomes[i] = Outcome.NOT_FOUND;
+        continue;
+      }
+      positionsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(i);
+    }
+    for (Map.Entry<Integer, List<Integer>> shardItems : positionsByShard.entrySet()) {
+      applyOnShard(
+          operation, roleName, shardItems.getKey(), shardItems.getValue(), batch, outcomes);
+    }
+    return outcomes;
+  }
+
+  private void applyOnShard(
+      final Operation operation,
+      final String roleName,
+      final int shard,
+      final List<Integer> positions,
+      final List<Item> batch,
+      final Outcome[] outcomes) {
+    Applied applied;
+    try (ShardContext.Scope scope = shardRouter.onShard(shard)) {
+      try {
+        applied = applyInTransaction(operation, roleName, positions, batch, outcomes);
+      } catch (DuplicateKeyException e) {
+        // A concurrent grant inserted the same row after we read the holders; read them again
+        positions.forEach(position -> outcomes[position] = null);
+        applied = applyInTransaction(operation, roleName, positions, batch, outcomes);
+      }
+    } catch (DataAccessException e) {
+      // Report the failure per line rather than cutting off a response that is already streaming
+      log.warn(
+          "Bulk {} of {} failed for {} users on shard {}",
+          operation,
+          roleName,
+          positions.size(),
+          shard,
+          e);
+      positions.forEach(position -> outcomes[position] = Outcome.FAILED);
+      return;
+    }
+    for (int position : positions) {
+      if (outcomes[position] == null) {
+        outcomes[position] = Outcome.NOT_FOUND;
+      }
+    }
+    if (!applied.changed().isEmpty()) {
+      roleCacheEvictor.evictUserRoles(applied.changed().stream().map(Resolved::id).toList());
+      applied.changed().forEach(user -> userDetailsService.evictSnapshot(user.email()));
+      applied.tokenVersions().forEach(tokenVersionService::raised);
+    }
+  }
+
+  private Applied applyInTransaction(
+      final Operation operation,
+      final String roleName,
+      final List<Integer> positions,
+      final List<Item> batch,
+      final Outcome[] outcomes) {
+    return transactionTemplate.execute(
+        status -> {
+          Map<Integer, Resolved> users = resolve(positions, batch);
+          if (users.isEmpty()) {
+            return NOTHING_APPLIED;
+          }
+          Set<Long> ids = new HashSet<>();
+          users.values().forEach(user -> ids.add(user.id()));
+          MapSqlParameterSource parameters =
+              new MapSqlParameterSource("roleName", roleName).addValue("ids", ids);
+          Set<Long> holders =
+              new HashSet<>(
+                  jdbcTemplate.queryForList(
+                      "SELECT ur.user_id FROM user_roles ur JOIN roles r ON r.id = ur.role_id"
+                          + " WHERE r.name = :roleName AND ur.user_id IN (:ids)",
+                      parameters,
+                      Long.class));
+          Map<Long, Resolved> changed = new HashMap<>();
+          for (Resolved user : users.values()) {
+            if ((operation == Operation.GRANT) != holders.contains(user.id())) {
+              changed.put(user.id(), user);
+            }
+          }
+          Map<Long, Integer> tokenVersions =
+              changed.isEmpty() ? Map.of() : write(operation, roleName, changed.keySet());
+          users.forEach(
+              (position, user) -> outcomes[position] = outcomeOf(operation, holders, user.id()));
+          return new Applied(List.copyOf(changed.values()), tokenVersions);
+        });
+  }
+
+  /** The users of the items on the current shard, by item position */
+  private Map<Integer, Resolved> resolve(final List<Integer> positions, final List<Item> batch) {
+    Set<Long> ids = new HashSet<>();
+    Set<String> emails = new HashSet<>();
+    for (int position : positions) {
+      Item item = batch.get(position);
+      if (item.id() != null) {
+        ids.add(item.id());
+      } else {
+        emails.add(item.email());
+      }
+    }
+    Map<Long, Resolved> byId = new HashMap<>();
+    Map<String, Resolved> byEmail = new HashMap<>();
+    RowCallbackHandler collector =
+        rs -> {
+          Resolved user = new Resolved(rs.getLong("id"), rs.getString("email"));
+          byId.put(user.id(), user);
+          byEmail.put(user.email(), user);
+        };
+    if (!ids.isEmpty()) {
+      jdbcTemplate.query(
+          "SELECT id, email FROM users WHERE id IN (:ids)",
+          new MapSqlParameterSource("ids", ids),
+          collector);
+    }
+    if (!emails.isEmpty()) {
+      jdbcTemplate.query(
+          "SELECT id, email FROM users WHERE email IN (:emails)",
+          new MapSqlParameterSource("emails", emails),
+          collector);
+    }
+    Map<Integer, Resolved> users = new HashMap<>();
+    for (int position : positions) {
+      Item item = batch.get(position);
+      Resolved user = item.id() != null ? byId.get(item.id()) : byEmail.get(item.email());
+      if (user != null) {
+        users.put(position, user);
+      }
+    }
+    return users;
+  }
+
+  /**
+   * One INSERT ... SELECT or DELETE for the whole batch, plus touching updated_at so the user
+   * replica picks the change up. A revocation also raises the token versions, which are returned by
+   * user id.
+   */
+  private Map<Long, Integer> write(
+      final Operation operation, final String roleName, final Set<Long> ids) {
+    MapSqlParameterSource parameters =
+        new MapSqlParameterSource("roleName", roleName)
+            .addValue("ids", ids)
+            .addValue("now", Timestamp.valueOf(LocalDateTime.now()));
+    if (operation == Operation.GRANT) {
+      jdbcTemplate.update(
+          "INSERT INTO user_roles (user_id, role_id)"
+              + " SELECT u.id, r.id FROM users u, roles r"
+              + " WHERE u.id IN (:ids) AND r.name = :roleName"
+              + " AND NOT EXISTS (SELECT 1 FROM user_roles ur"
+              + " WHERE ur.user_id = u.id AND ur.role_id = r.id)",
+          parameters);
+      jdbcTemplate.update("UPDATE users SET updated_at = :now WHERE id IN (:ids)", parameters);
+      return Map.of();
+    }
+    jdbcTemplate.update(
+        "DELETE FROM user_roles WHERE user_id IN (:ids)"
+            + " AND role_id = (SELECT id FROM roles WHERE name = :roleName)",
+        parameters);
+    jdbcTemplate.update(
+        "UPDATE users SET updated_at = :now, token_version = token_version + 1"
+            + " WHERE id IN (:ids)",
+        parameters);
+    Map<Long, Integer> tokenVersions = new HashMap<>();
+    jdbcTemplate.query(
+        "SELECT id, token_version FROM users WHERE id IN (:ids)",
+        parameters,
+        rs -> {
+          tokenVersions.put(rs.getLong("id"), rs.getInt("token_version"));
+        });
+    return tokenVersions;
+  }
+
+  private static Outcome outcomeOf(
+      final Operation operation, final Set<Long> holders, final long id) {
+    boolean held = holders.contains(id);
+    if (operation == Operation.GRANT) {
+      return held ? Outcome.ALREADY_GRANTED : Outcome.GRANTED;
+    }
+    return held ? Outcome.REVOKED : Outcome.NOT_GRANTED;
+  }
+
+  private static void writeOutcomes(
+      final List<Item> batch,
+      final Outcome[] outcomes,
+      final JsonGenerator generator,
+      final Map<Outcome, Long> totals)
+      throws IOException {
+    for (int i = 0; i < batch.size(); i++) {
+      generator.writeStartObject();
+      generator.writeStringField("user", batch.get(i).input());
+      generator.writeStringField("outcome", outcomes[i].name());
+      generator.writeEndObject();
+      totals.merge(outcomes[i], 1L, Long::sum);
+    }
+    generator.flush();
+  }
+}
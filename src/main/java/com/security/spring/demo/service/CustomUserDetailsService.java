@@ -1,24 +1,110 @@
 package com.security.spring.demo.service;
 
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.entity.User;
+import com.security.spring.demo.jfr.UserLoadEvent;
 import com.security.spring.demo.repository.UserRepository;
-import lombok.RequiredArgsConstructor;
+import com.security.spring.demo.security.replica.UserReplicaService;
+import com.security.spring.demo.util.Hashing;
+import com.security.spring.demo.util.SingleFlight;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationServiceException;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
+/**
+ * Loads users for authentication. Concurrent loads of the same email, such as a burst of requests
+ * for one service account after a restart, share a single database query.
+ */
 @Service
-@RequiredArgsConstructor
 public class CustomUserDetailsService implements UserDetailsService {
 
   private final UserRepository userRepository;
+  private final ShardRouter shardRouter;
+  private final ShardReader shardReader;
+  private final UserReplicaService userReplica;
+  private final SingleFlight<String, Optional<User>> loads = new SingleFlight<>();
+  private final long coalescedWaitMillis;
+
+  public CustomUserDetailsService(
+      final UserRepository userRepository,
+      final ShardRouter shardRouter,
+      final ShardReader shardReader,
+      final UserReplicaService userReplica,
+      final MeterRegistry meterRegistry,
+      @Value("${application.security.user-lookup.coalesced-wait:2000}")
+          final long coalescedWaitMillis) {
+    this.userRepository = userRepository;
+    this.shardRouter = shardRouter;
+    this.shardReader = shardReader;
+    this.userReplica = userReplica;
+    this.coalescedWaitMillis = coalescedWaitMillis;
+    FunctionCounter.builder("security.user.loads", loads, SingleFlight::executedCount)
+        .description("User loads that queried the database")
+        .tag("result", "executed")
+        .register(meterRegistry);
+    FunctionCounter.builder("security.user.loads", loads, SingleFlight::coalescedCount)
+        .description("User loads that shared a query already in flight")
+        .tag("result", "coalesced")
+        .register(meterRegistry);
+  }
 
   @Override
-  @Transactional(readOnly = true)
   public UserDetails loadUserByUsername(final String username) throws UsernameNotFoundException {
-    return userRepository
-        .findByEmail(username)
-        .orElseThrow(() -> new UsernameNotFoundException("User not found with email: " + username));
+    UserLoadEvent event = new UserLoadEvent();
+    event.begin();
+    String outcome = "ERROR";
+    try {
+      Optional<User> replicated = userReplica.find(username);
+      if (replicated.isPresent()) {
+        outcome = "REPLICA";
+        return replicated.get();
+      }
+      UserDetails user =
+          loadCoalesced(username)
+              .orElseThrow(
+                  () -> new UsernameNotFoundException("User not found with email: " + username));
+      outcome = "FOUND";
+      return user;
+    } catch (UsernameNotFoundException e) {
+      outcome = "NOT_FOUND";
+      throw e;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.subjectHash = Hashing.hash64(username);
+        event.outcome = outcome;
+        event.commit();
+      }
+    }
+  }
+
+  private Optional<User> loadCoalesced(final String email) {
+    try {
+      return loads.load(email, () -> findByEmail(email), coalescedWaitMillis);
+    } catch (TimeoutException e) {
+      throw new AuthenticationServiceException(
+          "User lookup exceeded " + coalescedWaitMillis + " ms");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new AuthenticationServiceException("Interrupted while loading user");
+    }
+  }
+
+  /** Look the user up on its home shard, falling back to its pre-rebalance shard if it has one */
+  public Optional<User> findByEmail(final String email) {
+    for (int shard : shardRouter.candidateShardsForEmail(email)) {
+      Optional<User> user = shardReader.onShard(shard, () -> userRepository.findByEmail(email));
+      if (user.isPresent()) {
+        return user;
+      }
+    }
+    return Optional.empty();
   }
 }
@@ -1,6 +1,11 @@
 package com.security.spring.demo.service;
 
+import com.security.spring.demo.jfr.TokenEvent;
+import com.security.spring.demo.security.TokenVersionPrincipal;
+import com.security.spring.demo.util.Hashing;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtBuilder;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -16,6 +21,12 @@ import org.springframework.stereotype.Service;
 @Service
 public class JwtService {
 
+  /** Claim holding the user's token version at issue time, see {@link TokenVersionService} */
+  public static final String TOKEN_VERSION_CLAIM = "ver";
+
+  /** Claim holding when the user signed in, in epoch seconds, kept by renewed tokens */
+  public static final String AUTH_TIME_CLAIM = "auth_time";
+
   @Value("${application.security.jwt.secret-key}")
   private String secretKey;
 
@@ -40,22 +51,67 @@ public class JwtService {
 
   public String generateToken(
       final Map<String, Object> extraClaims, final UserDetails userDetails) {
-    return buildToken(extraClaims, userDetails, jwtExpiration);
+    return buildToken(extraClaims, userDetails, jwtExpiration, "SIGN_ACCESS");
+  }
+
+  /** A new access token for the same sign-in, keeping its authentication time */
+  public String renewToken(final UserDetails userDetails, final long authTime) {
+    return generateToken(Map.of(AUTH_TIME_CLAIM, authTime / 1000), userDetails);
+  }
+
+  /**
+   * When the user signed in to obtain the token, in epoch milliseconds. Tokens from before the
+   * claim existed fall back to their issue time.
+   */
+  public static long authTime(final Claims claims) {
+    Object authTime = claims.get(AUTH_TIME_CLAIM);
+    return authTime instanceof Number seconds
+        ? seconds.longValue() * 1000
+        : claims.getIssuedAt().getTime();
   }
 
   public String generateRefreshToken(UserDetails userDetails) {
-    return buildToken(new HashMap<>(), userDetails, refreshExpiration);
+    return buildToken(new HashMap<>(), userDetails, refreshExpiration, "SIGN_REFRESH");
   }
 
   private String buildToken(
-      final Map<String, Object> extraClaims, final UserDetails userDetails, final long expiration) {
-    return Jwts.builder()
-        .claims(extraClaims)
-        .subject(userDetails.getUsername())
-        .issuedAt(new Date(System.currentTimeMillis()))
-        .expiration(new Date(System.currentTimeMillis() + expiration))
-        .signWith(getSignInKey())
-        .compact();
+      final Map<String, Object> extraClaims,
+      final UserDetails userDetails,
+      final long expiration,
+      final String operation) {
+    TokenEvent event = new TokenEvent();
+    event.begin();
+    String outcome = "ERROR";
+    try {
+      long now = System.currentTimeMillis();
+      JwtBuilder builder =
+          Jwts.builder()
+              .claims(extraClaims)
+              .subject(userDetails.getUsername())
+              .issuedAt(new Date(now))
+              .expiration(new Date(now + expiration));
+      if (!extraClaims.containsKey(AUTH_TIME_CLAIM)) {
+        builder.claim(AUTH_TIME_CLAIM, now / 1000);
+      }
+      if (userDetails instanceof TokenVersionPrincipal principal) {
+        builder.claim(TOKEN_VERSION_CLAIM, principal.getTokenVersion());
+      }
+      String token = builder.signWith(getSignInKey()).compact();
+      outcome = "SIGNED";
+      return token;
+    } finally {
+      commit(event, operation, userDetails.getUsername(), outcome);
+    }
+  }
+
+  /** Parse and verify the token once, for callers that need several of its claims */
+  public Claims parseClaims(final String token) {
+    return extractAllClaims(token);
+  }
+
+  public boolean isTokenValid(final Claims claims, final UserDetails userDetails) {
+    return claims.getSubject().equals(userDetails.getUsername())
+        && claims.getExpiration().after(new Date());
   }
 
   public boolean isTokenValid(final String token, final UserDetails userDetails) {
@@ -72,7 +128,34 @@ public class JwtService {
   }
 
   private Claims extractAllClaims(final String token) {
-    return Jwts.parser().verifyWith(getSignInKey()).build().parseSignedClaims(token).getPayload();
+    TokenEvent event = new TokenEvent();
+    event.begin();
+    String subject = null;
+    String outcome = "INVALID";
+    try {
+      Claims claims =
+          Jwts.parser().verifyWith(getSignInKey()).build().parseSignedClaims(token).getPayload();
+      subject = claims.getSubject();
+      outcome = "VALID";
+      return claims;
+    } catch (ExpiredJwtException e) {
+      subject = e.getClaims().getSubject();
+      outcome = "EXPIRED";
+      throw e;
+    } finally {
+      commit(event, "VERIFY", subject, outcome);
+    }
+  }
+
+  private static void commit(
+      final TokenEvent event, final String operation, final String subject, final String outcome) {
+    event.end();
+    if (event.shouldCommit()) {
+      event.operation = operation;
+      event.subjectHash = subject != null ? Hashing.hash64(subject) : 0L;
+      event.outcome = outcome;
+      event.commit();
+    }
   }
 
   private SecretKey getSignInKey() {
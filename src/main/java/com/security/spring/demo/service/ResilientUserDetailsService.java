@@ -0,0 +1,203 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.entity.User;
+import com.security.spring.demo.security.replica.UserReplicaService;
+import com.security.spring.demo.util.CircuitBreaker;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.security.authentication.AuthenticationServiceException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+/**
+ * Loads users for token authentication behind a circuit breaker. Lookups that fail or exceed the
+ * timeout count against the breaker and are answered from the last snapshot of the user, as long as
+ * it is within the staleness bound; a timed-out lookup keeps running and refreshes the snapshot
+ * when it completes. While the breaker is open no request waits on the database: snapshots are
+ * served and the trial lookup runs in the background.
+ *
+ * <p>A full lookup pool is load rather than a database failure, so lookups it rejects are answered
+ * from snapshots and counted separately without moving the breaker. Snapshots only serve token
+ * authentication and never hold the password hash.
+ */
+@Service
+@Slf4j
+public class ResilientUserDetailsService {
+
+  private record Snapshot(UserDetails user, long loadedAt) {}
+
+  private final CustomUserDetailsService delegate;
+  private final UserReplicaService userReplica;
+  private final CircuitBreaker circuitBreaker;
+  private final ExecutorService executor;
+  private final long timeoutMillis;
+  private final long maxStalenessMillis;
+  private final int maxSnapshots;
+  private final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+  private final AtomicLong rejectedLookups = new AtomicLong();
+
+  public ResilientUserDetailsService(
+      final CustomUserDetailsService delegate,
+      final UserReplicaService userReplica,
+      @Value("${application.security.user-lookup.timeout:500}") final long timeoutMillis,
+      @Value("${application.security.user-lookup.failure-threshold:5}") final int failureThreshold,
+      @Value("${application.security.user-lookup.open-duration:10000}") final long openDuration,
+      @Value("${application.security.user-lookup.max-staleness:300000}")
+          final long maxStalenessMillis,
+      @Value("${application.security.user-lookup.max-snapshots:100000}") final int maxSnapshots,
+      @Value("${application.security.user-lookup.threads:16}") final int threads,
+      @Value("${application.security.user-lookup.queue-capacity:256}") final int queueCapacity,
+      final MeterRegistry meterRegistry) {
+    this.delegate = delegate;
+    this.userReplica = userReplica;
+    this.circuitBreaker = new CircuitBreaker(failureThreshold, openDuration);
+    this.timeoutMillis = timeoutMillis;
+    this.maxStalenessMillis = maxStalenessMillis;
+    this.maxSnapshots = maxSnapshots;
+    this.executor =
+        new ThreadPoolExecutor(
+            threads,
+            threads,
+            0L,
+            TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(queueCapacity),
+            new CustomizableThreadFactory("user-lookup-"));
+    FunctionCounter.builder("security.user.lookups.rejected", rejectedLookups, AtomicLong::get)
+        .description("User lookups shed because the lookup pool was full")
+        .register(meterRegistry);
+  }
+
+  /**
+   * Load the user, falling back to its snapshot while the database is degraded.
+   *
+   * @throws UsernameNotFoundException if the database reports no such user
+   * @throws AuthenticationServiceException if the database is degraded and no usable snapshot
+   *     exists
+   */
+  public UserDetails loadUserByUsername(final String username) {
+    // Users in the in-memory replica need neither the database nor the lookup pool
+    Optional<User> replicated = userReplica.find(username);
+    if (replicated.isPresent()) {
+      return replicated.get();
+    }
+    boolean closed = circuitBreaker.state() == CircuitBreaker.State.CLOSED;
+    if (!circuitBreaker.tryAcquirePermission()) {
+      return fromSnapshot(username);
+    }
+    CompletableFuture<UserDetails> lookup;
+    try {
+      lookup = lookup(username);
+    } catch (RejectedExecutionException e) {
+      rejectedLookups.incrementAndGet();
+      if (!closed) {
+        // The trial never ran; reopen rather than stay half-open with nothing to decide it
+        circuitBreaker.onFailure();
+      }
+      return fromSnapshot(username);
+    }
+    if (!closed) {
+      // Trial call while half-open: let it decide the breaker without holding up the request
+      lookup
+          .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+          .whenComplete((user, failure) -> recordOutcome(failure));
+      return fromSnapshot(username);
+    }
+    try {
+      UserDetails user = lookup.get(timeoutMillis, TimeUnit.MILLISECONDS);
+      circuitBreaker.onSuccess();
+      return user;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof UsernameNotFoundException notFound) {
+        circuitBreaker.onSuccess();
+        throw notFound;
+      }
+      log.warn("User lookup failed for {}: {}", username, e.getCause().getMessage());
+    } catch (TimeoutException e) {
+      log.warn("User lookup for {} exceeded {} ms", username, timeoutMillis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    circuitBreaker.onFailure();
+    return fromSnapshot(username);
+  }
+
+  public CircuitBreaker.State circuitState() {
+    return circuitBreaker.state();
+  }
+
+  public long rejectedLookups() {
+    return rejectedLookups.get();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  /** Forget the user's snapshot after a change that must not be served stale, such as its roles */
+  public void evictSnapshot(final String username) {
+    snapshots.remove(username);
+  }
+
+  private CompletableFuture<UserDetails> lookup(final String username) {
+    return CompletableFuture.supplyAsync(() -> delegate.loadUserByUsername(username), executor)
+        .whenComplete(
+            (user, failure) -> {
+              if (user != null) {
+                remember(username, user);
+              } else if (failure instanceof UsernameNotFoundException
+                  || failure.getCause() instanceof UsernameNotFoundException) {
+                snapshots.remove(username);
+              }
+            });
+  }
+
+  private void recordOutcome(final Throwable failure) {
+    if (failure == null
+        || failure instanceof UsernameNotFoundException
+        || failure.getCause() instanceof UsernameNotFoundException) {
+      circuitBreaker.onSuccess();
+    } else {
+      circuitBreaker.onFailure();
+    }
+  }
+
+  private UserDetails fromSnapshot(final String username) {
+    Snapshot snapshot = snapshots.get(username);
+    if (snapshot == null || System.currentTimeMillis() - snapshot.loadedAt() > maxStalenessMillis) {
+      throw new AuthenticationServiceException("User store is unavailable");
+    }
+    return snapshot.user();
+  }
+
+  private void remember(final String username, final UserDetails user) {
+    if (snapshots.size() >= maxSnapshots && !snapshots.containsKey(username)) {
+      Iterator<String> victims = snapshots.keySet().iterator();
+      if (victims.hasNext()) {
+        victims.next();
+        victims.remove();
+      }
+    }
+    UserDetails withoutPassword =
+        user instanceof User entity ? entity.toBuilder().password(null).build() : user;
+    snapshots.put(username, new Snapshot(withoutPassword, System.currentTimeMillis()));
+  }
+}
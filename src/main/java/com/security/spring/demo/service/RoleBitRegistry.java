@@ -0,0 +1,107 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.entity.Role;
+import com.security.spring.demo.repository.RoleRepository;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/** Resolves role names to the bit positions stored in the roles table, and back */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RoleBitRegistry {
+
+  private static final String ROLE_PREFIX = "ROLE_";
+
+  private final RoleRepository roleRepository;
+
+  private volatile Snapshot snapshot;
+
+  /** Build a mask of the given roles; unknown roles contribute no bits */
+  public long maskOf(final String... roleNames) {
+    long mask = 0L;
+    for (String roleName : roleNames) {
+      Integer bit = snapshot().bitsByName().get(normalize(roleName));
+      if (bit == null) {
+        log.warn("Unknown role {} ignored while building role mask", roleName);
+        continue;
+      }
+      mask |= 1L << bit;
+    }
+    return mask;
+  }
+
+  /** Name of the role assigned to a bit, or null when no role uses it */
+  public String nameOf(final int bit) {
+    return snapshot().namesByBit()[bit];
+  }
+
+  /** The roles whose bits are set in the mask */
+  public Set<Role> rolesOf(final long roleMask) {
+    Role[] roles = snapshot().rolesByBit();
+    Set<Role> result = new HashSet<>(Long.bitCount(roleMask) * 2);
+    for (long bits = roleMask; bits != 0; bits &= bits - 1) {
+      Role role = roles[Long.numberOfTrailingZeros(bits)];
+      if (role != null) {
+        result.add(role);
+      }
+    }
+    return result;
+  }
+
+  /** Comma-separated names of the roles in the mask, cached per mask */
+  public String namesOf(final long roleMask) {
+    Snapshot current = snapshot();
+    return current.joinedNames().computeIfAbsent(roleMask, mask -> joinNames(current, mask));
+  }
+
+  /** Reload bit assignments after roles are added or changed */
+  public void reload() {
+    Map<String, Integer> bits = new HashMap<>();
+    String[] names = new String[Long.SIZE];
+    Role[] roles = new Role[Long.SIZE];
+    for (Role role : roleRepository.findAll()) {
+      bits.put(role.getName(), role.getBit());
+      names[role.getBit()] = role.getName();
+      roles[role.getBit()] = role;
+    }
+    snapshot = new Snapshot(Map.copyOf(bits), names, roles, new ConcurrentHashMap<>());
+  }
+
+  private Snapshot snapshot() {
+    Snapshot current = snapshot;
+    if (current == null) {
+      reload();
+      current = snapshot;
+    }
+    return current;
+  }
+
+  private static String joinNames(final Snapshot snapshot, final long roleMask) {
+    StringJoiner names = new StringJoiner(",");
+    for (long bits = roleMask; bits != 0; bits &= bits - 1) {
+      String name = snapshot.namesByBit()[Long.numberOfTrailingZeros(bits)];
+      if (name != null) {
+        names.add(name);
+      }
+    }
+    return names.toString();
+  }
+
+  private static String normalize(final String roleName) {
+    return roleName.startsWith(ROLE_PREFIX) ? roleName : ROLE_PREFIX + roleName;
+  }
+
+  private record Snapshot(
+      Map<String, Integer> bitsByName,
+      String[] namesByBit,
+      Role[] rolesByBit,
+      Map<Long, String> joinedNames) {}
+}
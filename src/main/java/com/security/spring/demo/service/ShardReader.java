@@ -0,0 +1,45 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.config.datasource.ShardContext;
+import com.security.spring.demo.config.datasource.ShardRouter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs read-only work against one shard or fans it out to every shard. Each shard gets its own
+ * transaction, since a transaction stays on the shard of its first statement.
+ */
+@Component
+public class ShardReader {
+
+  private final ShardRouter shardRouter;
+  private final TransactionTemplate readOnlyTransaction;
+
+  public ShardReader(
+      final ShardRouter shardRouter, final PlatformTransactionManager transactionManager) {
+    this.shardRouter = shardRouter;
+    this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+    this.readOnlyTransaction.setReadOnly(true);
+    this.readOnlyTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+  }
+
+  public <T> T onShard(final int shard, final Supplier<T> work) {
+    try (ShardContext.Scope scope = shardRouter.onShard(shard)) {
+      return readOnlyTransaction.execute(status -> work.get());
+    }
+  }
+
+  /** Results of running the work on each shard, in shard order */
+  public <T> List<T> onEveryShard(final Supplier<T> work) {
+    List<T> results = new ArrayList<>(shardRouter.shardCount());
+    for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+      results.add(onShard(shard, work));
+    }
+    return results;
+  }
+}
@@ -0,0 +1,285 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.repository.RoleCacheEvictor;
+import com.security.spring.demo.repository.UserDirectory;
+import com.security.spring.demo.repository.UserRelocations;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.sql.DataSource;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.core.simple.SimpleJdbcInsert;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+
+/**
+ * Moves users to the shard their email hashes to under the current shard count, as needed after a
+ * shard is added. Users are moved in batches: the source rows are locked, copied with their role
+ * assignments into the target shard under the same id, recorded as relocated so ids keep routing to
+ * them, and then deleted from the source shard. A run that is interrupted between these steps is
+ * completed by the next one.
+ *
+ * <p>The same pass claims directory entries for users created before sharding was enabled and
+ * releases claims left behind by registrations that never committed.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ShardRebalancer {
+
+  /** Claims younger than this may belong to a registration still in flight */
+  private static final Duration ABANDONED_CLAIM_AGE = Duration.ofMinutes(10);
+
+  /** Claims checked per round trip, which also bounds the IN list sent to each shard */
+  private static final int CLAIM_BATCH_SIZE = 500;
+
+  /** Users moved per transaction pair */
+  private static final int MOVE_BATCH_SIZE = 500;
+
+  /** Rows per round trip while scanning a shard */
+  private static final int SCAN_FETCH_SIZE = 1000;
+
+  private final ShardRouter shardRouter;
+  private final UserDirectory userDirectory;
+  private final UserRelocations userRelocations;
+  private final RoleCacheEvictor roleCacheEvictor;
+
+  public Result rebalance() {
+    if (!shardRouter.isEnabled()) {
+      throw new IllegalStateException("Sharding is not enabled");
+    }
+    long scanned = 0;
+    long claimsAdded = 0;
+    long moved = 0;
+    long duplicatesRemoved = 0;
+    List<Long> movedIds = new ArrayList<>();
+    for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+      // Only the misplaced users are held in memory, about 1/N of the shard after adding a shard
+      Map<Integer, List<Long>> misplacedByHome = new HashMap<>();
+      Scan scan = scan(shard, misplacedByHome);
+      scanned += scan.scanned();
+      claimsAdded += scan.claimsAdded();
+      for (Map.Entry<Integer, List<Long>> home : misplacedByHome.entrySet()) {
+        List<Long> ids = home.getValue();
+        for (int from = 0; from < ids.size(); from += MOVE_BATCH_SIZE) {
+          List<Long> batch = ids.subList(from, Math.min(from + MOVE_BATCH_SIZE, ids.size()));
+          Moved batchMoved = move(shard, home.getKey(), batch);
+          moved += batchMoved.copied();
+          duplicatesRemoved += batchMoved.leftoversRemoved();
+          movedIds.addAll(batch);
+        }
+      }
+    }
+    roleCacheEvictor.evictUserRoles(movedIds);
+    long claimsReleased = releaseAbandonedClaims();
+    Result result = new Result(scanned, moved, duplicatesRemoved, claimsAdded, claimsReleased);
+    log.info("Shard rebalance finished: {}", result);
+    return result;
+  }
+
+  /**
+   * Stream the shard's users in a read-only transaction, so the driver fetches them with a cursor,
+   * claiming directory entries a batch at a time and collecting the users that belong elsewhere.
+   */
+  private Scan scan(final int shard, final Map<Integer, List<Long>> misplacedByHome) {
+    DataSource dataSource = shardRouter.shard(shard);
+    JdbcTemplate source = new JdbcTemplate(dataSource);
+    source.setFetchSize(SCAN_FETCH_SIZE);
+    TransactionTemplate readOnly =
+        new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+    readOnly.setReadOnly(true);
+    long[] counts = {0, 0};
+    List<UserDirectory.Claim> claims = new ArrayList<>(CLAIM_BATCH_SIZE);
+    readOnly.executeWithoutResult(
+        status ->
+            source.query(
+                "SELECT id, email, username FROM users",
+                (RowCallbackHandler)
+                    rs -> {
+                      counts[0]++;
+                      String email = rs.getString("email");
+                      claims.add(new UserDirectory.Claim(rs.getString("username"), email));
+                      if (claims.size() == CLAIM_BATCH_SIZE) {
+                        counts[1] += userDirectory.tryReserveAll(claims);
+                        claims.clear();
+                      }
+                      int home = shardRouter.shardForEmail(email);
+                      if (home != shard) {
+                        misplacedByHome
+                            .computeIfAbsent(home, h -> new ArrayList<>())
+                            .add(rs.getLong("id"));
+                      }
+                    }));
+    if (!claims.isEmpty()) {
+      counts[1] += userDirectory.tryReserveAll(claims);
+    }
+    return new Scan(counts[0], counts[1]);
+  }
+
+  /**
+   * Move a batch of users to their home shard, keeping their ids. The source rows stay locked until
+   * they are deleted, so a concurrent token version bump, role or password change either lands
+   * before the copy or fails on the deleted row; it is never silently dropped. Users an earlier,
+   * interrupted run already copied only have their leftover source rows removed.
+   */
+  private Moved move(final int sourceShard, final int home, final List<Long> ids) {
+    DataSource sourceDataSource = shardRouter.shard(sourceShard);
+    NamedParameterJdbcTemplate source = new NamedParameterJdbcTemplate(sourceDataSource);
+    Map<String, Object> params = Map.of("ids", ids);
+    return new TransactionTemplate(new DataSourceTransactionManager(sourceDataSource))
+        .execute(
+            status -> {
+              List<Map<String, Object>> users =
+                  source.queryForList("SELECT * FROM users WHERE id IN (:ids) FOR UPDATE", params);
+              if (users.isEmpty()) {
+                return new Moved(0, 0);
+              }
+              List<Map<String, Object>> roles =
+                  source.queryForList(
+                      "SELECT ur.user_id, r.name FROM user_roles ur"
+                          + " JOIN roles r ON r.id = ur.role_id WHERE ur.user_id IN (:ids)",
+                      params);
+              Copied copied = copy(home, users, roles);
+              userRelocations.record(List.copyOf(copied.onTarget()), home);
+              source.update(
+                  "DELETE FROM users WHERE id IN (:ids)",
+                  Map.of("ids", users.stream().map(ShardRebalancer::idOf).toList()));
+              return new Moved(copied.count(), users.size() - copied.count());
+            });
+  }
+
+  /**
+   * Insert the users missing from the target shard with their ids and roles, in one transaction.
+   * Returns the ids now on the target; a user whose email is already there under another id was
+   * copied by an older run and is not among them.
+   */
+  private Copied copy(
+      final int home,
+      final List<Map<String, Object>> users,
+      final List<Map<String, Object>> roles) {
+    DataSource targetDataSource = shardRouter.shard(home);
+    NamedParameterJdbcTemplate target = new NamedParameterJdbcTemplate(targetDataSource);
+    Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+    return new TransactionTemplate(new DataSourceTransactionManager(targetDataSource))
+        .execute(
+            status -> {
+              Set<Long> onTarget = new HashSet<>();
+              Set<String> emailsOnTarget = new HashSet<>();
+              target.query(
+                  "SELECT id, email FROM users WHERE id IN (:ids) OR email IN (:emails)",
+                  Map.of(
+                      "ids", users.stream().map(ShardRebalancer::idOf).toList(),
+                      "emails", users.stream().map(user -> user.get("email")).toList()),
+                  (RowCallbackHandler)
+                      rs -> {
+                        onTarget.add(rs.getLong("id"));
+                        emailsOnTarget.add(rs.getString("email"));
+                      });
+              List<SqlParameterSource> missing = new ArrayList<>();
+              Set<Long> copiedIds = new HashSet<>();
+              for (Map<String, Object> user : users) {
+                if (!emailsOnTarget.contains((String) user.get("email"))) {
+                  Map<String, Object> row = new LinkedCaseInsensitiveMap<>();
+                  row.putAll(user);
+                  // A move is a change, so pollers of updated_at see the user on its new shard
+                  row.put("updated_at", now);
+                  missing.add(new MapSqlParameterSource(row));
+                  copiedIds.add(idOf(user));
+                }
+              }
+              onTarget.retainAll(users.stream().map(ShardRebalancer::idOf).toList());
+              if (missing.isEmpty()) {
+                return new Copied(onTarget, 0);
+              }
+              new SimpleJdbcInsert(target.getJdbcTemplate())
+                  .withTableName("users")
+                  .executeBatch(missing.toArray(SqlParameterSource[]::new));
+              target
+                  .getJdbcTemplate()
+                  .batchUpdate(
+                      "INSERT INTO user_roles (user_id, role_id)"
+                          + " SELECT ?, id FROM roles WHERE name = ?",
+                      roles.stream()
+                          .filter(role -> copiedIds.contains(idOf(role, "user_id")))
+                          .map(role -> new Object[] {role.get("user_id"), role.get("name")})
+                          .toList());
+              onTarget.addAll(copiedIds);
+              return new Copied(onTarget, copiedIds.size());
+            });
+  }
+
+  private static long idOf(final Map<String, Object> row) {
+    return idOf(row, "id");
+  }
+
+  private static long idOf(final Map<String, Object> row, final String column) {
+    return ((Number) row.get(column)).longValue();
+  }
+
+  /**
+   * Release old claims without a user. Claims live on shard 0 and users on their home shards, so
+   * the anti-join runs a page of claims at a time: one lookup per home shard finds the claims that
+   * do have a user.
+   */
+  private long releaseAbandonedClaims() {
+    LocalDateTime reservedBefore = LocalDateTime.now().minus(ABANDONED_CLAIM_AGE);
+    long released = 0;
+    String after = "";
+    List<UserDirectory.Claim> page;
+    do {
+      page = userDirectory.claimsReservedBefore(reservedBefore, after, CLAIM_BATCH_SIZE);
+      Map<Integer, List<UserDirectory.Claim>> byHome = new HashMap<>();
+      for (UserDirectory.Claim claim : page) {
+        byHome
+            .computeIfAbsent(shardRouter.shardForEmail(claim.email()), home -> new ArrayList<>())
+            .add(claim);
+      }
+      for (Map.Entry<Integer, List<UserDirectory.Claim>> shard : byHome.entrySet()) {
+        Set<String> registered =
+            new HashSet<>(
+                new NamedParameterJdbcTemplate(shardRouter.shard(shard.getKey()))
+                    .queryForList(
+                        "SELECT username FROM users WHERE username IN (:usernames)",
+                        Map.of(
+                            "usernames",
+                            shard.getValue().stream().map(UserDirectory.Claim::username).toList()),
+                        String.class));
+        for (UserDirectory.Claim claim : shard.getValue()) {
+          if (!registered.contains(claim.username())) {
+            userDirectory.release(claim.email());
+            released++;
+          }
+        }
+      }
+      if (!page.isEmpty()) {
+        after = page.get(page.size() - 1).username();
+      }
+    } while (page.size() == CLAIM_BATCH_SIZE);
+    return released;
+  }
+
+  private record Scan(long scanned, long claimsAdded) {}
+
+  private record Moved(int copied, int leftoversRemoved) {}
+
+  private record Copied(Set<Long> onTarget, int count) {}
+
+  /** Counts of one rebalancing run */
+  public record Result(
+      long scanned, long moved, long duplicatesRemoved, long claimsAdded, long claimsReleased) {}
+}
@@ -0,0 +1,84 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.security.TokenVersionPrincipal;
+import io.jsonwebtoken.Claims;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Service;
+
+/**
+ * Sliding sessions: access tokens that are about to expire are replaced on the fly, so active
+ * clients never need the refresh endpoint. A renewed token is reused for a short while so that
+ * parallel requests of one subject share a single signature.
+ *
+ * <p>Renewed tokens keep the authentication time of the sign-in they descend from, and renewal
+ * stops once that is as old as a refresh token lives. A stolen access token therefore cannot be
+ * kept alive indefinitely by replaying it inside each renewal window.
+ */
+@Service
+public class TokenRenewalService {
+
+  public static final String RENEWED_TOKEN_HEADER = "X-Renewed-Access-Token";
+
+  private record Renewal(String token, int tokenVersion, long authTime, long cachedUntil) {}
+
+  private final JwtService jwtService;
+  private final long renewalWindow;
+  private final long cacheTtl;
+  private final long maxSessionAge;
+  private final Map<String, Renewal> renewals = new ConcurrentHashMap<>();
+
+  public TokenRenewalService(
+      final JwtService jwtService,
+      @Value("${application.security.jwt.renewal.window:300000}") final long renewalWindow,
+      @Value("${application.security.jwt.renewal.cache-ttl:30000}") final long cacheTtl,
+      @Value("${application.security.jwt.refresh-token.expiration}") final long maxSessionAge) {
+    this.jwtService = jwtService;
+    this.renewalWindow = renewalWindow;
+    this.cacheTtl = cacheTtl;
+    this.maxSessionAge = maxSessionAge;
+  }
+
+  /**
+   * A fresh access token when the verified token expires within the renewal window, unless its
+   * sign-in is older than the refresh token lifetime
+   */
+  public Optional<String> renewIfExpiring(final Claims claims, final UserDetails userDetails) {
+    long now = System.currentTimeMillis();
+    if (claims.getExpiration().getTime() - now > renewalWindow) {
+      return Optional.empty();
+    }
+    long authTime = JwtService.authTime(claims);
+    if (now - authTime >= maxSessionAge) {
+      return Optional.empty();
+    }
+    int tokenVersion =
+        userDetails instanceof TokenVersionPrincipal principal ? principal.getTokenVersion() : 0;
+    // Only tokens of the same sign-in share a renewal, so none can borrow a later auth time
+    Renewal renewal =
+        renewals.compute(
+            userDetails.getUsername(),
+            (subject, cached) ->
+                cached != null
+                        && cached.cachedUntil() > now
+                        && cached.tokenVersion() == tokenVersion
+                        && cached.authTime() == authTime
+                    ? cached
+                    : new Renewal(
+                        jwtService.renewToken(userDetails, authTime),
+                        tokenVersion,
+                        authTime,
+                        now + cacheTtl));
+    return Optional.of(renewal.token());
+  }
+
+  @Scheduled(fixedDelayString = "${application.security.jwt.renewal.cache-ttl:30000}")
+  public void evictExpired() {
+    long now = System.currentTimeMillis();
+    renewals.values().removeIf(renewal -> renewal.cachedUntil() <= now);
+  }
+}
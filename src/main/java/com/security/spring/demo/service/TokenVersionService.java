@@ -0,0 +1,116 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.config.datasource.ShardContext;
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.repository.UserRepository;
+import com.security.spring.demo.security.TokenVersionPrincipal;
+import com.security.spring.demo.util.LongIntHashMap;
+import io.jsonwebtoken.Claims;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Global logout through token versions. Every token records the user's version at issue time, and
+ * raising the version rejects all of them at once. The current versions are kept in memory, keyed
+ * by user id, so checking a token costs a map lookup and an int comparison. Only users whose
+ * version was ever raised have an entry; the rest are at version 0.
+ *
+ * <p>Other instances learn about a raised version from the periodic refresh or, sooner, from the
+ * next user they load from the database.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class TokenVersionService {
+
+  private final UserRepository userRepository;
+  private final ShardRouter shardRouter;
+  private final ShardReader shardReader;
+  private final LongIntHashMap versions = new LongIntHashMap();
+
+  /** Whether a token issued at {@code tokenVersion} is still valid for the user */
+  public boolean isCurrent(final long userId, final int tokenVersion) {
+    return tokenVersion >= versions.get(userId, 0);
+  }
+
+  /** Whether the JWT's version claim matches the user's current version */
+  public boolean isCurrent(final Claims claims, final UserDetails userDetails) {
+    if (!(userDetails instanceof TokenVersionPrincipal principal) || principal.getId() == null) {
+      return true;
+    }
+    observe(principal);
+    Object claimed = claims.get(JwtService.TOKEN_VERSION_CLAIM);
+    return isCurrent(principal.getId(), claimed instanceof Number number ? number.intValue() : 0);
+  }
+
+  /**
+   * Invalidate every access and refresh token issued to the user so far. Takes effect in memory
+   * once the surrounding transaction commits.
+   */
+  @Transactional
+  public int invalidateTokens(final long userId) {
+    int version;
+    try (ShardContext.Scope shard = shardRouter.onId(userId)) {
+      userRepository.incrementTokenVersion(userId);
+      version =
+          userRepository
+              .findTokenVersionById(userId)
+              .orElseThrow(
+                  () -> new UsernameNotFoundException("User not found with id: " + userId));
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            versions.putMax(userId, version);
+          }
+        });
+    log.info("Invalidated tokens of user {} (token version {})", userId, version);
+    return version;
+  }
+
+  /** Record a version raised in a transaction that has already committed, such as a bulk revoke */
+  public void raised(final long userId, final int version) {
+    versions.putMax(userId, version);
+  }
+
+  /** Load raised versions from every shard, picking up bumps made by other instances */
+  @EventListener(ApplicationReadyEvent.class)
+  @Scheduled(
+      fixedDelayString = "${application.security.jwt.token-version.refresh-interval:60000}",
+      initialDelayString = "${application.security.jwt.token-version.refresh-interval:60000}")
+  public void refresh() {
+    long loaded = 0;
+    for (long shardLoaded : shardReader.onEveryShard(this::loadRaisedVersions)) {
+      loaded += shardLoaded;
+    }
+    log.debug("Loaded {} raised token versions", loaded);
+  }
+
+  private long loadRaisedVersions() {
+    long loaded = 0;
+    try (Stream<Object[]> rows = userRepository.streamRaisedTokenVersions()) {
+      for (Object[] row : (Iterable<Object[]>) rows::iterator) {
+        versions.putMax(((Number) row[0]).longValue(), ((Number) row[1]).intValue());
+        loaded++;
+      }
+    }
+    return loaded;
+  }
+
+  private void observe(final TokenVersionPrincipal principal) {
+    if (principal.getTokenVersion() > versions.get(principal.getId(), 0)) {
+      versions.putMax(principal.getId(), principal.getTokenVersion());
+    }
+  }
+}
@@ -0,0 +1,129 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.entity.UrlAuthorizationRule;
+import com.security.spring.demo.repository.UrlAuthorizationRuleRepository;
+import com.security.spring.demo.security.UrlAccess;
+import com.security.spring.demo.security.UrlRuleTrie;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Compiles the url_authorization_rules table into an immutable {@link UrlRuleTrie}. Requests read
+ * the current snapshot through a volatile field; reloads build a new trie off to the side and swap
+ * it in, so they never block request threads.
+ *
+ * <p>A table holding an invalid rule is never swapped in, since skipping the rule would open its
+ * path to whatever broader rule matches next. The previous snapshot stays in force, or, when there
+ * is none yet, every request is denied until the table is fixed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UrlAuthorizationRuleService {
+
+  private final UrlAuthorizationRuleRepository ruleRepository;
+  private final RoleBitRegistry roleBitRegistry;
+
+  private volatile UrlRuleTrie snapshot;
+  private volatile String loadedFingerprint;
+
+  /** The current compiled rules, compiling them on first use */
+  public UrlRuleTrie currentRules() {
+    UrlRuleTrie current = snapshot;
+    if (current == null) {
+      synchronized (this) {
+        current = snapshot;
+        if (current == null) {
+          current = reloadOrKeep();
+        }
+      }
+    }
+    return current;
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void initialize() {
+    reloadOrKeep();
+  }
+
+  /** Recompile the rules when the table changed since the last load */
+  @Scheduled(fixedDelayString = "${application.security.url-rules.refresh-interval:30000}")
+  public void refreshIfChanged() {
+    if (!Objects.equals(fingerprint(), loadedFingerprint)) {
+      reloadOrKeep();
+    }
+  }
+
+  /** Reload, falling back to the snapshot left in force when the table holds invalid rules */
+  private synchronized UrlRuleTrie reloadOrKeep() {
+    try {
+      return reload();
+    } catch (IllegalStateException e) {
+      return snapshot;
+    }
+  }
+
+  /**
+   * Recompile every rule and atomically swap in the new snapshot. Fails with an {@link
+   * IllegalStateException} naming the invalid rules, without replacing a working snapshot, when
+   * any rule does not compile.
+   */
+  public synchronized UrlRuleTrie reload() {
+    String fingerprint = fingerprint();
+    roleBitRegistry.reload();
+    List<UrlAuthorizationRule> rules = ruleRepository.findAll();
+    UrlRuleTrie.Builder builder = new UrlRuleTrie.Builder();
+    List<String> invalid = new ArrayList<>();
+    for (UrlAuthorizationRule rule : rules) {
+      try {
+        builder.add(rule.getPathPattern(), rule.getHttpMethod(), compile(rule));
+      } catch (IllegalArgumentException e) {
+        invalid.add("rule " + rule.getId() + ": " + e.getMessage());
+      }
+    }
+    if (!invalid.isEmpty()) {
+      String message = "Invalid URL authorization rules, " + String.join("; ", invalid);
+      if (snapshot == null) {
+        log.error("{}; denying every request until they are fixed", message);
+        snapshot = denyAll();
+      } else {
+        log.error("{}; keeping the previously loaded rules", message);
+      }
+      throw new IllegalStateException(message);
+    }
+    UrlRuleTrie trie = builder.build();
+    snapshot = trie;
+    loadedFingerprint = fingerprint;
+    log.info("Loaded {} URL authorization rules", trie.size());
+    return trie;
+  }
+
+  private UrlRuleTrie.Rule compile(final UrlAuthorizationRule rule) {
+    if (rule.getAccessType() != UrlAccess.ROLES) {
+      return new UrlRuleTrie.Rule(rule.getAccessType(), 0L);
+    }
+    if (rule.getRequiredRoles() == null || rule.getRequiredRoles().isBlank()) {
+      throw new IllegalArgumentException("ROLES access requires at least one role");
+    }
+    String[] roles = rule.getRequiredRoles().trim().split("\\s*,\\s*");
+    return new UrlRuleTrie.Rule(UrlAccess.ROLES, roleBitRegistry.maskOf(roles));
+  }
+
+  private static UrlRuleTrie denyAll() {
+    return new UrlRuleTrie.Builder()
+        .add("/**", null, new UrlRuleTrie.Rule(UrlAccess.DENY_ALL, 0L))
+        .build();
+  }
+
+  private String fingerprint() {
+    UrlAuthorizationRuleRepository.Fingerprint fingerprint = ruleRepository.fingerprint();
+    return fingerprint.getRuleCount() + ":" + fingerprint.getLastUpdated();
+  }
+}
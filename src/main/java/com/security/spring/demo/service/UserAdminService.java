@@ -0,0 +1,236 @@
+package com.security.spring.demo.service;
+
+import com.security.spring.demo.config.datasource.ShardContext;
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.dto.CreateUserRequest;
+import com.security.spring.demo.dto.UserPage;
+import com.security.spring.demo.dto.UserSummary;
+import com.security.spring.demo.entity.Role;
+import com.security.spring.demo.entity.User;
+import com.security.spring.demo.exception.ConflictException;
+import com.security.spring.demo.repository.RoleRepository;
+import com.security.spring.demo.repository.UserDirectory;
+import com.security.spring.demo.repository.UserRepository;
+import com.security.spring.demo.security.replica.UserReplicaService;
+import com.security.spring.demo.security.token.OpaqueTokenService;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Service
+public class UserAdminService {
+
+  public static final int DEFAULT_PAGE_SIZE = 50;
+  public static final int MAX_PAGE_SIZE = 500;
+
+  private static final String ROLE_PREFIX = "ROLE_";
+
+  /** Deletion tombstones only need to outlive the user replica's reconciliation interval */
+  private static final Duration DELETION_RETENTION = Duration.ofDays(1);
+
+  private static final Comparator<UserSummary> LISTING_ORDER =
+      Comparator.comparing(UserSummary::getCreatedAt).thenComparing(UserSummary::getId);
+
+  private final UserRepository userRepository;
+  private final RoleRepository roleRepository;
+  private final PasswordEncoder passwordEncoder;
+  private final AvailabilityService availabilityService;
+  private final ShardRouter shardRouter;
+  private final ShardReader shardReader;
+  private final UserDirectory userDirectory;
+  private final TokenVersionService tokenVersionService;
+  private final OpaqueTokenService opaqueTokenService;
+  private final UserReplicaService userReplicaService;
+  private final TransactionTemplate transactionTemplate;
+
+  public UserAdminService(
+      final UserRepository userRepository,
+      final RoleRepository roleRepository,
+      final PasswordEncoder passwordEncoder,
+      final AvailabilityService availabilityService,
+      final ShardRouter shardRouter,
+      final ShardReader shardReader,
+      final UserDirectory userDirectory,
+      final TokenVersionService tokenVersionService,
+      final OpaqueTokenService opaqueTokenService,
+      final UserReplicaService userReplicaService,
+      final PlatformTransactionManager transactionManager) {
+    this.userRepository = userRepository;
+    this.roleRepository = roleRepository;
+    this.passwordEncoder = passwordEncoder;
+    this.availabilityService = availabilityService;
+    this.shardRouter = shardRouter;
+    this.shardReader = shardReader;
+    this.userDirectory = userDirectory;
+    this.tokenVersionService = tokenVersionService;
+    this.opaqueTokenService = opaqueTokenService;
+    this.userReplicaService = userReplicaService;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+  }
+
+  /**
+   * List users in (createdAt, id) order using keyset pagination: the cursor carries the position of
+   * the last row returned, so every page costs an index seek regardless of its depth. When sharded,
+   * each shard returns its own page from the cursor and the pages are merged.
+   */
+  public UserPage listUsers(
+      final String cursor, final String role, final Boolean enabled, final int size) {
+    int limit = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+    LocalDateTime afterCreatedAt = null;
+    Long afterId = null;
+    if (cursor != null && !cursor.isBlank()) {
+      String[] position = decodeCursor(cursor);
+      afterCreatedAt = LocalDateTime.parse(position[0]);
+      afterId = Long.parseLong(position[1]);
+    }
+
+    // Fetch one extra row to learn whether another page exists
+    LocalDateTime createdAtPosition = afterCreatedAt;
+    Long idPosition = afterId;
+    String roleName = role != null ? roleName(role) : null;
+    List<UserSummary> users = new ArrayList<>();
+    for (List<UserSummary> shardPage :
+        shardReader.onEveryShard(
+            () ->
+                userRepository.findSummariesAfter(
+                    createdAtPosition, idPosition, roleName, enabled, limit + 1))) {
+      users.addAll(shardPage);
+    }
+    if (shardRouter.shardCount() > 1) {
+      users.sort(LISTING_ORDER);
+    }
+    String nextCursor = null;
+    if (users.size() > limit) {
+      users = users.subList(0, limit);
+      UserSummary last = users.get(limit - 1);
+      nextCursor = encodeCursor(last.getCreatedAt(), last.getId());
+    }
+    return UserPage.builder().users(users).nextCursor(nextCursor).build();
+  }
+
+  /**
+   * Create a user with the given roles. The password is hashed before the transaction starts, so
+   * the transaction holds a pooled connection only for the statements themselves.
+   */
+  public UserSummary createUser(final CreateUserRequest request) {
+    String passwordHash = passwordEncoder.encode(request.getPassword());
+    UserSummary user;
+    try (ShardContext.Scope shard = shardRouter.onEmail(request.getEmail())) {
+      user = transactionTemplate.execute(status -> createUserOnHomeShard(request, passwordHash));
+    }
+    availabilityService.markTaken(request.getEmail(), request.getUsername());
+    return user;
+  }
+
+  private UserSummary createUserOnHomeShard(
+      final CreateUserRequest request, final String passwordHash) {
+    Set<Role> roles = new HashSet<>();
+    for (String role : request.getRoles()) {
+      roles.add(
+          roleRepository
+              .findByName(roleName(role))
+              .orElseThrow(() -> new RuntimeException("Role not found: " + role)));
+    }
+
+    User user =
+        User.builder()
+            .email(request.getEmail())
+            .username(request.getUsername())
+            .password(passwordHash)
+            .firstName(request.getFirstName())
+            .lastName(request.getLastName())
+            .roles(roles)
+            .enabled(true)
+            .accountNonExpired(true)
+            .accountNonLocked(true)
+            .credentialsNonExpired(true)
+            .build();
+    userDirectory.reserve(request.getUsername(), request.getEmail());
+    try {
+      userRepository.saveAndFlush(user);
+    } catch (DataIntegrityViolationException e) {
+      throw ConflictException.fromUserConstraint(e);
+    }
+    return toSummary(user);
+  }
+
+  /**
+   * Delete the user and cut off every session they hold: their tokens of both formats are rejected
+   * here once the transaction commits, and a tombstone makes every instance drop the user from its
+   * replica on its next poll.
+   */
+  @Transactional
+  public void deleteUser(final Long id) {
+    try (ShardContext.Scope shard = shardRouter.onId(id)) {
+      User user =
+          userRepository
+              .findById(id)
+              .orElseThrow(() -> new UsernameNotFoundException("User not found with id: " + id));
+      tokenVersionService.invalidateTokens(id);
+      userRepository.delete(user);
+      userRepository.deleteDeletionsBefore(LocalDateTime.now().minus(DELETION_RETENTION));
+      userRepository.recordDeletion(id);
+      userDirectory.release(user.getEmail());
+    }
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronization() {
+          @Override
+          public void afterCommit() {
+            opaqueTokenService.forgetUser(id);
+            userReplicaService.remove(id);
+          }
+        });
+  }
+
+  private static UserSummary toSummary(final User user) {
+    return UserSummary.builder()
+        .id(user.getId())
+        .email(user.getEmail())
+        .username(user.getUsername())
+        .firstName(user.getFirstName())
+        .lastName(user.getLastName())
+        .enabled(user.isEnabled())
+        .createdAt(user.getCreatedAt())
+        .lastLogin(user.getLastLogin())
+        .build();
+  }
+
+  private static String roleName(final String role) {
+    return role.startsWith(ROLE_PREFIX) ? role : ROLE_PREFIX + role;
+  }
+
+  private static String encodeCursor(final LocalDateTime createdAt, final Long id) {
+    String position = createdAt + "|" + id;
+    return Base64.getUrlEncoder()
+        .withoutPadding()
+        .encodeToString(position.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static String[] decodeCursor(final String cursor) {
+    try {
+      String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+      String[] parts = position.split("\\|");
+      if (parts.length != 2) {
+        throw new IllegalArgumentException();
+      }
+      return parts;
+    } catch (IllegalArgumentException e) {
+      throw new RuntimeException("Invalid cursor");
+    }
+  }
+}
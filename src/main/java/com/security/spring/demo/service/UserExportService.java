@@ -0,0 +1,139 @@
+package com.security.spring.demo.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.util.MinimalPrettyPrinter;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.repository.UserRepository;
+import jakarta.persistence.Tuple;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams every user with their roles as newline-delimited JSON. Rows come from a forward-only
+ * database cursor and are written as they arrive, so heap use does not depend on the user count.
+ * Each line carries the user id, which a client passes back as {@code afterId} to resume.
+ *
+ * <p>When sharded, the shards are exported one after another. Each shard allocates ids from its own
+ * range, so this keeps the output in id order and lets a resumed export skip the finished shards.
+ */
+@Service
+@Slf4j
+public class UserExportService {
+
+  private final UserRepository userRepository;
+  private final ObjectMapper objectMapper;
+  private final ShardReader shardReader;
+  private final ShardRouter shardRouter;
+
+  @Value("${application.export.fetch-size:1000}")
+  private int fetchSize;
+
+  @Value("${application.export.flush-interval:1000}")
+  private int flushInterval;
+
+  public UserExportService(
+      final UserRepository userRepository,
+      final ObjectMapper objectMapper,
+      final ShardReader shardReader,
+      final ShardRouter shardRouter) {
+    this.userRepository = userRepository;
+    this.objectMapper = objectMapper;
+    this.shardReader = shardReader;
+    this.shardRouter = shardRouter;
+  }
+
+  /**
+   * Write users after the one with id {@code afterId}, one JSON object per line: shard by shard, in
+   * id order within each shard. Ids are allocated per shard, so this is id order overall except for
+   * users a rebalance moved, which keep their id and follow their new shard.
+   */
+  public void exportUsers(final long afterId, final OutputStream outputStream) {
+    try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+      generator.setPrettyPrinter(new MinimalPrettyPrinter("\n"));
+      long written = 0;
+      int first = shardRouter.shardForId(afterId);
+      for (int shard = first; shard < shardRouter.shardCount(); shard++) {
+        // Later shards are written whole; moved users there may have ids below afterId
+        long after = shard == first ? afterId : Long.MIN_VALUE;
+        written += shardReader.onShard(shard, () -> writeUsers(after, generator));
+      }
+      generator.writeRaw('\n');
+      log.info("Exported {} users after id {}", written, afterId);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private long writeUsers(final long afterId, final JsonGenerator generator) {
+    try (Stream<Tuple> rows = userRepository.streamExportRows(afterId, fetchSize)) {
+      return writeUsers(rows, generator);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private long writeUsers(final Stream<Tuple> rows, final JsonGenerator generator)
+      throws IOException {
+    long written = 0;
+    Tuple current = null;
+    List<String> roles = new ArrayList<>();
+    for (Tuple row : (Iterable<Tuple>) rows::iterator) {
+      if (current != null && !current.get("id").equals(row.get("id"))) {
+        writeUser(generator, current, roles);
+        roles.clear();
+        if (++written % flushInterval == 0) {
+          generator.flush();
+        }
+      }
+      current = row;
+      String role = row.get("role", String.class);
+      if (role != null) {
+        roles.add(role);
+      }
+    }
+    if (current != null) {
+      writeUser(generator, current, roles);
+      written++;
+    }
+    return written;
+  }
+
+  private static void writeUser(
+      final JsonGenerator generator, final Tuple user, final List<String> roles)
+      throws IOException {
+    generator.writeStartObject();
+    generator.writeNumberField("id", user.get("id", Long.class));
+    generator.writeStringField("email", user.get("email", String.class));
+    generator.writeStringField("username", user.get("username", String.class));
+    generator.writeStringField("firstName", user.get("firstName", String.class));
+    generator.writeStringField("lastName", user.get("lastName", String.class));
+    generator.writeBooleanField("enabled", user.get("enabled", Boolean.class));
+    writeTimestamp(generator, "createdAt", user.get("createdAt", LocalDateTime.class));
+    writeTimestamp(generator, "lastLogin", user.get("lastLogin", LocalDateTime.class));
+    generator.writeArrayFieldStart("roles");
+    for (String role : roles) {
+      generator.writeString(role);
+    }
+    generator.writeEndArray();
+    generator.writeEndObject();
+  }
+
+  private static void writeTimestamp(
+      final JsonGenerator generator, final String field, final LocalDateTime value)
+      throws IOException {
+    if (value == null) {
+      generator.writeNullField(field);
+    } else {
+      generator.writeStringField(field, value.toString());
+    }
+  }
+}
@@ -0,0 +1,103 @@
+package com.security.spring.demo.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A concurrency limit that follows the latency of the work it admits, after the gradient algorithm
+ * of Netflix's concurrency-limits. Two moving averages of the round-trip time are kept, one over
+ * the last few requests and one over several hundred. While they agree the limit grows by about
+ * its square root per sample. Once recent requests get slower than the long-term average allows for
+ * by {@code tolerance}, it shrinks in proportion, by at most half. Samples taken while fewer than
+ * half the permits are in use carry no information about the limit and only update the averages.
+ */
+public class AdaptiveConcurrencyLimit {
+
+  private static final int SHORT_WINDOW = 10;
+  private static final int LONG_WINDOW = 600;
+  private static final double TOLERANCE = 1.5;
+  private static final double SMOOTHING = 0.2;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+  private final LongAdder rejected = new LongAdder();
+
+  private volatile int limit;
+  private double estimatedLimit;
+  private double shortRttNanos;
+  private double longRttNanos;
+
+  public AdaptiveConcurrencyLimit(final int initialLimit, final int minLimit, final int maxLimit) {
+    if (minLimit < 1 || minLimit > maxLimit) {
+      throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.estimatedLimit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.limit = (int) estimatedLimit;
+  }
+
+  /** Take a permit, or return false and count a rejection when the limit is reached */
+  public boolean tryAcquire() {
+    if (inFlight.incrementAndGet() > limit) {
+      inFlight.decrementAndGet();
+      rejected.increment();
+      return false;
+    }
+    return true;
+  }
+
+  /**
+   * Return a permit and feed the request's latency into the limit. {@code inFlightAtStart} is
+   * {@link #inFlight()} right after the permit was taken.
+   */
+  public void release(final long rttNanos, final int inFlightAtStart) {
+    inFlight.decrementAndGet();
+    update(rttNanos, inFlightAtStart);
+  }
+
+  /** Return a permit without a latency sample, for requests whose duration says nothing */
+  public void release() {
+    inFlight.decrementAndGet();
+  }
+
+  public int limit() {
+    return limit;
+  }
+
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  public long rejectedCount() {
+    return rejected.sum();
+  }
+
+  private synchronized void update(final long rttNanos, final int inFlightAtStart) {
+    if (rttNanos <= 0) {
+      return;
+    }
+    if (longRttNanos == 0.0) {
+      shortRttNanos = rttNanos;
+      longRttNanos = rttNanos;
+    } else {
+      shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+      longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+    }
+    // After a slow period ends, pull the long-term average down instead of waiting it out
+    if (longRttNanos / shortRttNanos > 2.0) {
+      longRttNanos *= 0.95;
+    }
+    if (inFlightAtStart < estimatedLimit / 2) {
+      return;
+    }
+    double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longRttNanos / shortRttNanos));
+    double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+    estimatedLimit =
+        Math.max(
+            minLimit,
+            Math.min(maxLimit, estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING));
+    limit = (int) estimatedLimit;
+  }
+}
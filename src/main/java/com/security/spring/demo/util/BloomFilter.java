@@ -0,0 +1,65 @@
+package com.security.spring.demo.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe Bloom filter over strings. A negative answer is definite, a positive one is wrong
+ * with roughly the configured false-positive probability. Bits are set with compare-and-set, so
+ * concurrent additions need no lock.
+ */
+public final class BloomFilter {
+
+  private final AtomicLongArray words;
+  private final long bitCount;
+  private final int hashCount;
+
+  public BloomFilter(final long expectedInsertions, final double falsePositiveProbability) {
+    long n = Math.max(expectedInsertions, 1L);
+    long bits =
+        (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+    int words = (int) Math.min((bits + Long.SIZE - 1) / Long.SIZE, Integer.MAX_VALUE - 8);
+    this.words = new AtomicLongArray(words);
+    this.bitCount = (long) words * Long.SIZE;
+    this.hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+  }
+
+  public void put(final String value) {
+    final long hash = Hashing.hash64(value);
+    final int h1 = (int) hash;
+    final int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashCount; i++) {
+      final long bit = index(h1, h2, i);
+      final int word = (int) (bit >>> 6);
+      final long mask = 1L << bit;
+      long current;
+      do {
+        current = words.get(word);
+        if ((current & mask) != 0) {
+          break;
+        }
+      } while (!words.compareAndSet(word, current, current | mask));
+    }
+  }
+
+  public boolean mightContain(final String value) {
+    final long hash = Hashing.hash64(value);
+    final int h1 = (int) hash;
+    final int h2 = (int) (hash >>> 32);
+    for (int i = 1; i <= hashCount; i++) {
+      final long bit = index(h1, h2, i);
+      if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public long sizeInBytes() {
+    return (long) words.length() * Long.BYTES;
+  }
+
+  /** Kirsch-Mitzenmacher double hashing: the i-th probe is h1 + i * h2 */
+  private long index(final int h1, final int h2, final int i) {
+    return ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+  }
+}
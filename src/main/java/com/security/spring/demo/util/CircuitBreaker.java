@@ -0,0 +1,71 @@
+package com.security.spring.demo.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * Consecutive-failure circuit breaker. After {@code failureThreshold} failures in a row it opens
+ * and rejects calls for {@code openDurationMillis}; the first call after that is let through as a
+ * single trial, whose outcome closes the breaker or opens it again.
+ */
+public class CircuitBreaker {
+
+  public enum State {
+    CLOSED,
+    OPEN,
+    HALF_OPEN
+  }
+
+  private record Status(State state, long openedAt) {}
+
+  private static final Status CLOSED = new Status(State.CLOSED, 0L);
+
+  private final int failureThreshold;
+  private final long openDurationMillis;
+  private final LongSupplier clock;
+  private final AtomicReference<Status> status = new AtomicReference<>(CLOSED);
+  private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+  public CircuitBreaker(final int failureThreshold, final long openDurationMillis) {
+    this(failureThreshold, openDurationMillis, System::currentTimeMillis);
+  }
+
+  public CircuitBreaker(
+      final int failureThreshold, final long openDurationMillis, final LongSupplier clock) {
+    this.failureThreshold = failureThreshold;
+    this.openDurationMillis = openDurationMillis;
+    this.clock = clock;
+  }
+
+  public State state() {
+    return status.get().state();
+  }
+
+  /** Whether a call may proceed; moves an expired open breaker to half-open for one trial call */
+  public boolean tryAcquirePermission() {
+    Status current = status.get();
+    return switch (current.state()) {
+      case CLOSED -> true;
+      case HALF_OPEN -> false;
+      case OPEN ->
+          clock.getAsLong() - current.openedAt() >= openDurationMillis
+              && status.compareAndSet(current, new Status(State.HALF_OPEN, current.openedAt()));
+    };
+  }
+
+  public void onSuccess() {
+    consecutiveFailures.set(0);
+    if (status.get() != CLOSED) {
+      status.set(CLOSED);
+    }
+  }
+
+  public void onFailure() {
+    Status current = status.get();
+    if (current.state() == State.HALF_OPEN
+        || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+      status.set(new Status(State.OPEN, clock.getAsLong()));
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.security.spring.demo.util;
+
+/** Non-cryptographic hashing shared by the probabilistic data structures */
+public final class Hashing {
+
+  private Hashing() {}
+
+  /** 64-bit FNV-1a over the UTF-16 code units, finished with the MurmurHash3 fmix64 mixer */
+  public static long hash64(final CharSequence value) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = 0; i < value.length(); i++) {
+      hash ^= value.charAt(i);
+      hash *= 0x100000001b3L;
+    }
+    return mix64(hash);
+  }
+
+  /** 64-bit FNV-1a over a byte range, finished with the MurmurHash3 fmix64 mixer */
+  public static long hash64(final byte[] bytes, final int offset, final int length) {
+    long hash = 0xcbf29ce484222325L;
+    for (int i = offset; i < offset + length; i++) {
+      hash ^= bytes[i] & 0xff;
+      hash *= 0x100000001b3L;
+    }
+    return mix64(hash);
+  }
+
+  /** MurmurHash3 fmix64 finalizer: spreads every input bit over the whole result */
+  public static long mix64(long hash) {
+    hash ^= hash >>> 33;
+    hash *= 0xff51afd7ed558ccdL;
+    hash ^= hash >>> 33;
+    hash *= 0xc4ceb9fe1a85ec53L;
+    hash ^= hash >>> 33;
+    return hash;
+  }
+}
@@ -0,0 +1,25 @@
+package com.security.spring.demo.util;
+
+/**
+ * Lamping and Veach's jump consistent hash. Growing the bucket count from n to n + 1 moves only
+ * about 1/(n + 1) of the keys, and every moved key goes to the new bucket.
+ */
+public final class JumpConsistentHash {
+
+  private JumpConsistentHash() {}
+
+  /** Bucket in [0, buckets) for the given 64-bit key */
+  public static int bucket(long key, final int buckets) {
+    if (buckets <= 0) {
+      throw new IllegalArgumentException("Bucket count must be positive: " + buckets);
+    }
+    long b = -1;
+    long j = 0;
+    while (j < buckets) {
+      b = j;
+      key = key * 2862933555777941757L + 1;
+      j = (long) ((b + 1) * ((double) (1L << 31) / (double) ((key >>> 33) + 1)));
+    }
+    return (int) b;
+  }
+}
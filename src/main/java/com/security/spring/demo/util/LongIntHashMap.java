@@ -0,0 +1,105 @@
+package com.security.spring.demo.util;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread-safe open-addressing map from long keys to int values, without boxing either. Reads are
+ * optimistic and only take the read lock if a write overlapped them; writes are serialized. Entries
+ * are never removed, so every probe sequence ends at an empty slot even while a write is under way.
+ */
+public final class LongIntHashMap {
+
+  private static final long EMPTY = Long.MIN_VALUE;
+  private static final int INITIAL_CAPACITY = 64;
+
+  private record Table(long[] keys, int[] values) {
+
+    private static Table withCapacity(final int capacity) {
+      long[] keys = new long[capacity];
+      Arrays.fill(keys, EMPTY);
+      return new Table(keys, new int[capacity]);
+    }
+
+    private int slot(final long key) {
+      int mask = keys.length - 1;
+      int slot = (int) Hashing.mix64(key) & mask;
+      while (keys[slot] != EMPTY && keys[slot] != key) {
+        slot = (slot + 1) & mask;
+      }
+      return slot;
+    }
+  }
+
+  private final StampedLock lock = new StampedLock();
+  private volatile Table table = Table.withCapacity(INITIAL_CAPACITY);
+  private int size;
+
+  /** The value for the key, or {@code defaultValue} when absent */
+  public int get(final long key, final int defaultValue) {
+    long stamp = lock.tryOptimisticRead();
+    int value = find(table, key, defaultValue);
+    if (!lock.validate(stamp)) {
+      stamp = lock.readLock();
+      try {
+        value = find(table, key, defaultValue);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+    return value;
+  }
+
+  /** Raise the key's value to at least {@code value}, returning the value now stored */
+  public int putMax(final long key, final int value) {
+    if (key == EMPTY) {
+      throw new IllegalArgumentException("Unsupported key: " + key);
+    }
+    long stamp = lock.writeLock();
+    try {
+      Table current = table;
+      int slot = current.slot(key);
+      if (current.keys[slot] == key) {
+        current.values[slot] = Math.max(current.values[slot], value);
+        return current.values[slot];
+      }
+      if ((size + 1) * 2 > current.keys.length) {
+        current = grow(current);
+        slot = current.slot(key);
+      }
+      current.values[slot] = value;
+      current.keys[slot] = key;
+      size++;
+      return value;
+    } finally {
+      lock.unlockWrite(stamp);
+    }
+  }
+
+  public int size() {
+    long stamp = lock.readLock();
+    try {
+      return size;
+    } finally {
+      lock.unlockRead(stamp);
+    }
+  }
+
+  private static int find(final Table table, final long key, final int defaultValue) {
+    int slot = table.slot(key);
+    return table.keys[slot] == key ? table.values[slot] : defaultValue;
+  }
+
+  private Table grow(final Table current) {
+    Table grown = Table.withCapacity(current.keys.length * 2);
+    for (int i = 0; i < current.keys.length; i++) {
+      if (current.keys[i] != EMPTY) {
+        int slot = grown.slot(current.keys[i]);
+        grown.keys[slot] = current.keys[i];
+        grown.values[slot] = current.values[i];
+      }
+    }
+    table = grown;
+    return grown;
+  }
+}
@@ -1,6 +1,9 @@
 package com.security.spring.demo.util;
 
 import com.security.spring.demo.entity.User;
+import com.security.spring.demo.security.RoleMaskPrincipal;
+import com.security.spring.demo.security.token.OpaqueTokenPrincipal;
+import com.security.spring.demo.service.RoleBitRegistry;
 import java.util.Optional;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -27,6 +30,24 @@ public class SecurityUtils {
     return Optional.empty();
   }
 
+  /** Get the id of the current authenticated user, whichever token format it signed in with */
+  public static Optional<Long> getCurrentUserId() {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+    if (authentication == null || !authentication.isAuthenticated()) {
+      return Optional.empty();
+    }
+
+    if (authentication.getPrincipal() instanceof User user) {
+      return Optional.ofNullable(user.getId());
+    }
+    if (authentication.getPrincipal() instanceof OpaqueTokenPrincipal principal) {
+      return Optional.of(principal.userId());
+    }
+
+    return Optional.empty();
+  }
+
   /** Get the current authenticated username */
   public static Optional<String> getCurrentUsername() {
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -50,6 +71,19 @@ public class SecurityUtils {
         .anyMatch(authority -> authority.getAuthority().equals(role));
   }
 
+  /**
+   * Check if the current user holds any role in the given mask. Callers resolve the mask once from
+   * an injected {@link RoleBitRegistry} and reuse it.
+   */
+  public static boolean hasAnyRole(final long roleMask) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+    return authentication != null
+        && authentication.isAuthenticated()
+        && authentication.getPrincipal() instanceof RoleMaskPrincipal principal
+        && principal.hasAnyRole(roleMask);
+  }
+
   /** Check if the current user is authenticated */
   public static boolean isAuthenticated() {
     Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -0,0 +1,121 @@
+package com.security.spring.demo.util;
+
+import com.security.spring.demo.security.RoleMaskPrincipal;
+import java.util.Arrays;
+import java.util.Locale;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+/**
+ * Per-thread recorder behind the {@code Server-Timing} response header. A request is armed at the
+ * start of the security chain when the header may be reported for it; until then {@link #start()}
+ * returns 0 without reading the clock and {@link #stop} ignores it, so unarmed requests only pay
+ * for the thread-local lookup. Durations are summed per phase from {@link System#nanoTime()} into a
+ * preallocated array.
+ */
+public final class ServerTiming {
+
+  public static final String HEADER = "Server-Timing";
+
+  /** Reported phases, in header order */
+  public enum Phase {
+    JWT("jwt"),
+    USER("user"),
+    AUTHZ("authz"),
+    HANDLER("app");
+
+    private final String metric;
+
+    Phase(final String metric) {
+      this.metric = metric;
+    }
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+  private static final ThreadLocal<ServerTiming> CURRENT =
+      ThreadLocal.withInitial(ServerTiming::new);
+
+  private final long[] nanos = new long[PHASES.length];
+  private boolean armed;
+  private boolean sampled;
+  private long roleMask;
+  private long handlerStartedAt;
+
+  private ServerTiming() {}
+
+  /**
+   * Start recording this thread's request. It is reported when sampled, or otherwise when the
+   * authenticated principal has any role in the mask.
+   */
+  public static void arm(final boolean sampled, final long roleMask) {
+    ServerTiming timing = CURRENT.get();
+    Arrays.fill(timing.nanos, 0L);
+    timing.armed = sampled || roleMask != 0L;
+    timing.sampled = sampled;
+    timing.roleMask = roleMask;
+    timing.handlerStartedAt = 0L;
+  }
+
+  public static void disarm() {
+    CURRENT.get().armed = false;
+  }
+
+  /** A start time to pass to {@link #stop}, or 0 when the request is not being timed */
+  public static long start() {
+    return CURRENT.get().armed ? System.nanoTime() : 0L;
+  }
+
+  public static void stop(final Phase phase, final long startedAt) {
+    if (startedAt != 0L) {
+      CURRENT.get().nanos[phase.ordinal()] += System.nanoTime() - startedAt;
+    }
+  }
+
+  /** Mark the handler as entered; it is timed until {@link #take()} */
+  public static void startHandler() {
+    ServerTiming timing = CURRENT.get();
+    timing.handlerStartedAt = timing.armed ? System.nanoTime() : 0L;
+  }
+
+  /**
+   * The header value for this request, or null when it is not reported. Closes the handler phase,
+   * excluding the method security evaluated inside it, and disarms so the header is written once.
+   */
+  public static String take() {
+    ServerTiming timing = CURRENT.get();
+    if (!timing.armed) {
+      return null;
+    }
+    timing.armed = false;
+    if (!timing.sampled && !hasReportedRole(timing.roleMask)) {
+      return null;
+    }
+    if (timing.handlerStartedAt != 0L) {
+      long handlerNanos = System.nanoTime() - timing.handlerStartedAt;
+      timing.nanos[Phase.HANDLER.ordinal()] =
+          Math.max(0L, handlerNanos - timing.nanos[Phase.AUTHZ.ordinal()]);
+    }
+    StringBuilder header = new StringBuilder(64);
+    for (Phase phase : PHASES) {
+      long phaseNanos = timing.nanos[phase.ordinal()];
+      if (phaseNanos == 0L) {
+        continue;
+      }
+      if (!header.isEmpty()) {
+        header.append(", ");
+      }
+      header
+          .append(phase.metric)
+          .append(";dur=")
+          .append(String.format(Locale.ROOT, "%.3f", phaseNanos / 1_000_000.0));
+    }
+    return header.isEmpty() ? null : header.toString();
+  }
+
+  private static boolean hasReportedRole(final long roleMask) {
+    Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    return authentication != null
+        && authentication.getPrincipal() instanceof RoleMaskPrincipal principal
+        && (principal.getRoleMask() & roleMask) != 0L;
+  }
+}
@@ -0,0 +1,70 @@
+package com.security.spring.demo.util;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent loads of the same key: the first caller runs the loader on its own thread
+ * and every caller arriving while it runs waits for that result instead of loading again. Results
+ * are not cached; a load starting after the previous one finished runs the loader anew. A failure
+ * of the loader is rethrown to every waiter.
+ */
+public final class SingleFlight<K, V> {
+
+  private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+  private final LongAdder executed = new LongAdder();
+  private final LongAdder coalesced = new LongAdder();
+
+  /**
+   * Load the value, joining a load of the same key already under way.
+   *
+   * @throws TimeoutException if this caller joined a load that did not finish within the timeout;
+   *     the load itself keeps running
+   */
+  public V load(final K key, final Supplier<V> loader, final long timeoutMillis)
+      throws TimeoutException, InterruptedException {
+    CompletableFuture<V> call = new CompletableFuture<>();
+    CompletableFuture<V> running = inFlight.putIfAbsent(key, call);
+    if (running == null) {
+      executed.increment();
+      try {
+        V value = loader.get();
+        call.complete(value);
+        return value;
+      } catch (RuntimeException | Error e) {
+        call.completeExceptionally(e);
+        throw e;
+      } finally {
+        inFlight.remove(key, call);
+      }
+    }
+    coalesced.increment();
+    try {
+      return running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      if (e.getCause() instanceof Error cause) {
+        throw cause;
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /** Loads that ran the loader */
+  public long executedCount() {
+    return executed.sum();
+  }
+
+  /** Loads that joined a load already under way */
+  public long coalescedCount() {
+    return coalesced.sum();
+  }
+}
@@ -0,0 +1,9 @@
+-- Shards that rebalanced users moved to while keeping their id; only the copy on shard 0 is used,
+-- and only when sharded. Instances poll it by relocated_at.
+CREATE TABLE user_relocations (
+    user_id      BIGINT       NOT NULL PRIMARY KEY,
+    shard        INTEGER      NOT NULL,
+    relocated_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_user_relocations_relocated_at ON user_relocations (relocated_at);
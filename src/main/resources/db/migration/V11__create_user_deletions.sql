@@ -0,0 +1,8 @@
+-- Users deleted on this shard, kept for a day so every instance drops them from its user replica
+-- on its next poll instead of waiting for the periodic reconciliation.
+CREATE TABLE user_deletions (
+    user_id    BIGINT       NOT NULL PRIMARY KEY,
+    deleted_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX idx_user_deletions_deleted_at ON user_deletions (deleted_at);
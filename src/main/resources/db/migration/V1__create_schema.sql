@@ -0,0 +1,33 @@
+CREATE TABLE roles (
+    id          BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    name        VARCHAR(50)  NOT NULL,
+    description VARCHAR(200),
+    created_at  TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_roles_name UNIQUE (name)
+);
+
+CREATE TABLE users (
+    id                      BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    email                   VARCHAR(100) NOT NULL,
+    username                VARCHAR(50)  NOT NULL,
+    password                VARCHAR(255) NOT NULL,
+    first_name              VARCHAR(50),
+    last_name               VARCHAR(50),
+    account_non_expired     BOOLEAN      NOT NULL DEFAULT TRUE,
+    account_non_locked      BOOLEAN      NOT NULL DEFAULT TRUE,
+    credentials_non_expired BOOLEAN      NOT NULL DEFAULT TRUE,
+    enabled                 BOOLEAN      NOT NULL DEFAULT TRUE,
+    created_at              TIMESTAMP(6) NOT NULL,
+    updated_at              TIMESTAMP(6),
+    last_login              TIMESTAMP(6),
+    CONSTRAINT uk_users_email UNIQUE (email),
+    CONSTRAINT uk_users_username UNIQUE (username)
+);
+
+CREATE TABLE user_roles (
+    user_id BIGINT NOT NULL,
+    role_id BIGINT NOT NULL,
+    PRIMARY KEY (user_id, role_id),
+    CONSTRAINT fk_user_roles_user FOREIGN KEY (user_id) REFERENCES users (id) ON DELETE CASCADE,
+    CONSTRAINT fk_user_roles_role FOREIGN KEY (role_id) REFERENCES roles (id)
+);
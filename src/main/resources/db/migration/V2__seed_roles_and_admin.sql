@@ -0,0 +1,14 @@
+INSERT INTO roles (name, description, created_at) VALUES
+    ('ROLE_USER', 'Default user role', CURRENT_TIMESTAMP),
+    ('ROLE_ADMIN', 'Administrator role', CURRENT_TIMESTAMP),
+    ('ROLE_MODERATOR', 'Moderator role', CURRENT_TIMESTAMP);
+
+-- Default admin user: admin@example.com / Admin@123 (BCrypt, strength 12)
+INSERT INTO users (email, username, password, first_name, last_name, created_at, updated_at)
+VALUES ('admin@example.com', 'admin',
+        '$2a$12$5mvJf9SFQtQI9YQOuqFGreXGSxovkce0KWJle2BpMrwRSrrGXhlFW',
+        'Admin', 'User', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
+
+INSERT INTO user_roles (user_id, role_id)
+SELECT u.id, r.id FROM users u, roles r
+WHERE u.email = 'admin@example.com' AND r.name = 'ROLE_ADMIN';
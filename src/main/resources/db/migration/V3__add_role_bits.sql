@@ -0,0 +1,10 @@
+-- Stable bit positions used to build the role mask carried by authenticated principals
+ALTER TABLE roles ADD COLUMN role_bit INTEGER;
+
+UPDATE roles SET role_bit = 0 WHERE name = 'ROLE_USER';
+UPDATE roles SET role_bit = 1 WHERE name = 'ROLE_ADMIN';
+UPDATE roles SET role_bit = 2 WHERE name = 'ROLE_MODERATOR';
+
+ALTER TABLE roles ALTER COLUMN role_bit SET NOT NULL;
+ALTER TABLE roles ADD CONSTRAINT uk_roles_role_bit UNIQUE (role_bit);
+ALTER TABLE roles ADD CONSTRAINT ck_roles_role_bit CHECK (role_bit BETWEEN 0 AND 63);
@@ -0,0 +1,20 @@
+CREATE TABLE url_authorization_rules (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    path_pattern   VARCHAR(255) NOT NULL,
+    http_method    VARCHAR(10),
+    access_type    VARCHAR(20)  NOT NULL,
+    required_roles VARCHAR(255),
+    created_at     TIMESTAMP(6) NOT NULL,
+    updated_at     TIMESTAMP(6),
+    CONSTRAINT uk_url_authorization_rules_pattern_method UNIQUE (path_pattern, http_method)
+);
+
+INSERT INTO url_authorization_rules (path_pattern, http_method, access_type, required_roles, created_at, updated_at) VALUES
+    ('/api/v1/auth/**', NULL, 'PERMIT_ALL', NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+    ('/api/v1/public/**', NULL, 'PERMIT_ALL', NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+    ('/v3/api-docs/**', NULL, 'PERMIT_ALL', NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+    ('/swagger-ui/**', NULL, 'PERMIT_ALL', NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+    ('/swagger-ui.html', NULL, 'PERMIT_ALL', NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+    ('/actuator/health', NULL, 'PERMIT_ALL', NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+    ('/api/v1/admin/**', NULL, 'ROLES', 'ROLE_ADMIN', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP),
+    ('/api/v1/user/**', NULL, 'ROLES', 'ROLE_USER,ROLE_ADMIN', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
@@ -0,0 +1,2 @@
+-- Role filter of the admin user listing: probe user_roles by role, then join users by id
+CREATE INDEX idx_user_roles_role_id_user_id ON user_roles (role_id, user_id);
@@ -0,0 +1,9 @@
+-- Persisted HyperLogLog registers of the active-user analytics, one row per time bucket
+CREATE TABLE active_user_sketches (
+    bucket_key VARCHAR(64)  PRIMARY KEY,
+    registers  BYTEA        NOT NULL,
+    updated_at TIMESTAMP(6) NOT NULL
+);
+
+INSERT INTO url_authorization_rules (path_pattern, http_method, access_type, required_roles, created_at, updated_at)
+VALUES ('/actuator/activeusers', NULL, 'ROLES', 'ROLE_ADMIN', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
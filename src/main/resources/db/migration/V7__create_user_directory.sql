@@ -0,0 +1,10 @@
+-- Cluster-wide username and email claims; only the copy on shard 0 is used, and only when sharded
+CREATE TABLE user_directory (
+    username    VARCHAR(50)  NOT NULL PRIMARY KEY,
+    email       VARCHAR(100) NOT NULL,
+    reserved_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT uk_user_directory_email UNIQUE (email)
+);
+
+INSERT INTO user_directory (username, email, reserved_at)
+SELECT username, email, created_at FROM users;
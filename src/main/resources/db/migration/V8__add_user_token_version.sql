@@ -0,0 +1,6 @@
+-- Bumped to invalidate every token issued to the user before, see TokenVersionService
+ALTER TABLE users ADD COLUMN token_version INTEGER NOT NULL DEFAULT 0;
+
+-- Revoking every session needs a caller to identify, unlike the rest of /api/v1/auth
+INSERT INTO url_authorization_rules (path_pattern, http_method, access_type, required_roles, created_at, updated_at)
+VALUES ('/api/v1/auth/logout-all', NULL, 'AUTHENTICATED', NULL, CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
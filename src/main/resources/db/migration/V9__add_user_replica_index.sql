@@ -0,0 +1,6 @@
+-- The in-memory user replica polls users by (updated_at, id); every row needs an updated_at
+UPDATE users SET updated_at = created_at WHERE updated_at IS NULL;
+CREATE INDEX idx_users_updated_at_id ON users (updated_at, id);
+
+INSERT INTO url_authorization_rules (path_pattern, http_method, access_type, required_roles, created_at, updated_at)
+VALUES ('/actuator/userreplica', NULL, 'ROLES', 'ROLE_ADMIN', CURRENT_TIMESTAMP, CURRENT_TIMESTAMP);
@@ -0,0 +1,16 @@
+window.onload = function() {
+  // Static document served by StaticOpenApiConfig under the static-openapi profile
+  window.ui = SwaggerUIBundle({
+    url: "/v3/api-docs/openapi.json",
+    dom_id: '#swagger-ui',
+    deepLinking: true,
+    presets: [
+      SwaggerUIBundle.presets.apis,
+      SwaggerUIStandalonePreset
+    ],
+    plugins: [
+      SwaggerUIBundle.plugins.DownloadUrl
+    ],
+    layout: "StandaloneLayout"
+  });
+};
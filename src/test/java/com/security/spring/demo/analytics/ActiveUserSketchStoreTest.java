@@ -0,0 +1,69 @@
+package com.security.spring.demo.analytics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+class ActiveUserSketchStoreTest {
+
+  private static final String URL = "jdbc:h2:mem:active-user-sketches;DB_CLOSE_DELAY=-1";
+
+  @Test
+  void mergeAndSave_whenAnotherInstanceInsertsTheBucketFirst_shouldMergeIntoIt() {
+    DriverManagerDataSource dataSource = new DriverManagerDataSource(URL, "sa", "");
+    // A separate data source, so its statements stay outside the store's transaction
+    JdbcTemplate otherInstance = new JdbcTemplate(new DriverManagerDataSource(URL, "sa", ""));
+    otherInstance.execute(
+        "CREATE TABLE active_user_sketches (bucket_key VARCHAR(64) PRIMARY KEY,"
+            + " registers BYTEA NOT NULL, updated_at TIMESTAMP(6) NOT NULL)");
+    HyperLogLog theirs = sketchOf(0, 500);
+    AtomicBoolean raced = new AtomicBoolean();
+    JdbcTemplate jdbcTemplate =
+        new JdbcTemplate(dataSource) {
+          @Override
+          public <T> List<T> query(
+              final String sql, final RowMapper<T> rowMapper, final Object... args) {
+            List<T> rows = super.query(sql, rowMapper, args);
+            // The other instance inserts the bucket after our lock found no row to lock
+            if (rows.isEmpty() && raced.compareAndSet(false, true)) {
+              otherInstance.update(
+                  "INSERT INTO active_user_sketches (bucket_key, registers, updated_at)"
+                      + " VALUES (?, ?, ?)",
+                  args[0],
+                  theirs.toBytes(),
+                  new Timestamp(System.currentTimeMillis()));
+            }
+            return rows;
+          }
+        };
+    ActiveUserSketchStore store =
+        new ActiveUserSketchStore(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+
+    store.mergeAndSave("day:2026-10-19", sketchOf(500, 1_000));
+
+    HyperLogLog stored = new HyperLogLog();
+    stored.merge(
+        otherInstance.queryForObject(
+            "SELECT registers FROM active_user_sketches WHERE bucket_key = ?",
+            byte[].class,
+            "day:2026-10-19"));
+    assertThat(raced).isTrue();
+    assertThat((double) stored.estimate()).isCloseTo(1_000, within(1_000 * 0.05));
+  }
+
+  private static HyperLogLog sketchOf(final int from, final int to) {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int i = from; i < to; i++) {
+      sketch.offer(HyperLogLog.hash("user" + i + "@example.com"));
+    }
+    return sketch;
+  }
+}
@@ -0,0 +1,52 @@
+package com.security.spring.demo.analytics;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+
+  @Test
+  void estimate_shouldStayWithinFewPercent_forLargeCardinalities() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int i = 0; i < 200_000; i++) {
+      sketch.offer(HyperLogLog.hash("user" + i + "@example.com"));
+    }
+
+    assertThat((double) sketch.estimate()).isCloseTo(200_000, within(200_000 * 0.05));
+  }
+
+  @Test
+  void repeatedSubjects_shouldBeCountedOnce() {
+    HyperLogLog sketch = new HyperLogLog();
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 1_000; i++) {
+        sketch.offer(HyperLogLog.hash("user" + i + "@example.com"));
+      }
+    }
+
+    assertThat((double) sketch.estimate()).isCloseTo(1_000, within(1_000 * 0.05));
+  }
+
+  @Test
+  void merge_shouldEstimateTheUnion() {
+    HyperLogLog first = new HyperLogLog();
+    HyperLogLog second = new HyperLogLog();
+    IntStream.range(0, 30_000).forEach(i -> first.offer(HyperLogLog.hash("a" + i)));
+    IntStream.range(15_000, 45_000).forEach(i -> second.offer(HyperLogLog.hash("a" + i)));
+
+    first.merge(second.toBytes());
+
+    assertThat((double) first.estimate()).isCloseTo(45_000, within(45_000 * 0.05));
+  }
+
+  @Test
+  void concurrentOffers_shouldNotLoseRegisters() {
+    HyperLogLog sketch = new HyperLogLog();
+    IntStream.range(0, 100_000).parallel().forEach(i -> sketch.offer(HyperLogLog.hash("u" + i)));
+
+    assertThat((double) sketch.estimate()).isCloseTo(100_000, within(100_000 * 0.05));
+  }
+}
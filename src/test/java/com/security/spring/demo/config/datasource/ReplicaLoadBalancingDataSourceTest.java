@@ -0,0 +1,106 @@
+package com.security.spring.demo.config.datasource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class ReplicaLoadBalancingDataSourceTest {
+
+  private final List<HikariDataSource> pools = new ArrayList<>();
+
+  @AfterEach
+  void tearDown() {
+    pools.forEach(HikariDataSource::close);
+  }
+
+  @Test
+  void readOnlyTransactions_shouldUseReplica_andWritesThePrimary() {
+    HikariDataSource primary = node("primary");
+    ReplicaLoadBalancingDataSource replicas =
+        new ReplicaLoadBalancingDataSource(List.of(node("replica-a")), primary, true, 1);
+    JdbcTemplate jdbc = new JdbcTemplate(routing(primary, replicas));
+
+    assertThat(inTransaction(jdbc, true)).isEqualTo("replica-a");
+    assertThat(inTransaction(jdbc, false)).isEqualTo("primary");
+  }
+
+  @Test
+  void readOnlyTransactions_shouldRoundRobinAcrossReplicas() {
+    HikariDataSource primary = node("primary");
+    ReplicaLoadBalancingDataSource replicas =
+        new ReplicaLoadBalancingDataSource(
+            List.of(node("replica-a"), node("replica-b")), primary, true, 1);
+    JdbcTemplate jdbc = new JdbcTemplate(routing(primary, replicas));
+
+    List<String> served = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      served.add(inTransaction(jdbc, true));
+    }
+
+    assertThat(served).containsExactly("replica-a", "replica-b", "replica-a", "replica-b");
+  }
+
+  @Test
+  void unreachableReplica_shouldBeEjected_andReadsFallBack() {
+    HikariDataSource primary = node("primary");
+    HikariDataSource broken = pool("jdbc:h2:mem:missing;IFEXISTS=TRUE");
+    ReplicaLoadBalancingDataSource replicas =
+        new ReplicaLoadBalancingDataSource(List.of(broken), primary, true, 1);
+    JdbcTemplate jdbc = new JdbcTemplate(routing(primary, replicas));
+
+    assertThat(inTransaction(jdbc, true)).isEqualTo("primary");
+    assertThat(replicas.healthyReplicaCount()).isZero();
+  }
+
+  @Test
+  void connectionWithCredentials_shouldBeReportedAsUnsupported() {
+    ReplicaLoadBalancingDataSource replicas =
+        new ReplicaLoadBalancingDataSource(List.of(node("replica-a")), node("primary"), true, 1);
+
+    assertThatThrownBy(() -> replicas.getConnection("sa", ""))
+        .isInstanceOf(SQLFeatureNotSupportedException.class);
+  }
+
+  private String inTransaction(final JdbcTemplate jdbc, final boolean readOnly) {
+    TransactionTemplate template =
+        new TransactionTemplate(new DataSourceTransactionManager(jdbc.getDataSource()));
+    template.setReadOnly(readOnly);
+    return template.execute(status -> jdbc.queryForObject("SELECT name FROM node", String.class));
+  }
+
+  private LazyConnectionDataSourceProxy routing(
+      final HikariDataSource primary, final ReplicaLoadBalancingDataSource replicas) {
+    LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+    dataSource.setReadOnlyDataSource(replicas);
+    return dataSource;
+  }
+
+  private HikariDataSource node(final String name) {
+    HikariDataSource pool = pool("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+    JdbcTemplate jdbc = new JdbcTemplate(pool);
+    jdbc.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(50))");
+    jdbc.update("DELETE FROM node");
+    jdbc.update("INSERT INTO node (name) VALUES (?)", name);
+    return pool;
+  }
+
+  private HikariDataSource pool(final String url) {
+    HikariDataSource pool = new HikariDataSource();
+    pool.setJdbcUrl(url);
+    pool.setUsername("sa");
+    pool.setConnectionTimeout(1000);
+    pool.setInitializationFailTimeout(-1);
+    pools.add(pool);
+    return pool;
+  }
+}
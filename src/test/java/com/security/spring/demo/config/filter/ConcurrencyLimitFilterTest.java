@@ -0,0 +1,43 @@
+package com.security.spring.demo.config.filter;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+class ConcurrencyLimitFilterTest {
+
+  private final ConcurrencyLimitFilter filter =
+      new ConcurrencyLimitFilter(saturatedAuth(), new SimpleMeterRegistry());
+
+  @Test
+  void forwardAuthCheck_shouldNotBeShed_whileLoginsFillTheAuthLimit() throws Exception {
+    MockHttpServletResponse check = new MockHttpServletResponse();
+    MockHttpServletResponse register = new MockHttpServletResponse();
+
+    // Both run while the login holds the only auth permit
+    FilterChain login =
+        (request, response) -> {
+          filter.doFilter(get(ForwardAuthFilter.CHECK_PATH), check, new MockFilterChain());
+          filter.doFilter(get("/api/v1/auth/register"), register, new MockFilterChain());
+        };
+    filter.doFilter(get("/api/v1/auth/login"), new MockHttpServletResponse(), login);
+
+    assertThat(check.getStatus()).isEqualTo(200);
+    assertThat(register.getStatus()).isEqualTo(503);
+  }
+
+  private static MockHttpServletRequest get(final String uri) {
+    return new MockHttpServletRequest("GET", uri);
+  }
+
+  private static ConcurrencyLimitProperties saturatedAuth() {
+    ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+    properties.setAuth(new ConcurrencyLimitProperties.Partition(1, 1, 1));
+    return properties;
+  }
+}
@@ -0,0 +1,91 @@
+package com.security.spring.demo.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.security.spring.demo.entity.User;
+import com.security.spring.demo.repository.RoleCacheEvictor;
+import com.security.spring.demo.repository.RoleRepository;
+import com.security.spring.demo.repository.UserRepository;
+import com.security.spring.demo.service.CustomUserDetailsService;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(locations = "classpath:application-test.properties")
+class RoleCacheIntegrationTest {
+
+  private static final String EMAIL = "cached@example.com";
+
+  @Autowired private CustomUserDetailsService userDetailsService;
+
+  @Autowired private UserRepository userRepository;
+
+  @Autowired private RoleRepository roleRepository;
+
+  @Autowired private RoleCacheEvictor roleCacheEvictor;
+
+  @Autowired private MeterRegistry meterRegistry;
+
+  @BeforeEach
+  void setUp() {
+    if (!userRepository.existsByEmail(EMAIL)) {
+      userRepository.save(
+          User.builder()
+              .email(EMAIL)
+              .username("cacheduser")
+              .password("unused")
+              .firstName("Cached")
+              .lastName("User")
+              .roles(Set.of(roleRepository.findByName("ROLE_USER").orElseThrow()))
+              .enabled(true)
+              .accountNonExpired(true)
+              .accountNonLocked(true)
+              .credentialsNonExpired(true)
+              .build());
+    }
+  }
+
+  @Test
+  void userLoad_shouldReadRolesFromSecondLevelCache() {
+    userDetailsService.loadUserByUsername(EMAIL);
+
+    SqlStatementCounter.reset();
+    User user = (User) userDetailsService.loadUserByUsername(EMAIL);
+
+    assertThat(user.getRoles()).extracting("name").containsExactly("ROLE_USER");
+    assertThat(SqlStatementCounter.count()).as("only the users row is selected").isEqualTo(1);
+  }
+
+  @Test
+  void findByName_shouldBeAnsweredFromQueryCache() {
+    roleRepository.findByName("ROLE_USER");
+
+    SqlStatementCounter.reset();
+    assertThat(roleRepository.findByName("ROLE_USER")).isPresent();
+
+    assertThat(SqlStatementCounter.count()).isZero();
+  }
+
+  @Test
+  void evictAll_shouldSendRoleReadsBackToDatabase() {
+    userDetailsService.loadUserByUsername(EMAIL);
+    roleCacheEvictor.evictAll();
+
+    SqlStatementCounter.reset();
+    userDetailsService.loadUserByUsername(EMAIL);
+
+    assertThat(SqlStatementCounter.count()).isGreaterThan(1);
+  }
+
+  @Test
+  void cacheStatistics_shouldBePublishedAsMetrics() {
+    assertThat(meterRegistry.find("hibernate.second.level.cache.requests").meters()).isNotEmpty();
+  }
+}
@@ -1,24 +1,57 @@
 package com.security.spring.demo.it;
 
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.startsWith;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring.demo.config.filter.ForwardAuthFilter;
 import com.security.spring.demo.dto.AuthenticationRequest;
 import com.security.spring.demo.dto.RegisterRequest;
+import com.security.spring.demo.dto.TokenFormat;
 import com.security.spring.demo.entity.Role;
+import com.security.spring.demo.entity.UrlAuthorizationRule;
+import com.security.spring.demo.entity.User;
 import com.security.spring.demo.repository.RoleRepository;
+import com.security.spring.demo.repository.UrlAuthorizationRuleRepository;
 import com.security.spring.demo.repository.UserRepository;
+import com.security.spring.demo.security.UrlAccess;
+import com.security.spring.demo.security.UrlRuleTrie;
+import com.security.spring.demo.service.AvailabilityService;
+import com.security.spring.demo.service.UrlAuthorizationRuleService;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -32,6 +65,14 @@ class SecurityIntegrationTest {
 
   @Autowired private RoleRepository roleRepository;
 
+  @Autowired private PasswordEncoder passwordEncoder;
+
+  @Autowired private UrlAuthorizationRuleRepository urlRuleRepository;
+
+  @Autowired private UrlAuthorizationRuleService urlRuleService;
+
+  @Autowired private AvailabilityService availabilityService;
+
   @BeforeEach
   void setUp() {
     userRepository.deleteAll();
@@ -39,12 +80,14 @@ class SecurityIntegrationTest {
     roleRepository.deleteAll();
 
     if (roleRepository.findByName("ROLE_USER").isEmpty()) {
-      Role userRole = Role.builder().name("ROLE_USER").description("Default user role").build();
+      Role userRole =
+          Role.builder().name("ROLE_USER").description("Default user role").bit(0).build();
       roleRepository.save(userRole);
     }
 
     if (roleRepository.findByName("ROLE_ADMIN").isEmpty()) {
-      Role adminRole = Role.builder().name("ROLE_ADMIN").description("Administrator role").build();
+      Role adminRole =
+          Role.builder().name("ROLE_ADMIN").description("Administrator role").bit(1).build();
       roleRepository.save(adminRole);
     }
   }
@@ -83,6 +126,60 @@ class SecurityIntegrationTest {
         .andExpect(jsonPath("$.refreshToken").exists());
   }
 
+  @Test
+  void register_shouldReturn409_andReportTakenNames_forDuplicateEmail() throws Exception {
+    RegisterRequest request =
+        RegisterRequest.builder()
+            .email("taken@example.com")
+            .username("takenuser")
+            .password("Test@123456")
+            .firstName("Taken")
+            .lastName("User")
+            .build();
+    String body = objectMapper.writeValueAsString(request);
+
+    mockMvc
+        .perform(
+            post("/api/v1/auth/register").contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isOk());
+    mockMvc
+        .perform(
+            post("/api/v1/auth/register").contentType(MediaType.APPLICATION_JSON).content(body))
+        .andExpect(status().isConflict())
+        .andExpect(jsonPath("$.message").value("User with this email already exists"));
+
+    mockMvc
+        .perform(
+            get("/api/v1/public/availability")
+                .param("email", "taken@example.com")
+                .param("username", "freeuser"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.emailAvailable").value(false))
+        .andExpect(jsonPath("$.usernameAvailable").value(true));
+  }
+
+  @Test
+  void availability_shouldSeeUsersRegisteredElsewhere_afterRefresh() throws Exception {
+    // Written straight to the database, as another instance would, so this one's filters miss it
+    userRepository.save(
+        User.builder()
+            .email("elsewhere@example.com")
+            .username("elsewhere")
+            .password(passwordEncoder.encode("Secret@123456"))
+            .build());
+
+    availabilityService.refresh();
+
+    mockMvc
+        .perform(
+            get("/api/v1/public/availability")
+                .param("email", "elsewhere@example.com")
+                .param("username", "elsewhere"))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.emailAvailable").value(false))
+        .andExpect(jsonPath("$.usernameAvailable").value(false));
+  }
+
   @Test
   void login_shouldReturnTokens_withValidCredentials() throws Exception {
     RegisterRequest registerRequest =
@@ -158,4 +255,493 @@ class SecurityIntegrationTest {
         .perform(get("/api/v1/admin/dashboard").header("Authorization", "Bearer " + token))
         .andExpect(status().isForbidden());
   }
+
+  @Test
+  void userEndpoint_shouldBeAccessible_forRegularUser() throws Exception {
+    String token = registerAndGetAccessToken("profile@example.com", "profileuser");
+
+    mockMvc
+        .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.username").value("profile@example.com"));
+  }
+
+  @Test
+  void opaqueToken_shouldAuthenticate_untilLoggedOut() throws Exception {
+    registerAndGetAccessToken("opaque@example.com", "opaqueuser");
+    AuthenticationRequest loginRequest =
+        AuthenticationRequest.builder()
+            .email("opaque@example.com")
+            .password("Secret@123456")
+            .tokenFormat(TokenFormat.OPAQUE)
+            .build();
+
+    String response =
+        mockMvc
+            .perform(
+                post("/api/v1/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(loginRequest)))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.accessToken").value(startsWith("ot_")))
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    String token = objectMapper.readTree(response).get("accessToken").asText();
+
+    mockMvc
+        .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.username").value("opaque@example.com"));
+    mockMvc
+        .perform(get(ForwardAuthFilter.CHECK_PATH).header("Authorization", "Bearer " + token))
+        .andExpect(header().string(ForwardAuthFilter.USER_HEADER, "opaque@example.com"));
+    mockMvc
+        .perform(post("/api/v1/auth/logout").header("Authorization", "Bearer " + token))
+        .andExpect(status().isNoContent());
+    mockMvc
+        .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  void opaqueRefreshToken_shouldBeRedeemedOnce_evenByConcurrentRequests() throws Exception {
+    registerAndGetAccessToken("rotated@example.com", "rotateduser");
+    AuthenticationRequest loginRequest =
+        AuthenticationRequest.builder()
+            .email("rotated@example.com")
+            .password("Secret@123456")
+            .tokenFormat(TokenFormat.OPAQUE)
+            .build();
+    String response =
+        mockMvc
+            .perform(
+                post("/api/v1/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(loginRequest)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    String refreshToken = objectMapper.readTree(response).get("refreshToken").asText();
+
+    int requests = 8;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService clients = Executors.newFixedThreadPool(requests);
+    List<Integer> statuses = new ArrayList<>();
+    try {
+      List<Future<Integer>> futures = new ArrayList<>();
+      for (int i = 0; i < requests; i++) {
+        futures.add(
+            clients.submit(
+                () -> {
+                  start.await();
+                  return mockMvc
+                      .perform(
+                          post("/api/v1/auth/refresh-token")
+                              .header("Authorization", "Bearer " + refreshToken))
+                      .andReturn()
+                      .getResponse()
+                      .getStatus();
+                }));
+      }
+      start.countDown();
+      for (Future<Integer> future : futures) {
+        statuses.add(future.get());
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+
+    assertThat(statuses).containsOnlyOnce(200);
+    assertThat(statuses).filteredOn(code -> code != 200).containsOnly(401);
+  }
+
+  @Test
+  void opaqueTokenStore_shouldNotContainTheIssuedHandle() throws Exception {
+    registerAndGetAccessToken("hashed@example.com", "hasheduser");
+    String token = loginAndGetAccessToken("hashed@example.com", TokenFormat.OPAQUE);
+    byte[] handle = Base64.getUrlDecoder().decode(token.substring("ot_".length()));
+
+    byte[] file = Files.readAllBytes(Path.of("target/opaque-tokens-test.bin"));
+
+    assertThat(new String(file, StandardCharsets.ISO_8859_1))
+        .doesNotContain(new String(handle, StandardCharsets.ISO_8859_1));
+  }
+
+  @Test
+  void logoutAll_withJwt_shouldRejectTokensOfBothFormats() throws Exception {
+    String jwt = registerAndGetAccessToken("everywhere@example.com", "everywhereuser");
+    String opaque = loginAndGetAccessToken("everywhere@example.com", TokenFormat.OPAQUE);
+
+    mockMvc
+        .perform(post("/api/v1/auth/logout-all").header("Authorization", "Bearer " + jwt))
+        .andExpect(status().isNoContent());
+
+    assertRejected(jwt);
+    assertRejected(opaque);
+  }
+
+  @Test
+  void logoutAll_withOpaqueToken_shouldRejectTokensOfBothFormats() throws Exception {
+    String jwt = registerAndGetAccessToken("opaqueall@example.com", "opaquealluser");
+    String opaque = loginAndGetAccessToken("opaqueall@example.com", TokenFormat.OPAQUE);
+
+    mockMvc
+        .perform(post("/api/v1/auth/logout-all").header("Authorization", "Bearer " + opaque))
+        .andExpect(status().isNoContent());
+
+    assertRejected(jwt);
+    assertRejected(opaque);
+  }
+
+  @Test
+  void forwardAuthCheck_shouldReturn204WithIdentityHeaders_andNoBody() throws Exception {
+    String token = registerAndGetAccessToken("proxied@example.com", "proxieduser");
+
+    mockMvc
+        .perform(get("/api/v1/auth/check").header("Authorization", "Bearer " + token))
+        .andExpect(status().isNoContent())
+        .andExpect(header().string("X-User", "proxied@example.com"))
+        .andExpect(header().string("X-Roles", "ROLE_USER"))
+        .andExpect(content().string(""));
+    mockMvc
+        .perform(get("/api/v1/auth/check"))
+        .andExpect(status().isUnauthorized())
+        .andExpect(header().doesNotExist("X-User"));
+  }
+
+  @Test
+  void percentEncodedAdminPath_shouldMatchTheAdminRule() throws Exception {
+    String token = registerAndGetAccessToken("encoded@example.com", "encodeduser");
+    UrlAuthorizationRule rule =
+        urlRuleRepository.save(
+            UrlAuthorizationRule.builder()
+                .pathPattern("/actuator/**")
+                .accessType(UrlAccess.ROLES)
+                .requiredRoles("ROLE_ADMIN")
+                .build());
+    try {
+      urlRuleService.reload();
+
+      // The actuator decodes the segment and has no check of its own
+      mockMvc
+          .perform(
+              get(URI.create("/%61ctuator/metrics")).header("Authorization", "Bearer " + token))
+          .andExpect(status().isForbidden());
+      mockMvc
+          .perform(
+              get(URI.create("/api/v1/%61dmin/dashboard"))
+                  .header("Authorization", "Bearer " + token))
+          .andExpect(status().isForbidden());
+    } finally {
+      urlRuleRepository.delete(rule);
+      urlRuleService.reload();
+    }
+  }
+
+  @Test
+  void reload_withInvalidRule_shouldFailAndKeepTheLoadedRules() throws Exception {
+    String adminToken = createAdminAndGetAccessToken();
+    String userToken = registerAndGetAccessToken("invalidrule@example.com", "invalidruleuser");
+    UrlAuthorizationRule rule =
+        urlRuleRepository.save(
+            UrlAuthorizationRule.builder()
+                .pathPattern("/api/v1/admin/**")
+                .accessType(UrlAccess.ROLES)
+                .requiredRoles(" ")
+                .build());
+    try {
+      UrlRuleTrie loaded = urlRuleService.currentRules();
+
+      mockMvc
+          .perform(
+              post("/api/v1/admin/url-rules/reload")
+                  .header("Authorization", "Bearer " + adminToken))
+          .andExpect(status().isBadRequest())
+          .andExpect(jsonPath("$.message").value(containsString("rule " + rule.getId())));
+
+      assertThat(urlRuleService.currentRules()).isSameAs(loaded);
+      mockMvc
+          .perform(get("/api/v1/admin/dashboard").header("Authorization", "Bearer " + userToken))
+          .andExpect(status().isForbidden());
+    } finally {
+      urlRuleRepository.delete(rule);
+      urlRuleService.reload();
+    }
+  }
+
+  @Test
+  void moderatorEndpoint_shouldReturn403_forRegularUser() throws Exception {
+    String token = registerAndGetAccessToken("nomod@example.com", "nomoduser");
+
+    mockMvc
+        .perform(get("/api/v1/moderator/content").header("Authorization", "Bearer " + token))
+        .andExpect(status().isForbidden());
+  }
+
+  @Test
+  void adminUserListing_shouldPageWithKeysetCursor() throws Exception {
+    registerAndGetAccessToken("page1@example.com", "pageuser1");
+    registerAndGetAccessToken("page2@example.com", "pageuser2");
+    String adminToken = createAdminAndGetAccessToken();
+
+    String firstPage =
+        mockMvc
+            .perform(
+                get("/api/v1/admin/users")
+                    .param("size", "2")
+                    .header("Authorization", "Bearer " + adminToken))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.users.length()").value(2))
+            .andExpect(jsonPath("$.users[0].email").value("page1@example.com"))
+            .andExpect(jsonPath("$.nextCursor").exists())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    mockMvc
+        .perform(
+            get("/api/v1/admin/users")
+                .param("size", "2")
+                .param("cursor", objectMapper.readTree(firstPage).get("nextCursor").asText())
+                .header("Authorization", "Bearer " + adminToken))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.users.length()").value(1))
+        .andExpect(jsonPath("$.users[0].email").value("listadmin@example.com"))
+        .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+    mockMvc
+        .perform(
+            get("/api/v1/admin/users")
+                .param("role", "ADMIN")
+                .header("Authorization", "Bearer " + adminToken))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.users.length()").value(1));
+  }
+
+  @Test
+  void adminUserExport_shouldStreamNdjson_andResumeAfterId() throws Exception {
+    registerAndGetAccessToken("export@example.com", "exportuser");
+    String adminToken = createAdminAndGetAccessToken();
+    long exportUserId = userRepository.findByEmail("export@example.com").orElseThrow().getId();
+
+    MvcResult result =
+        mockMvc
+            .perform(
+                get("/api/v1/admin/users/export").header("Authorization", "Bearer " + adminToken))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc
+        .perform(asyncDispatch(result))
+        .andExpect(status().isOk())
+        .andExpect(
+            content()
+                .string(
+                    allOf(
+                        containsString("\"email\":\"export@example.com\""),
+                        containsString("\"roles\":[\"ROLE_ADMIN\"]"))));
+
+    MvcResult resumed =
+        mockMvc
+            .perform(
+                get("/api/v1/admin/users/export")
+                    .param("afterId", String.valueOf(exportUserId))
+                    .header("Authorization", "Bearer " + adminToken))
+            .andReturn();
+    mockMvc
+        .perform(asyncDispatch(resumed))
+        .andExpect(content().string(not(containsString("export@example.com"))));
+  }
+
+  @Test
+  void bulkRoleAssignment_shouldGrantAndRevokeByIdOrEmail_withPerItemOutcomes() throws Exception {
+    roleRepository.save(
+        Role.builder().name("ROLE_MODERATOR").description("Moderator role").bit(2).build());
+    registerAndGetAccessToken("bulk1@example.com", "bulkuser1");
+    registerAndGetAccessToken("bulk2@example.com", "bulkuser2");
+    String adminToken = createAdminAndGetAccessToken();
+    long firstId = userRepository.findByEmail("bulk1@example.com").orElseThrow().getId();
+
+    MvcResult granted =
+        mockMvc
+            .perform(
+                post("/api/v1/admin/users/roles/MODERATOR/grant")
+                    .header("Authorization", "Bearer " + adminToken)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .content(firstId + "\nbulk2@example.com\nmissing@example.com\nnot-an-id\n"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    mockMvc
+        .perform(asyncDispatch(granted))
+        .andExpect(status().isOk())
+        .andExpect(
+            content()
+                .string(
+                    allOf(
+                        containsString(
+                            "{\"user\":\"" + firstId + "\",\"outcome\":\"GRANTED\"}"),
+                        containsString(
+                            "{\"user\":\"bulk2@example.com\",\"outcome\":\"GRANTED\"}"),
+                        containsString(
+                            "{\"user\":\"missing@example.com\",\"outcome\":\"NOT_FOUND\"}"),
+                        containsString("{\"user\":\"not-an-id\",\"outcome\":\"INVALID\"}"))));
+    assertThat(roleNames("bulk2@example.com")).contains("ROLE_MODERATOR", "ROLE_USER");
+
+    MvcResult revoked =
+        mockMvc
+            .perform(
+                post("/api/v1/admin/users/roles/ROLE_MODERATOR/revoke")
+                    .header("Authorization", "Bearer " + adminToken)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .content("bulk1@example.com\nlistadmin@example.com\n"))
+            .andReturn();
+    mockMvc
+        .perform(asyncDispatch(revoked))
+        .andExpect(
+            content()
+                .string(
+                    allOf(
+                        containsString(
+                            "{\"user\":\"bulk1@example.com\",\"outcome\":\"REVOKED\"}"),
+                        containsString(
+                            "{\"user\":\"listadmin@example.com\","
+                                + "\"outcome\":\"NOT_GRANTED\"}"))));
+    assertThat(roleNames("bulk1@example.com")).containsExactly("ROLE_USER");
+  }
+
+  @Test
+  void bulkRoleRevoke_shouldRejectEarlierTokensOfBothFormats() throws Exception {
+    String jwt = registerAndGetAccessToken("demoted@example.com", "demoteduser");
+    String opaque = loginAndGetAccessToken("demoted@example.com", TokenFormat.OPAQUE);
+    String adminToken = createAdminAndGetAccessToken();
+    mockMvc
+        .perform(get(ForwardAuthFilter.CHECK_PATH).header("Authorization", "Bearer " + opaque))
+        .andExpect(status().isNoContent());
+
+    MvcResult revoked =
+        mockMvc
+            .perform(
+                post("/api/v1/admin/users/roles/USER/revoke")
+                    .header("Authorization", "Bearer " + adminToken)
+                    .contentType(MediaType.TEXT_PLAIN)
+                    .content("demoted@example.com\n"))
+            .andReturn();
+    mockMvc
+        .perform(asyncDispatch(revoked))
+        .andExpect(content().string(containsString("\"outcome\":\"REVOKED\"")));
+
+    mockMvc
+        .perform(get(ForwardAuthFilter.CHECK_PATH).header("Authorization", "Bearer " + jwt))
+        .andExpect(status().isUnauthorized());
+    mockMvc
+        .perform(get(ForwardAuthFilter.CHECK_PATH).header("Authorization", "Bearer " + opaque))
+        .andExpect(status().isUnauthorized());
+  }
+
+  @Test
+  void bulkRoleAssignment_withUnknownRole_shouldReturnBadRequest() throws Exception {
+    String adminToken = createAdminAndGetAccessToken();
+
+    mockMvc
+        .perform(
+            post("/api/v1/admin/users/roles/NO_SUCH_ROLE/grant")
+                .header("Authorization", "Bearer " + adminToken)
+                .contentType(MediaType.TEXT_PLAIN)
+                .content("1\n"))
+        .andExpect(status().isBadRequest());
+  }
+
+  private void assertRejected(final String token) throws Exception {
+    mockMvc
+        .perform(get(ForwardAuthFilter.CHECK_PATH).header("Authorization", "Bearer " + token))
+        .andExpect(status().isUnauthorized());
+  }
+
+  private Set<String> roleNames(final String email) {
+    return userRepository.findByEmail(email).orElseThrow().getRoles().stream()
+        .map(Role::getName)
+        .collect(Collectors.toSet());
+  }
+
+  private String createAdminAndGetAccessToken() throws Exception {
+    userRepository.save(
+        User.builder()
+            .email("listadmin@example.com")
+            .username("listadmin")
+            .password(passwordEncoder.encode("Admin@123456"))
+            .roles(Set.of(roleRepository.findByName("ROLE_ADMIN").orElseThrow()))
+            .enabled(true)
+            .accountNonExpired(true)
+            .accountNonLocked(true)
+            .credentialsNonExpired(true)
+            .build());
+
+    AuthenticationRequest loginRequest =
+        AuthenticationRequest.builder()
+            .email("listadmin@example.com")
+            .password("Admin@123456")
+            .build();
+
+    String response =
+        mockMvc
+            .perform(
+                post("/api/v1/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(loginRequest)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    return objectMapper.readTree(response).get("accessToken").asText();
+  }
+
+  private String loginAndGetAccessToken(final String email, final TokenFormat tokenFormat)
+      throws Exception {
+    AuthenticationRequest loginRequest =
+        AuthenticationRequest.builder()
+            .email(email)
+            .password("Secret@123456")
+            .tokenFormat(tokenFormat)
+            .build();
+
+    String response =
+        mockMvc
+            .perform(
+                post("/api/v1/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(loginRequest)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    return objectMapper.readTree(response).get("accessToken").asText();
+  }
+
+  private String registerAndGetAccessToken(final String email, final String username)
+      throws Exception {
+    RegisterRequest registerRequest =
+        RegisterRequest.builder()
+            .email(email)
+            .username(username)
+            .password("Secret@123456")
+            .firstName("Test")
+            .lastName("User")
+            .build();
+
+    String response =
+        mockMvc
+            .perform(
+                post("/api/v1/auth/register")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(registerRequest)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+
+    return objectMapper.readTree(response).get("accessToken").asText();
+  }
 }
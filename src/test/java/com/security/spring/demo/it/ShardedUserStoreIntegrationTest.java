@@ -0,0 +1,324 @@
+package com.security.spring.demo.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring.demo.config.datasource.ShardRouter;
+import com.security.spring.demo.dto.AuthenticationRequest;
+import com.security.spring.demo.dto.RegisterRequest;
+import com.security.spring.demo.dto.TokenFormat;
+import com.security.spring.demo.repository.UserDirectory;
+import com.security.spring.demo.security.replica.UserReplicaService;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+/** Three H2 databases as shards, configured as if the third was just added to a two-shard setup */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(
+    locations = "classpath:application-test.properties",
+    properties = {
+      "spring.datasource.url=jdbc:h2:mem:users-shard-0;DB_CLOSE_DELAY=-1",
+      "application.datasource.shards.enabled=true",
+      "application.datasource.shards.previous-count=2",
+      "application.datasource.shards.shards[0].url=jdbc:h2:mem:users-shard-1;DB_CLOSE_DELAY=-1",
+      "application.datasource.shards.shards[0].username=sa",
+      "application.datasource.shards.shards[1].url=jdbc:h2:mem:users-shard-2;DB_CLOSE_DELAY=-1",
+      "application.datasource.shards.shards[1].username=sa",
+      "application.security.opaque-tokens.store-path=target/opaque-tokens-sharded-test.bin",
+      "application.security.user-replica.enabled=true",
+      "application.security.user-replica.poll-interval=3600000"
+    })
+class ShardedUserStoreIntegrationTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private ShardRouter shardRouter;
+
+  @Autowired private UserDirectory userDirectory;
+
+  @Autowired private PasswordEncoder passwordEncoder;
+
+  @Autowired private UserReplicaService userReplicaService;
+
+  @Test
+  void register_shouldPlaceUsersOnTheirHomeShard_andListAcrossShards() throws Exception {
+    List<String> emails = new ArrayList<>();
+    Set<Integer> shardsUsed = new HashSet<>();
+    for (int i = 0; i < 9; i++) {
+      String email = "spread" + i + "@example.com";
+      register(email, "spread" + i).andExpect(status().isOk());
+      int home = shardRouter.shardForEmail(email);
+      assertThat(shardsHolding(email)).containsExactly(home);
+      assertThat(shardRouter.shardForId(idOn(home, email))).isEqualTo(home);
+      emails.add(email);
+      shardsUsed.add(home);
+    }
+    assertThat(shardsUsed).hasSizeGreaterThan(1);
+
+    String adminToken = login("admin@example.com", "Admin@123");
+    List<String> listed = new ArrayList<>();
+    LocalDateTime previous = LocalDateTime.MIN;
+    String cursor = null;
+    do {
+      var request =
+          get("/api/v1/admin/users")
+              .param("size", "4")
+              .header("Authorization", "Bearer " + adminToken);
+      if (cursor != null) {
+        request.param("cursor", cursor);
+      }
+      JsonNode page =
+          objectMapper.readTree(
+              mockMvc
+                  .perform(request)
+                  .andExpect(status().isOk())
+                  .andReturn()
+                  .getResponse()
+                  .getContentAsString());
+      for (JsonNode user : page.get("users")) {
+        LocalDateTime createdAt = LocalDateTime.parse(user.get("createdAt").asText());
+        assertThat(createdAt).isAfterOrEqualTo(previous);
+        previous = createdAt;
+        listed.add(user.get("email").asText());
+      }
+      cursor = page.hasNonNull("nextCursor") ? page.get("nextCursor").asText() : null;
+    } while (cursor != null);
+
+    assertThat(listed).doesNotHaveDuplicates().containsAll(emails).contains("admin@example.com");
+  }
+
+  @Test
+  void register_shouldReturn409_forUsernameTakenOnAnotherShard() throws Exception {
+    register("first-owner@example.com", "sharedname").andExpect(status().isOk());
+    String otherEmail =
+        emailWithHomeOtherThan(shardRouter.shardForEmail("first-owner@example.com"));
+
+    register(otherEmail, "sharedname")
+        .andExpect(status().isConflict())
+        .andExpect(jsonPath("$.message").value("User with this username already exists"));
+
+    assertThat(shardsHolding(otherEmail)).isEmpty();
+    assertThat(userDirectory.isEmailTaken(otherEmail)).isFalse();
+  }
+
+  @Test
+  void rebalance_shouldMoveUsersRegisteredBeforeTheShardWasAdded() throws Exception {
+    String email = emailMovingToTheNewShard();
+    int oldShard = ShardRouter.shardForEmail(email, 2);
+    JdbcTemplate old = new JdbcTemplate(shardRouter.shard(oldShard));
+    old.update(
+        "INSERT INTO users (email, username, password, created_at) VALUES (?, ?, ?, ?)",
+        email,
+        "premigration",
+        passwordEncoder.encode("Secret@123456"),
+        LocalDateTime.now());
+    old.update(
+        "INSERT INTO user_roles (user_id, role_id) SELECT u.id, r.id FROM users u, roles r"
+            + " WHERE u.email = ? AND r.name = 'ROLE_USER'",
+        email);
+
+    long id = idOn(oldShard, email);
+
+    // Not moved yet: found on the shard it hashed to before the third shard was added
+    login(email, "Secret@123456");
+    String session = login(email, "Secret@123456", TokenFormat.OPAQUE);
+
+    String adminToken = login("admin@example.com", "Admin@123");
+    mockMvc
+        .perform(
+            post("/api/v1/admin/shards/rebalance").header("Authorization", "Bearer " + adminToken))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.moved").value(1))
+        .andExpect(jsonPath("$.claimsAdded").value(1));
+
+    assertThat(shardsHolding(email)).containsExactly(2);
+    JdbcTemplate home = new JdbcTemplate(shardRouter.shard(2));
+    assertThat(
+            home.queryForList(
+                "SELECT r.name FROM users u JOIN user_roles ur ON ur.user_id = u.id"
+                    + " JOIN roles r ON r.id = ur.role_id WHERE u.email = ?",
+                String.class,
+                email))
+        .containsExactly("ROLE_USER");
+    assertThat(idOn(2, email)).isEqualTo(id);
+    assertThat(shardRouter.shardForId(id)).isEqualTo(2);
+    assertThat(userDirectory.isUsernameTaken("premigration")).isTrue();
+    login(email, "Secret@123456");
+    // The session issued before the move still resolves to the user under the same id
+    mockMvc
+        .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + session))
+        .andExpect(status().isOk())
+        .andExpect(jsonPath("$.username").value(email));
+  }
+
+  @Test
+  void rebalance_shouldReleaseOldClaimsWithoutAUser_acrossClaimPages() throws Exception {
+    register("kept-claim@example.com", "keptclaim").andExpect(status().isOk());
+    JdbcTemplate directory = new JdbcTemplate(shardRouter.shard(0));
+    LocalDateTime anHourAgo = LocalDateTime.now().minusHours(1);
+    directory.update(
+        "UPDATE user_directory SET reserved_at = ? WHERE username = 'keptclaim'", anHourAgo);
+    // More abandoned claims than one page, sorting on both sides of the kept one
+    directory.update(
+        "INSERT INTO user_directory (username, email, reserved_at)"
+            + " SELECT CASEWHEN(MOD(x, 2) = 0, 'abandoned', 'lost') || x, 'claim' || x"
+            + " || '@example.com', CAST(? AS TIMESTAMP) FROM SYSTEM_RANGE(1, 600)",
+        anHourAgo);
+
+    String adminToken = login("admin@example.com", "Admin@123");
+    mockMvc
+        .perform(
+            post("/api/v1/admin/shards/rebalance").header("Authorization", "Bearer " + adminToken))
+        .andExpect(status().isOk());
+
+    assertThat(
+            directory.queryForObject(
+                "SELECT COUNT(*) FROM user_directory"
+                    + " WHERE username LIKE 'abandoned%' OR username LIKE 'lost%'",
+                Integer.class))
+        .isZero();
+    assertThat(userDirectory.isUsernameTaken("keptclaim")).isTrue();
+  }
+
+  @Test
+  void deleteUser_shouldRejectTheUsersTokens_andDropThemFromTheReplica() throws Exception {
+    String email = "deleted@example.com";
+    register(email, "deleteduser").andExpect(status().isOk());
+    String jwt = login(email, "Secret@123456");
+    String opaque = login(email, "Secret@123456", TokenFormat.OPAQUE);
+    userReplicaService.poll();
+    assertThat(userReplicaService.find(email)).isPresent();
+    long id = idOn(shardRouter.shardForEmail(email), email);
+
+    mockMvc
+        .perform(
+            delete("/api/v1/admin/users/" + id)
+                .header(
+                    "Authorization", "Bearer " + login("admin@example.com", "Admin@123")))
+        .andExpect(status().isNoContent());
+
+    assertThat(userReplicaService.find(email)).isEmpty();
+    for (String token : List.of(jwt, opaque)) {
+      mockMvc
+          .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+          .andExpect(status().isUnauthorized());
+    }
+  }
+
+  @Test
+  void replicaPoll_shouldDropUsersDeletedByAnotherInstance() throws Exception {
+    String email = "deleted-elsewhere@example.com";
+    register(email, "deletedelsewhere").andExpect(status().isOk());
+    userReplicaService.poll();
+    assertThat(userReplicaService.find(email)).isPresent();
+
+    int home = shardRouter.shardForEmail(email);
+    long id = idOn(home, email);
+    JdbcTemplate shard = new JdbcTemplate(shardRouter.shard(home));
+    shard.update("DELETE FROM user_roles WHERE user_id = ?", id);
+    shard.update("DELETE FROM users WHERE id = ?", id);
+    shard.update(
+        "INSERT INTO user_deletions (user_id, deleted_at) VALUES (?, CURRENT_TIMESTAMP)", id);
+    userReplicaService.poll();
+
+    assertThat(userReplicaService.find(email)).isEmpty();
+  }
+
+  private List<Integer> shardsHolding(final String email) {
+    List<Integer> shards = new ArrayList<>();
+    for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+      Integer count =
+          new JdbcTemplate(shardRouter.shard(shard))
+              .queryForObject("SELECT COUNT(*) FROM users WHERE email = ?", Integer.class, email);
+      if (count != null && count > 0) {
+        shards.add(shard);
+      }
+    }
+    return shards;
+  }
+
+  private long idOn(final int shard, final String email) {
+    return new JdbcTemplate(shardRouter.shard(shard))
+        .queryForObject("SELECT id FROM users WHERE email = ?", Long.class, email);
+  }
+
+  private String emailWithHomeOtherThan(final int shard) {
+    for (int i = 0; ; i++) {
+      String email = "second-owner" + i + "@example.com";
+      if (shardRouter.shardForEmail(email) != shard) {
+        return email;
+      }
+    }
+  }
+
+  private String emailMovingToTheNewShard() {
+    for (int i = 0; ; i++) {
+      String email = "premigration" + i + "@example.com";
+      if (shardRouter.shardForEmail(email) == 2) {
+        return email;
+      }
+    }
+  }
+
+  private ResultActions register(final String email, final String username) throws Exception {
+    RegisterRequest request =
+        RegisterRequest.builder()
+            .email(email)
+            .username(username)
+            .password("Secret@123456")
+            .firstName("Test")
+            .lastName("User")
+            .build();
+    return mockMvc.perform(
+        post("/api/v1/auth/register")
+            .contentType(MediaType.APPLICATION_JSON)
+            .content(objectMapper.writeValueAsString(request)));
+  }
+
+  private String login(final String email, final String password) throws Exception {
+    return login(email, password, null);
+  }
+
+  private String login(final String email, final String password, final TokenFormat tokenFormat)
+      throws Exception {
+    AuthenticationRequest request =
+        AuthenticationRequest.builder()
+            .email(email)
+            .password(password)
+            .tokenFormat(tokenFormat)
+            .build();
+    String response =
+        mockMvc
+            .perform(
+                post("/api/v1/auth/login")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return objectMapper.readTree(response).get("accessToken").asText();
+  }
+}
@@ -0,0 +1,148 @@
+package com.security.spring.demo.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring.demo.dto.RegisterRequest;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(
+    locations = "classpath:application-test.properties",
+    properties = {
+      "application.security.user-lookup.timeout=200",
+      "application.security.opaque-tokens.store-path=target/opaque-tokens-degradation-test.bin"
+    })
+class UserLookupDegradationIntegrationTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private DataSource dataSource;
+
+  @AfterEach
+  void restoreDatabase() {
+    slowDataSource().setDelay(Duration.ZERO);
+  }
+
+  @Test
+  void slowDatabase_shouldServeKnownUsersFromSnapshot() throws Exception {
+    String token = register("snapshot@example.com", "snapshotuser");
+    mockMvc
+        .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk());
+
+    slowDataSource().setDelay(Duration.ofSeconds(2));
+    long started = System.nanoTime();
+    mockMvc
+        .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk());
+
+    assertThat(Duration.ofNanos(System.nanoTime() - started)).isLessThan(Duration.ofSeconds(1));
+  }
+
+  @Test
+  void slowDatabase_shouldReturn503_forUsersWithoutSnapshot() throws Exception {
+    String token = register("unseen@example.com", "unseenuser");
+
+    slowDataSource().setDelay(Duration.ofSeconds(2));
+    mockMvc
+        .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+        .andExpect(status().isServiceUnavailable())
+        .andExpect(header().exists("Retry-After"))
+        .andExpect(jsonPath("$.status").value(503))
+        .andExpect(jsonPath("$.message").value("User store is unavailable, retry shortly"));
+  }
+
+  private SlowDataSource slowDataSource() {
+    return (SlowDataSource) dataSource;
+  }
+
+  private String register(final String email, final String username) throws Exception {
+    RegisterRequest request =
+        RegisterRequest.builder()
+            .email(email)
+            .username(username)
+            .password("Secret@123456")
+            .firstName("Test")
+            .lastName("User")
+            .build();
+    String response =
+        mockMvc
+            .perform(
+                post("/api/v1/auth/register")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return objectMapper.readTree(response).get("accessToken").asText();
+  }
+
+  /** Wraps the application data source so tests can make every connection checkout slow */
+  static class SlowDataSource extends DelegatingDataSource {
+
+    private volatile Duration delay = Duration.ZERO;
+
+    SlowDataSource(final DataSource target) {
+      super(target);
+    }
+
+    void setDelay(final Duration delay) {
+      this.delay = delay;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+      Duration current = delay;
+      if (!current.isZero()) {
+        try {
+          Thread.sleep(current.toMillis());
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new SQLException("Interrupted while waiting for a connection", e);
+        }
+      }
+      return super.getConnection();
+    }
+  }
+
+  @TestConfiguration
+  static class SlowDataSourceConfig {
+
+    @Bean
+    static BeanPostProcessor slowDataSourcePostProcessor() {
+      return new BeanPostProcessor() {
+        @Override
+        public Object postProcessAfterInitialization(final Object bean, final String beanName) {
+          return bean instanceof DataSource target && !(bean instanceof SlowDataSource)
+              ? new SlowDataSource(target)
+              : bean;
+        }
+      };
+    }
+  }
+}
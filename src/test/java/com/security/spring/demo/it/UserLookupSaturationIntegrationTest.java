@@ -0,0 +1,131 @@
+package com.security.spring.demo.it;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.security.spring.demo.dto.RegisterRequest;
+import com.security.spring.demo.it.UserLookupDegradationIntegrationTest.SlowDataSource;
+import com.security.spring.demo.service.ResilientUserDetailsService;
+import com.security.spring.demo.util.CircuitBreaker;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@Import(UserLookupDegradationIntegrationTest.SlowDataSourceConfig.class)
+@TestPropertySource(
+    locations = "classpath:application-test.properties",
+    properties = {
+      "application.security.user-lookup.timeout=200",
+      "application.security.user-lookup.threads=2",
+      "application.security.user-lookup.queue-capacity=1",
+      "application.security.opaque-tokens.store-path=target/opaque-tokens-saturation-test.bin"
+    })
+class UserLookupSaturationIntegrationTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  @Autowired private ObjectMapper objectMapper;
+
+  @Autowired private DataSource dataSource;
+
+  @Autowired private ResilientUserDetailsService userDetailsService;
+
+  @AfterEach
+  void restoreDatabase() {
+    ((SlowDataSource) dataSource).setDelay(Duration.ZERO);
+  }
+
+  @Test
+  void fullLookupPool_shouldShedToSnapshots_withoutOpeningTheBreaker() throws Exception {
+    String token = register("saturated@example.com", "saturateduser");
+    mockMvc
+        .perform(get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+        .andExpect(status().isOk());
+
+    // Lookups stay well inside the timeout, but far more arrive than the pool can take
+    ((SlowDataSource) dataSource).setDelay(Duration.ofMillis(50));
+    int requests = 24;
+    CountDownLatch start = new CountDownLatch(1);
+    ExecutorService clients = Executors.newFixedThreadPool(requests);
+    try {
+      List<Future<Integer>> statuses = new ArrayList<>();
+      for (int i = 0; i < requests; i++) {
+        statuses.add(
+            clients.submit(
+                () -> {
+                  start.await();
+                  return mockMvc
+                      .perform(
+                          get("/api/v1/user/profile").header("Authorization", "Bearer " + token))
+                      .andReturn()
+                      .getResponse()
+                      .getStatus();
+                }));
+      }
+      start.countDown();
+      for (Future<Integer> status : statuses) {
+        assertThat(status.get()).isEqualTo(200);
+      }
+    } finally {
+      clients.shutdownNow();
+    }
+
+    assertThat(userDetailsService.rejectedLookups()).isPositive();
+    assertThat(userDetailsService.circuitState()).isEqualTo(CircuitBreaker.State.CLOSED);
+  }
+
+  @Test
+  void snapshots_shouldNotHoldThePasswordHash() throws Exception {
+    register("hashless@example.com", "hashlessuser");
+    assertThat(userDetailsService.loadUserByUsername("hashless@example.com").getPassword())
+        .isNotNull();
+
+    ((SlowDataSource) dataSource).setDelay(Duration.ofSeconds(1));
+    UserDetails snapshot = userDetailsService.loadUserByUsername("hashless@example.com");
+
+    assertThat(snapshot.getUsername()).isEqualTo("hashless@example.com");
+    assertThat(snapshot.getPassword()).isNull();
+  }
+
+  private String register(final String email, final String username) throws Exception {
+    RegisterRequest request =
+        RegisterRequest.builder()
+            .email(email)
+            .username(username)
+            .password("Secret@123456")
+            .firstName("Test")
+            .lastName("User")
+            .build();
+    String response =
+        mockMvc
+            .perform(
+                post("/api/v1/auth/register")
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .content(objectMapper.writeValueAsString(request)))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsString();
+    return objectMapper.readTree(response).get("accessToken").asText();
+  }
+}
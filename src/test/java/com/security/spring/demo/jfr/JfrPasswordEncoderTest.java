@@ -0,0 +1,41 @@
+package com.security.spring.demo.jfr;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.file.Path;
+import java.util.List;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+
+class JfrPasswordEncoderTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void encodeAndMatches_shouldRecordPasswordHashEvents() throws Exception {
+    JfrPasswordEncoder encoder = new JfrPasswordEncoder(new BCryptPasswordEncoder(4));
+    Path file = tempDir.resolve("events.jfr");
+
+    try (Recording recording = new Recording()) {
+      recording.enable(PasswordHashEvent.class).withoutThreshold();
+      recording.start();
+      String hash = encoder.encode("Secret@123456");
+      encoder.matches("Secret@123456", hash);
+      encoder.matches("wrong", hash);
+      recording.stop();
+      recording.dump(file);
+    }
+
+    List<RecordedEvent> events =
+        RecordingFile.readAllEvents(file).stream()
+            .filter(e -> e.getEventType().getName().equals("com.security.spring.demo.PasswordHash"))
+            .toList();
+    assertThat(events)
+        .extracting(e -> e.getString("operation") + ":" + e.getString("outcome"))
+        .containsExactly("ENCODE:ENCODED", "MATCHES:MATCH", "MATCHES:MISMATCH");
+  }
+}
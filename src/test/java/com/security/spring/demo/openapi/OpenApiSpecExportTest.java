@@ -0,0 +1,56 @@
+package com.security.spring.demo.openapi;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+/**
+ * Writes the OpenAPI document and its gzip variant to the directory in the {@code
+ * openapi.output-dir} system property. Only enabled by the static-openapi Maven profile.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(locations = "classpath:application-test.properties")
+@EnabledIfSystemProperty(named = "openapi.output-dir", matches = ".+")
+class OpenApiSpecExportTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  @Test
+  void exportOpenApiDocument() throws Exception {
+    byte[] document =
+        mockMvc
+            .perform(get("/v3/api-docs"))
+            .andExpect(status().isOk())
+            .andReturn()
+            .getResponse()
+            .getContentAsByteArray();
+
+    Path outputDir = Files.createDirectories(Path.of(System.getProperty("openapi.output-dir")));
+    Files.write(outputDir.resolve("openapi.json"), document);
+    try (OutputStream gzip = new BestGzipOutputStream(outputDir.resolve("openapi.json.gz"))) {
+      gzip.write(document);
+    }
+  }
+
+  private static final class BestGzipOutputStream extends GZIPOutputStream {
+
+    private BestGzipOutputStream(final Path path) throws IOException {
+      super(Files.newOutputStream(path));
+      def.setLevel(Deflater.BEST_COMPRESSION);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.security.spring.demo.openapi;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.redirectedUrl;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+/** Runs the static-openapi profile against the document fixture in src/test/resources/openapi */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("static-openapi")
+@TestPropertySource(locations = "classpath:application-test.properties")
+class StaticOpenApiConfigTest {
+
+  @Autowired private MockMvc mockMvc;
+
+  @Test
+  void swaggerUi_shouldLoadTheStaticDocument() throws Exception {
+    mockMvc.perform(get("/swagger-ui.html")).andExpect(redirectedUrl("/swagger-ui/index.html"));
+    mockMvc
+        .perform(get("/swagger-ui/index.html"))
+        .andExpect(status().isOk())
+        .andExpect(content().string(containsString("swagger-initializer.js")));
+    mockMvc
+        .perform(get("/swagger-ui/swagger-initializer.js"))
+        .andExpect(status().isOk())
+        .andExpect(content().string(containsString("/v3/api-docs/openapi.json")));
+  }
+
+  @Test
+  void document_shouldBeServedPerEncoding_withDistinctETags() throws Exception {
+    String identityETag =
+        mockMvc
+            .perform(get("/v3/api-docs/openapi.json"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.openapi").value("3.1.0"))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+    String gzipETag =
+        mockMvc
+            .perform(get("/v3/api-docs/openapi.json").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+            .andReturn()
+            .getResponse()
+            .getHeader(HttpHeaders.ETAG);
+
+    assertThat(identityETag).isNotNull().isNotEqualTo(gzipETag);
+    mockMvc
+        .perform(
+            get("/v3/api-docs/openapi.json")
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+        .andExpect(status().isNotModified());
+    mockMvc
+        .perform(get("/v3/api-docs/openapi.json").header(HttpHeaders.IF_NONE_MATCH, gzipETag))
+        .andExpect(status().isOk());
+  }
+}
@@ -0,0 +1,51 @@
+package com.security.spring.demo.security;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class UrlRuleTrieTest {
+
+  private static final UrlRuleTrie.Rule PERMIT = new UrlRuleTrie.Rule(UrlAccess.PERMIT_ALL, 0L);
+  private static final UrlRuleTrie.Rule ADMIN = new UrlRuleTrie.Rule(UrlAccess.ROLES, 2L);
+  private static final UrlRuleTrie.Rule DENY = new UrlRuleTrie.Rule(UrlAccess.DENY_ALL, 0L);
+
+  private final UrlRuleTrie trie =
+      new UrlRuleTrie.Builder()
+          .add("/api/v1/auth/**", null, PERMIT)
+          .add("/api/v1/admin/**", null, ADMIN)
+          .add("/api/v1/admin/users/*", "delete", DENY)
+          .add("/actuator/health", null, PERMIT)
+          .build();
+
+  @Test
+  void trailingDoubleWildcard_shouldMatchPrefixAndAnyRemainder() {
+    assertThat(trie.match("POST", "/api/v1/auth")).isEqualTo(PERMIT);
+    assertThat(trie.match("POST", "/api/v1/auth/login")).isEqualTo(PERMIT);
+    assertThat(trie.match("GET", "/api/v1/auth/a/b/c")).isEqualTo(PERMIT);
+  }
+
+  @Test
+  void mostSpecificPattern_andMethodBoundRule_shouldWin() {
+    assertThat(trie.match("DELETE", "/api/v1/admin/users/42")).isEqualTo(DENY);
+    assertThat(trie.match("GET", "/api/v1/admin/users/42")).isEqualTo(ADMIN);
+    assertThat(trie.match("DELETE", "/api/v1/admin/users/42/roles")).isEqualTo(ADMIN);
+  }
+
+  @Test
+  void literalPatterns_shouldOnlyMatchExactly() {
+    assertThat(trie.match("GET", "/actuator/health")).isEqualTo(PERMIT);
+    assertThat(trie.match("GET", "/actuator/healthz")).isEqualTo(UrlRuleTrie.DEFAULT_RULE);
+    assertThat(trie.match("GET", "/actuator/health/db")).isEqualTo(UrlRuleTrie.DEFAULT_RULE);
+  }
+
+  @Test
+  void unsupportedPatterns_shouldBeRejected() {
+    UrlRuleTrie.Builder builder = new UrlRuleTrie.Builder();
+    assertThatThrownBy(() -> builder.add("/api/**/users", null, PERMIT))
+        .isInstanceOf(IllegalArgumentException.class);
+    assertThatThrownBy(() -> builder.add("/docs/*.html", null, PERMIT))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+}
@@ -0,0 +1,76 @@
+package com.security.spring.demo.security.breach;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BreachCorpusTest {
+
+  @TempDir Path tempDir;
+
+  @Test
+  void build_shouldSortAndDeduplicateAcrossRuns() throws Exception {
+    List<String> lines = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      lines.add(sha1Line("password" + i));
+    }
+    lines.add(sha1Line("password7"));
+    Path input = write("hashes.txt", lines);
+    Path output = tempDir.resolve("corpus.bin");
+
+    long count = BreachCorpusBuilder.build(input, output, 64);
+
+    BreachCorpus corpus = BreachCorpus.open(output);
+    assertThat(count).isEqualTo(1000);
+    assertThat(corpus.size()).isEqualTo(1000);
+    for (int i = 0; i < 1000; i++) {
+      assertThat(corpus.contains(prefix("password" + i))).isTrue();
+    }
+    assertThat(corpus.contains(prefix("Str0ng&Unbreached!"))).isFalse();
+  }
+
+  @Test
+  void checker_shouldPickUpReplacedCorpus() throws Exception {
+    Path output = tempDir.resolve("corpus.bin");
+    BreachCorpusBuilder.build(write("first.txt", List.of(sha1Line("hunter2"))), output, 16);
+    BreachedPasswordChecker checker = new BreachedPasswordChecker(output.toString());
+
+    assertThat(checker.isBreached("hunter2")).isTrue();
+    assertThat(checker.isBreached("Password@123")).isFalse();
+
+    BreachCorpusBuilder.build(
+        write("second.txt", List.of(sha1Line("Password@123"), sha1Line("letmein"))), output, 16);
+    checker.refreshIfChanged();
+
+    assertThat(checker.isBreached("hunter2")).isFalse();
+    assertThat(checker.isBreached("Password@123")).isTrue();
+  }
+
+  @Test
+  void checker_shouldAllowEverything_whenNoCorpusConfigured() {
+    assertThat(new BreachedPasswordChecker("").isBreached("password")).isFalse();
+  }
+
+  private Path write(final String name, final List<String> lines) throws IOException {
+    return Files.write(tempDir.resolve(name), lines, StandardCharsets.US_ASCII);
+  }
+
+  private static String sha1Line(final String password) throws Exception {
+    byte[] hash =
+        MessageDigest.getInstance("SHA-1").digest(password.getBytes(StandardCharsets.UTF_8));
+    return HexFormat.of().withUpperCase().formatHex(hash) + ":42";
+  }
+
+  private static long prefix(final String password) throws Exception {
+    return HexFormat.fromHexDigitsToLong(sha1Line(password).substring(0, 16));
+  }
+}
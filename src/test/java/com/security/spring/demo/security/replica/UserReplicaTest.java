@@ -0,0 +1,96 @@
+package com.security.spring.demo.security.replica;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class UserReplicaTest {
+
+  private static final String HASH = "$2a$12$5mvJf9SFQtQI9YQOuqFGreXGSxovkce0KWJle2BpMrwRSrrGXhlFW";
+  private static final int ACTIVE =
+      UserReplica.ACCOUNT_NON_EXPIRED
+          | UserReplica.ACCOUNT_NON_LOCKED
+          | UserReplica.CREDENTIALS_NON_EXPIRED
+          | UserReplica.ENABLED;
+
+  @Test
+  void find_shouldReturnTheReplicatedState() {
+    UserReplica replica = new UserReplica(16);
+    replica.upsert(new UserReplica.Row(7, "ada@example.com", HASH, 0b101, 2, ACTIVE));
+
+    assertThat(replica.find("ada@example.com"))
+        .isEqualTo(new UserReplica.Row(7, "ada@example.com", HASH, 0b101, 2, ACTIVE));
+    assertThat(replica.find("bob@example.com")).isNull();
+  }
+
+  @Test
+  void upsert_shouldMoveTheEmailIndexWhenTheEmailChanges() {
+    UserReplica replica = new UserReplica(16);
+    replica.upsert(new UserReplica.Row(7, "ada@example.com", HASH, 1, 0, ACTIVE));
+    replica.upsert(new UserReplica.Row(7, "ada@example.org", HASH, 1, 0, 0));
+
+    assertThat(replica.find("ada@example.com")).isNull();
+    assertThat(replica.find("ada@example.org").has(UserReplica.ENABLED)).isFalse();
+    assertThat(replica.size()).isEqualTo(1);
+  }
+
+  @Test
+  void upsert_shouldReplaceAnotherUserHoldingTheSameEmail() {
+    UserReplica replica = new UserReplica(16);
+    replica.upsert(new UserReplica.Row(7, "ada@example.com", HASH, 1, 0, ACTIVE));
+    // Same user after a shard rebalance gave it a new id
+    replica.upsert(new UserReplica.Row(1L << 48 | 7, "ada@example.com", HASH, 1, 0, ACTIVE));
+
+    assertThat(replica.find("ada@example.com").id()).isEqualTo(1L << 48 | 7);
+    assertThat(replica.size()).isEqualTo(1);
+  }
+
+  @Test
+  void reconciliation_shouldRemoveOnlyUnmarkedUsers() {
+    UserReplica replica = new UserReplica(16);
+    for (long id = 1; id <= 100; id++) {
+      replica.upsert(new UserReplica.Row(id, "user" + id + "@example.com", HASH, 1, 0, ACTIVE));
+    }
+
+    UserReplica.Reconciliation reconciliation = replica.startReconciliation();
+    for (long id = 1; id <= 100; id += 2) {
+      reconciliation.mark(id);
+    }
+    // Added after the reconciliation started, so it must survive unmarked
+    replica.upsert(new UserReplica.Row(101, "user101@example.com", HASH, 1, 0, ACTIVE));
+
+    assertThat(reconciliation.finish()).isEqualTo(50);
+    assertThat(replica.size()).isEqualTo(51);
+    assertThat(replica.find("user2@example.com")).isNull();
+    assertThat(replica.find("user3@example.com").id()).isEqualTo(3);
+    assertThat(replica.find("user101@example.com").id()).isEqualTo(101);
+  }
+
+  @Test
+  void churn_shouldCompactTheStringPool() {
+    UserReplica replica = new UserReplica(1_000);
+    for (int round = 0; round < 100; round++) {
+      for (long id = 1; id <= 1_000; id++) {
+        replica.upsert(
+            new UserReplica.Row(id, "user" + id + "@example.com", HASH + round, 1, round, ACTIVE));
+      }
+    }
+
+    assertThat(replica.find("user500@example.com").tokenVersion()).isEqualTo(99);
+    assertThat(replica.find("user500@example.com").password()).isEqualTo(HASH + 99);
+    // Every round leaves 64 KB of replaced hashes; without compaction the pool would exceed 6 MB
+    assertThat(replica.memoryBytes()).isLessThan(3_000_000L);
+  }
+
+  @Test
+  void memoryBytes_shouldStayCompactPerUser() {
+    int users = 200_000;
+    UserReplica replica = new UserReplica(users);
+    for (long id = 1; id <= users; id++) {
+      replica.upsert(new UserReplica.Row(id, "user" + id + "@example.com", HASH, 1, 0, ACTIVE));
+    }
+
+    // Fixed columns, both indexes and the pool: about 140 bytes, 62 of them the BCrypt hash
+    assertThat(replica.memoryBytes() / users).isLessThan(160);
+  }
+}
@@ -0,0 +1,129 @@
+package com.security.spring.demo.security.token;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OffHeapTokenStoreTest {
+
+  private static final long NOW = 1_000_000L;
+
+  @TempDir Path tempDir;
+
+  @Test
+  void open_shouldCreateTheFileReadableByItsOwnerOnly() throws Exception {
+    assumeTrue(tempDir.getFileSystem().supportedFileAttributeViews().contains("posix"));
+    Path path = tempDir.resolve("sessions").resolve("tokens.bin");
+
+    try (OffHeapTokenStore store = OffHeapTokenStore.open(path, 16)) {
+      assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(path)))
+          .isEqualTo("rw-------");
+      assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(path.getParent())))
+          .isEqualTo("rwx------");
+    }
+  }
+
+  @Test
+  void remove_shouldKeepCollidingSessionsReachable() throws Exception {
+    try (OffHeapTokenStore store = OffHeapTokenStore.open(tempDir.resolve("tokens.bin"), 16)) {
+      // Same home slot, so the three sessions share one probe chain
+      for (long low = 1; low <= 3; low++) {
+        store.put(5, low, entry(low, NOW + 1000), NOW);
+      }
+
+      assertThat(store.remove(5, 1)).isTrue();
+
+      assertThat(store.get(5, 1, NOW)).isNull();
+      assertThat(store.get(5, 2, NOW).userId()).isEqualTo(2);
+      assertThat(store.get(5, 3, NOW).userId()).isEqualTo(3);
+      assertThat(store.size()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void take_shouldRemoveTheSessionOnce_andOnlyForItsKind() throws Exception {
+    try (OffHeapTokenStore store = OffHeapTokenStore.open(tempDir.resolve("tokens.bin"), 16)) {
+      store.put(5, 1, entry(1, NOW + 1000), NOW);
+      store.put(5, 2, new OffHeapTokenStore.Entry(2, 1, NOW + 1000, 2, 0), NOW);
+
+      assertThat(store.take(5, 1, 2, NOW)).isNull();
+      assertThat(store.get(5, 1, NOW)).isNotNull();
+
+      assertThat(store.take(5, 2, 2, NOW).userId()).isEqualTo(2);
+      assertThat(store.take(5, 2, 2, NOW)).isNull();
+      assertThat(store.size()).isEqualTo(1);
+    }
+  }
+
+  @Test
+  void reclaimExpired_shouldFreeOnlyExpiredSessions() throws Exception {
+    try (OffHeapTokenStore store = OffHeapTokenStore.open(tempDir.resolve("tokens.bin"), 16)) {
+      store.put(15, 1, entry(1, NOW - 1), NOW);
+      store.put(15, 2, entry(2, NOW + 1000), NOW);
+      store.put(0, 3, entry(3, NOW - 1), NOW);
+
+      assertThat(store.get(15, 1, NOW)).isNull();
+      assertThat(store.reclaimExpired(NOW, 16)).isEqualTo(2);
+      assertThat(store.size()).isEqualTo(1);
+      assertThat(store.get(15, 2, NOW).userId()).isEqualTo(2);
+    }
+  }
+
+  @Test
+  void put_pastLoadFactor_shouldReclaimExpiredSessionsInPlace() throws Exception {
+    try (OffHeapTokenStore store = OffHeapTokenStore.open(tempDir.resolve("tokens.bin"), 16)) {
+      // Twelve sessions reach the 0.75 load factor of 16 slots
+      for (long i = 0; i < 12; i++) {
+        store.put(i, i, entry(i, NOW - 1), NOW - 10);
+      }
+
+      assertTimeoutPreemptively(
+          Duration.ofSeconds(5), () -> store.put(12, 12, entry(12, NOW + 1000), NOW));
+
+      assertThat(store.size()).isEqualTo(1);
+      assertThat(store.get(12, 12, NOW).userId()).isEqualTo(12);
+    }
+  }
+
+  @Test
+  void put_pastLoadFactor_withLiveSessions_shouldFail() throws Exception {
+    try (OffHeapTokenStore store = OffHeapTokenStore.open(tempDir.resolve("tokens.bin"), 16)) {
+      for (long i = 0; i < 12; i++) {
+        store.put(i, i, entry(i, NOW + 1000), NOW);
+      }
+
+      assertTimeoutPreemptively(
+          Duration.ofSeconds(5),
+          () ->
+              assertThatThrownBy(() -> store.put(12, 12, entry(12, NOW + 1000), NOW))
+                  .isInstanceOf(IllegalStateException.class));
+      assertThat(store.get(3, 3, NOW).userId()).isEqualTo(3);
+    }
+  }
+
+  @Test
+  void open_shouldRestoreSessionsWrittenBeforeClose() throws Exception {
+    Path path = tempDir.resolve("tokens.bin");
+    try (OffHeapTokenStore store = OffHeapTokenStore.open(path, 16)) {
+      store.put(42, 7, new OffHeapTokenStore.Entry(9, 0b11, NOW + 1000, 1, 3), NOW);
+    }
+
+    try (OffHeapTokenStore store = OffHeapTokenStore.open(path, 16)) {
+      assertThat(store.size()).isEqualTo(1);
+      assertThat(store.get(42, 7, NOW))
+          .isEqualTo(new OffHeapTokenStore.Entry(9, 0b11, NOW + 1000, 1, 3));
+    }
+  }
+
+  private static OffHeapTokenStore.Entry entry(final long userId, final long expiresAt) {
+    return new OffHeapTokenStore.Entry(userId, 1, expiresAt, 1, 0);
+  }
+}
@@ -0,0 +1,81 @@
+package com.security.spring.demo.seed;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import org.junit.jupiter.api.Test;
+
+class SyntheticUsersTest {
+
+  private static final LocalDateTime REFERENCE = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+  @Test
+  void sameSeed_shouldProduceSameUsers() {
+    SyntheticUsers first = new SyntheticUsers(new SeedProperties(), REFERENCE);
+    SyntheticUsers second = new SyntheticUsers(new SeedProperties(), REFERENCE);
+
+    for (long index = 0; index < 1000; index++) {
+      assertThat(second.user(index)).isEqualTo(first.user(index));
+    }
+  }
+
+  @Test
+  void differentSeed_shouldProduceDifferentRolesAndLogins() {
+    SeedProperties other = new SeedProperties();
+    other.setSeed(7);
+    SyntheticUsers first = new SyntheticUsers(new SeedProperties(), REFERENCE);
+    SyntheticUsers second = new SyntheticUsers(other, REFERENCE);
+
+    long differentLogins = 0;
+    for (long index = 0; index < 1000; index++) {
+      assertThat(second.user(index).email()).isEqualTo(first.user(index).email());
+      if (!Objects.equals(second.user(index).lastLogin(), first.user(index).lastLogin())) {
+        differentLogins++;
+      }
+    }
+    assertThat(differentLogins).isGreaterThan(900);
+  }
+
+  @Test
+  void roles_shouldFollowConfiguredPercentages() {
+    SyntheticUsers users = new SyntheticUsers(new SeedProperties(), REFERENCE);
+    int userRole = users.roleNames().indexOf("ROLE_USER");
+    int moderatorRole = users.roleNames().indexOf("ROLE_MODERATOR");
+    int total = 200_000;
+    int moderators = 0;
+    int neverLoggedIn = 0;
+    for (long index = 0; index < total; index++) {
+      SyntheticUsers.SyntheticUser user = users.user(index);
+      assertThat(user.hasRole(userRole)).isTrue();
+      if (user.hasRole(moderatorRole)) {
+        moderators++;
+      }
+      if (user.lastLogin() == null) {
+        neverLoggedIn++;
+      }
+    }
+
+    assertThat(moderators / (double) total).isCloseTo(0.02, within(0.002));
+    assertThat(neverLoggedIn / (double) total).isCloseTo(0.20, within(0.005));
+  }
+
+  @Test
+  void lastLogin_shouldFallWithinSpreadAndAfterCreation() {
+    SeedProperties properties = new SeedProperties();
+    properties.setLastLoginSpread(Duration.ofDays(30));
+    SyntheticUsers users = new SyntheticUsers(properties, REFERENCE);
+
+    for (long index = 0; index < 10_000; index++) {
+      SyntheticUsers.SyntheticUser user = users.user(index);
+      if (user.lastLogin() != null) {
+        assertThat(user.lastLogin()).isBetween(REFERENCE.minusDays(30), REFERENCE);
+        assertThat(user.createdAt()).isBeforeOrEqualTo(user.lastLogin());
+      } else {
+        assertThat(user.createdAt()).isBetween(REFERENCE.minusDays(30), REFERENCE);
+      }
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.security.spring.demo.service;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import io.jsonwebtoken.Claims;
+import java.util.Optional;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.userdetails.User;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class TokenRenewalServiceTest {
+
+  private static final String SECRET =
+      "404E635266556A586E3272357538782F413F4428472B4B6250645367566B5970";
+  private static final long HOUR = 3_600_000L;
+  private static final long WEEK = 7 * 24 * HOUR;
+
+  private final UserDetails user = user();
+  private final JwtService jwtService = jwtService(HOUR);
+  private final TokenRenewalService renewalService =
+      new TokenRenewalService(jwtService, 300_000L, 30_000L, WEEK);
+
+  @Test
+  void renewIfExpiring_shouldShareOneRenewedToken_nearExpiry() {
+    Claims expiring = jwtService(60_000L).parseClaims(jwtService(60_000L).generateToken(user));
+
+    Optional<String> first = renewalService.renewIfExpiring(expiring, user);
+    Optional<String> second = renewalService.renewIfExpiring(expiring, user);
+
+    assertThat(first).isPresent();
+    assertThat(second).isEqualTo(first);
+    Claims renewed = jwtService.parseClaims(first.get());
+    assertThat(renewed.getSubject()).isEqualTo("renew@example.com");
+    assertThat(renewed.getExpiration().getTime() - System.currentTimeMillis())
+        .isGreaterThan(HOUR - 60_000L);
+  }
+
+  @Test
+  void renewIfExpiring_shouldSkipTokensOutsideWindow() {
+    Claims fresh = jwtService.parseClaims(jwtService.generateToken(user));
+
+    assertThat(renewalService.renewIfExpiring(fresh, user)).isEmpty();
+  }
+
+  @Test
+  void renewIfExpiring_shouldKeepTheOriginalAuthTime() {
+    long signedInAt = (System.currentTimeMillis() - 2 * HOUR) / 1000 * 1000;
+    Claims expiring = expiringClaims(signedInAt);
+
+    Claims renewed = jwtService.parseClaims(renewalService.renewIfExpiring(expiring, user).get());
+
+    assertThat(JwtService.authTime(renewed)).isEqualTo(signedInAt);
+  }
+
+  @Test
+  void renewIfExpiring_shouldStop_onceTheSignInIsOlderThanARefreshToken() {
+    Claims expiring = expiringClaims(System.currentTimeMillis() - WEEK - 1000);
+
+    assertThat(renewalService.renewIfExpiring(expiring, user)).isEmpty();
+  }
+
+  private static Claims expiringClaims(final long authTime) {
+    JwtService expiringService = jwtService(60_000L);
+    return expiringService.parseClaims(expiringService.renewToken(user(), authTime));
+  }
+
+  private static UserDetails user() {
+    return User.withUsername("renew@example.com").password("x").build();
+  }
+
+  private static JwtService jwtService(final long expiration) {
+    JwtService service = new JwtService();
+    ReflectionTestUtils.setField(service, "secretKey", SECRET);
+    ReflectionTestUtils.setField(service, "jwtExpiration", expiration);
+    ReflectionTestUtils.setField(service, "refreshExpiration", WEEK);
+    return service;
+  }
+}
@@ -0,0 +1,75 @@
+package com.security.spring.demo.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimitTest {
+
+  private static final long MILLIS = 1_000_000L;
+
+  @Test
+  void tryAcquire_shouldRejectBeyondLimit() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10);
+
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isTrue();
+    assertThat(limit.tryAcquire()).isFalse();
+    limit.release();
+    assertThat(limit.tryAcquire()).isTrue();
+
+    assertThat(limit.inFlight()).isEqualTo(2);
+    assertThat(limit.rejectedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void steadyLatencyUnderLoad_shouldGrowLimitToMaximum() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 5, 200);
+
+    for (int i = 0; i < 1000; i++) {
+      sample(limit, 20 * MILLIS, limit.limit());
+    }
+
+    assertThat(limit.limit()).isEqualTo(200);
+  }
+
+  @Test
+  void risingLatency_shouldShrinkLimitTowardsMinimum() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(100, 5, 200);
+    for (int i = 0; i < 600; i++) {
+      sample(limit, 20 * MILLIS, limit.limit());
+    }
+    int before = limit.limit();
+
+    for (int i = 0; i < 50; i++) {
+      sample(limit, 200 * MILLIS, limit.limit());
+    }
+
+    assertThat(limit.limit()).isLessThan(before / 2);
+    assertThat(limit.limit()).isGreaterThanOrEqualTo(5);
+  }
+
+  @Test
+  void samplesWhileMostlyIdle_shouldNotGrowLimit() {
+    AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(50, 5, 200);
+
+    for (int i = 0; i < 1000; i++) {
+      sample(limit, 20 * MILLIS, 1);
+    }
+
+    assertThat(limit.limit()).isEqualTo(50);
+  }
+
+  @Test
+  void invalidBounds_shouldBeRejected() {
+    assertThatThrownBy(() -> new AdaptiveConcurrencyLimit(10, 20, 5))
+        .isInstanceOf(IllegalArgumentException.class);
+  }
+
+  private static void sample(
+      final AdaptiveConcurrencyLimit limit, final long rttNanos, final int inFlightAtStart) {
+    assertThat(limit.tryAcquire()).isTrue();
+    limit.release(rttNanos, inFlightAtStart);
+  }
+}
@@ -0,0 +1,40 @@
+package com.security.spring.demo.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class LongIntHashMapTest {
+
+  @Test
+  void get_shouldReturnDefault_forAbsentKeys() {
+    LongIntHashMap map = new LongIntHashMap();
+
+    assertThat(map.get(42, 0)).isZero();
+    assertThat(map.get(42, -1)).isEqualTo(-1);
+  }
+
+  @Test
+  void putMax_shouldNeverLowerAValue() {
+    LongIntHashMap map = new LongIntHashMap();
+
+    assertThat(map.putMax(7, 3)).isEqualTo(3);
+    assertThat(map.putMax(7, 1)).isEqualTo(3);
+    assertThat(map.putMax(7, 5)).isEqualTo(5);
+    assertThat(map.get(7, 0)).isEqualTo(5);
+    assertThat(map.size()).isEqualTo(1);
+  }
+
+  @Test
+  void putMax_shouldKeepEntriesWhileGrowing() {
+    LongIntHashMap map = new LongIntHashMap();
+    for (long key = 1; key <= 10_000; key++) {
+      map.putMax(key << 48 | key, (int) key);
+    }
+
+    assertThat(map.size()).isEqualTo(10_000);
+    for (long key = 1; key <= 10_000; key++) {
+      assertThat(map.get(key << 48 | key, 0)).isEqualTo((int) key);
+    }
+  }
+}
@@ -0,0 +1,71 @@
+package com.security.spring.demo.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.security.spring.demo.security.RoleMaskPrincipal;
+import java.util.Set;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+class ServerTimingTest {
+
+  @AfterEach
+  void tearDown() {
+    ServerTiming.disarm();
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  void unarmedRequest_shouldNotReadClockOrReport() {
+    ServerTiming.disarm();
+
+    long startedAt = ServerTiming.start();
+    ServerTiming.stop(ServerTiming.Phase.JWT, startedAt);
+
+    assertThat(startedAt).isZero();
+    assertThat(ServerTiming.take()).isNull();
+  }
+
+  @Test
+  void sampledRequest_shouldReportRecordedPhasesInOrder() throws Exception {
+    ServerTiming.arm(true, 0L);
+
+    timed(ServerTiming.Phase.USER);
+    timed(ServerTiming.Phase.JWT);
+    ServerTiming.startHandler();
+    Thread.sleep(1);
+
+    String header = ServerTiming.take();
+
+    assertThat(header)
+        .matches("jwt;dur=\\d+\\.\\d{3}, user;dur=\\d+\\.\\d{3}, app;dur=\\d+\\.\\d{3}");
+    assertThat(ServerTiming.take()).as("reported once").isNull();
+  }
+
+  @Test
+  void roleArmedRequest_shouldOnlyReportForPrincipalWithRole() throws Exception {
+    ServerTiming.arm(false, 1L << 1);
+    authenticate(1L);
+    timed(ServerTiming.Phase.JWT);
+    assertThat(ServerTiming.take()).isNull();
+
+    ServerTiming.arm(false, 1L << 1);
+    authenticate(1L << 1);
+    timed(ServerTiming.Phase.JWT);
+    assertThat(ServerTiming.take()).startsWith("jwt;dur=");
+  }
+
+  private static void authenticate(final long roleMask) {
+    RoleMaskPrincipal principal = () -> roleMask;
+    SecurityContextHolder.getContext()
+        .setAuthentication(new UsernamePasswordAuthenticationToken(principal, null, Set.of()));
+  }
+
+  private static void timed(final ServerTiming.Phase phase) throws InterruptedException {
+    long startedAt = ServerTiming.start();
+    Thread.sleep(1);
+    ServerTiming.stop(phase, startedAt);
+  }
+}
@@ -0,0 +1,128 @@
+package com.security.spring.demo.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class SingleFlightTest {
+
+  private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+  private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+  @AfterEach
+  void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  void concurrentLoads_shouldShareOneExecution() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger calls = new AtomicInteger();
+    List<Future<String>> results = new ArrayList<>();
+    for (int i = 0; i < 8; i++) {
+      results.add(
+          executor.submit(
+              () ->
+                  singleFlight.load(
+                      "svc@example.com",
+                      () -> {
+                        calls.incrementAndGet();
+                        await(release);
+                        return "loaded";
+                      },
+                      5_000)));
+    }
+    waitUntil(() -> singleFlight.coalescedCount() == 7);
+    release.countDown();
+
+    for (Future<String> result : results) {
+      assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("loaded");
+    }
+    assertThat(calls).hasValue(1);
+    assertThat(singleFlight.executedCount()).isEqualTo(1);
+  }
+
+  @Test
+  void failure_shouldPropagateToEveryWaiter() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Future<String> leader =
+        executor.submit(
+            () ->
+                singleFlight.load(
+                    "gone@example.com",
+                    () -> {
+                      await(release);
+                      throw new IllegalStateException("database down");
+                    },
+                    5_000));
+    waitUntil(() -> singleFlight.executedCount() == 1);
+    Future<String> waiter =
+        executor.submit(() -> singleFlight.load("gone@example.com", () -> "unused", 5_000));
+    waitUntil(() -> singleFlight.coalescedCount() == 1);
+    release.countDown();
+
+    assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS))
+        .hasRootCauseInstanceOf(IllegalStateException.class);
+    assertThatThrownBy(() -> waiter.get(5, TimeUnit.SECONDS))
+        .hasRootCauseMessage("database down");
+  }
+
+  @Test
+  void waiter_shouldTimeOut_whileTheLoadKeepsRunning() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    Future<String> leader =
+        executor.submit(
+            () ->
+                singleFlight.load(
+                    "slow@example.com",
+                    () -> {
+                      await(release);
+                      return "loaded";
+                    },
+                    5_000));
+    waitUntil(() -> singleFlight.executedCount() == 1);
+
+    assertThatThrownBy(() -> singleFlight.load("slow@example.com", () -> "unused", 10))
+        .isInstanceOf(TimeoutException.class);
+    release.countDown();
+    assertThat(leader.get(5, TimeUnit.SECONDS)).isEqualTo("loaded");
+  }
+
+  @Test
+  void sequentialLoads_shouldEachExecute() throws Exception {
+    singleFlight.load("a@example.com", () -> "first", 100);
+
+    assertThat(singleFlight.load("a@example.com", () -> "second", 100)).isEqualTo("second");
+    assertThat(singleFlight.executedCount()).isEqualTo(2);
+    assertThat(singleFlight.coalescedCount()).isZero();
+  }
+
+  private static void await(final CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void waitUntil(final BooleanSupplier condition)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+      Thread.sleep(1);
+    }
+    assertThat(condition.getAsBoolean()).isTrue();
+  }
+}